@@ -0,0 +1,511 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Disk-backed, content-addressed store for request and response texts, so the entry lists
+ * only keep a reference per body instead of the full Strings.
+ * <p>
+ * Each distinct text is stored once: it is hashed (SHA-256, truncated to 128 bits) and, if the
+ * same content is already in the file, the existing blob is reused. That collapses the identical
+ * 404/405/WAF pages that make up most replayed responses. New blobs are Deflate-compressed when
+ * that makes them smaller. A blob is {@code [int payloadLength][byte codec][int rawLength]
+ * [16-byte digest][payload]}; the hash index is rebuilt from the headers when the store is opened.
+ * Entries refer to a blob by its offset, which serves as its content address.
+ * <p>
+ * Blobs nobody refers to any more (after "Clear Non-Highlighted", say) are reclaimed when the
+ * journal compacts: it copies the blobs of its live records into a new file with
+ * {@link #beginCompaction()}, which then replaces this one. Each file has its own range of
+ * offsets, {@value #GENERATION_SPAN} apart, so an old offset never names a different blob. The
+ * file starts with a magic number and the base of its range. Entries still in memory keep their old offsets, which are translated on read,
+ * and the journal translates the records it had queued before writing them.
+ * <p>
+ * Reads go through a separate handle, so showing an entry does not wait for appends.
+ * (RandomAccessFile rather than FileChannel on purpose: an interrupted replay worker would
+ * close a FileChannel for every other thread.) The journal calls {@link #force()} before it
+ * fsyncs a batch, so a journal record never points at blob bytes that did not reach the disk.
+ */
+public class BodyStore {
+
+    private static final int MAGIC = 0x56524233; // "VRB3", followed by the file's base offset
+    private static final int FILE_HEADER_LENGTH = 4 + 8;
+    private static final byte RAW = 0;
+    private static final byte DEFLATE = 1;
+    private static final int HEADER_LENGTH = 4 + 1 + 4 + 16;
+    private static final int MIN_COMPRESS_LENGTH = 128;
+    private static final int MIN_DEAD_BLOBS = 1000;
+    static final long GENERATION_SPAN = 1L << 40; // offsets per file; also its size limit
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final File file;
+    private RandomAccessFile writer;
+    private RandomAccessFile reader;
+    private final Object readLock = new Object(); // taken before the store's own lock, never after
+    private Map<Digest, Long> index = new HashMap<>();
+    private Map<Long, Integer> rawLengths = new HashMap<>();
+    private long base;   // offset of the file's first byte; offsets are base + position in the file
+    private long size;   // length of the file
+
+    // --- Compaction ---
+    private Map<Long, Integer> unjournaled = new HashMap<>(); // blobs of stored entries not journaled yet -> entries
+    private final Map<Long, Long> relocated = new HashMap<>(); // offsets from before a compaction -> current ones
+
+    // --- Dedup statistics ---
+    private long references;
+    private long referencedBytes;
+
+    public BodyStore(File file) throws IOException {
+        this.file = file;
+        this.writer = new RandomAccessFile(file, "rw");
+        this.reader = new RandomAccessFile(file, "r");
+        if (writer.length() == 0) {
+            writer.writeInt(MAGIC);
+            writer.writeLong(0);
+        } else {
+            if (writer.length() < FILE_HEADER_LENGTH || writer.readInt() != MAGIC) {
+                throw new IOException(file.getName() + " is not a VerbReplayer blob store");
+            }
+            base = writer.readLong();
+        }
+        this.size = rebuildIndex(FILE_HEADER_LENGTH);
+        if (size < writer.length()) {
+            // A crash cut the last blob short; no journal record can point at it.
+            writer.setLength(size);
+        }
+    }
+
+    /**
+     * Scans the blob headers to rebuild the hash index.
+     *
+     * @return the length of the valid prefix of the file
+     */
+    private long rebuildIndex(long start) throws IOException {
+        long length = writer.length();
+        long offset = start;
+        byte[] header = new byte[HEADER_LENGTH];
+        ByteBuffer fields = ByteBuffer.wrap(header);
+        while (offset + HEADER_LENGTH <= length) {
+            // One read per header; RandomAccessFile.readInt alone would be four.
+            writer.seek(offset);
+            writer.readFully(header);
+            int payloadLength = fields.getInt(0);
+            int rawLength = fields.getInt(5);
+            long next = offset + HEADER_LENGTH + payloadLength;
+            if (payloadLength < 0 || next > length) break;
+            index.put(new Digest(Arrays.copyOfRange(header, 9, HEADER_LENGTH)), base + offset);
+            rawLengths.put(base + offset, rawLength);
+            offset = next;
+        }
+        return offset;
+    }
+
+    /**
+     * Moves the given texts into the store and points the entry at them.
+     * The entry's in-memory {@code requestText} and {@code response} are cleared.
+     */
+    public synchronized void store(UserInterface.ReplayedRequestEntry entry, String requestText, String response) throws IOException {
+        long requestOffset = requestText == null ? -1 : put(requestText.getBytes(StandardCharsets.UTF_8));
+        long responseOffset = response == null ? -1 : put(response.getBytes(StandardCharsets.UTF_8));
+        entry.requestOffset = requestOffset;
+        entry.requestLength = rawLength(requestOffset);
+        entry.responseOffset = responseOffset;
+        entry.responseLength = rawLength(responseOffset);
+        entry.requestText = null;
+        entry.response = null;
+        countUnjournaled(entry, true);
+    }
+
+    /**
+     * Tells the store that the entry's journal record has been queued, so a compaction finds its
+     * blobs through the journal from now on. Until then they are always kept.
+     */
+    public void journaled(UserInterface.ReplayedRequestEntry entry) {
+        countUnjournaled(entry, false);
+    }
+
+    private synchronized void countUnjournaled(UserInterface.ReplayedRequestEntry entry, boolean stored) {
+        for (long offset : new long[]{currentOffset(entry.requestOffset), currentOffset(entry.responseOffset)}) {
+            if (offset < 0) continue;
+            if (stored) {
+                unjournaled.merge(offset, 1, Integer::sum);
+            } else {
+                unjournaled.computeIfPresent(offset, (o, n) -> n == 1 ? null : n - 1);
+            }
+        }
+    }
+
+    /**
+     * Counts an entry loaded from the journal towards the dedup statistics.
+     */
+    public synchronized void noteReferences(UserInterface.ReplayedRequestEntry entry) {
+        for (long offset : new long[]{entry.requestOffset, entry.responseOffset}) {
+            Integer rawLength = offset < 0 ? null : rawLengths.get(offset);
+            if (rawLength != null) {
+                references++;
+                referencedBytes += rawLength;
+            }
+        }
+    }
+
+    /** Loads the entry's request text, or returns the in-memory one if it was never stored here. */
+    public String requestText(UserInterface.ReplayedRequestEntry entry) {
+        return entry.requestOffset < 0 ? entry.requestText : read(entry.requestOffset);
+    }
+
+    /** Loads the entry's response, or returns the in-memory one if it was never stored here. */
+    public String response(UserInterface.ReplayedRequestEntry entry) {
+        return entry.responseOffset < 0 ? entry.response : read(entry.responseOffset);
+    }
+
+    /** Returns true if the offset is "no body" or the start of a blob in the store. */
+    public synchronized boolean contains(long offset) {
+        return offset < 0 || rawLengths.containsKey(offset);
+    }
+
+    private synchronized long put(byte[] raw) throws IOException {
+        byte[] hash = SHA256.get().digest(raw);
+        Digest digest = new Digest(hash);
+        references++;
+        referencedBytes += raw.length;
+        Long existing = index.get(digest);
+        if (existing != null) {
+            return existing;
+        }
+        byte codec = RAW;
+        byte[] payload = raw;
+        if (raw.length >= MIN_COMPRESS_LENGTH) {
+            byte[] compressed = deflate(raw);
+            if (compressed.length < raw.length) {
+                codec = DEFLATE;
+                payload = compressed;
+            }
+        }
+        if (size + HEADER_LENGTH + payload.length > GENERATION_SPAN) {
+            throw new IOException(file.getName() + " is full");
+        }
+        long offset = base + size;
+        writer.seek(size);
+        writer.writeInt(payload.length);
+        writer.writeByte(codec);
+        writer.writeInt(raw.length);
+        writer.write(hash, 0, 16);
+        writer.write(payload);
+        size += HEADER_LENGTH + payload.length;
+        index.put(digest, offset);
+        rawLengths.put(offset, raw.length);
+        return offset;
+    }
+
+    /** Uncompressed length of the blob at the offset (0 for no blob). */
+    private synchronized int rawLength(long offset) {
+        Integer rawLength = offset < 0 ? null : rawLengths.get(offset);
+        return rawLength == null ? 0 : rawLength;
+    }
+
+    /**
+     * Returns the current offset of a blob, translating offsets handed out before a compaction.
+     * Returns the offset unchanged if it is current, or -1 if the blob was not kept.
+     */
+    public synchronized long currentOffset(long offset) {
+        if (offset < 0 || offset >= base) return offset;
+        Long current = relocated.get(offset);
+        return current != null ? current : -1;
+    }
+
+    /** True once a compaction has moved blobs, i.e. {@link #currentOffset} may translate. */
+    public synchronized boolean hasRelocations() {
+        return !relocated.isEmpty();
+    }
+
+    private String read(long offset) {
+        byte codec;
+        int rawLength;
+        byte[] payload;
+        synchronized (readLock) {
+            try {
+                long current = currentOffset(offset);
+                if (current < 0) return null;
+                reader.seek(current - base);
+                int payloadLength = reader.readInt();
+                codec = reader.readByte();
+                rawLength = reader.readInt();
+                reader.skipBytes(16);
+                payload = new byte[payloadLength];
+                reader.readFully(payload);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        if (codec == DEFLATE) {
+            try {
+                payload = inflate(payload, rawLength);
+            } catch (DataFormatException e) {
+                return null;
+            }
+        }
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] buffer = new byte[raw.length];
+            int n = 0;
+            while (!deflater.finished() && n < buffer.length) {
+                n += deflater.deflate(buffer, n, buffer.length - n);
+            }
+            // Did not fit in raw.length bytes, so compression would not help.
+            if (!deflater.finished()) return raw;
+            byte[] result = new byte[n];
+            System.arraycopy(buffer, 0, result, 0, n);
+            return result;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] payload, int rawLength) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(payload);
+            byte[] raw = new byte[rawLength];
+            int n = 0;
+            while (n < rawLength && !inflater.finished()) {
+                int read = inflater.inflate(raw, n, rawLength - n);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                n += read;
+            }
+            return raw;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** Flushes appended blobs to disk. */
+    public synchronized void force() throws IOException {
+        writer.getFD().sync();
+    }
+
+    /**
+     * Returns true if enough blobs are no longer referenced to be worth copying the rest into a
+     * new file: at least a quarter of them, and at least {@value #MIN_DEAD_BLOBS}.
+     *
+     * @param live the offsets referenced by the journal's live records
+     */
+    public synchronized boolean isWorthCompacting(Set<Long> live) {
+        int kept = live.size();
+        for (Long offset : unjournaled.keySet()) {
+            if (!live.contains(offset)) kept++;
+        }
+        int dead = index.size() - kept;
+        return dead >= MIN_DEAD_BLOBS && dead * 4 >= index.size();
+    }
+
+    /**
+     * Starts copying blobs into a new file, which replaces this store's file on
+     * {@link Compaction#commit}. The store stays usable meanwhile.
+     */
+    public Compaction beginCompaction() throws IOException {
+        synchronized (this) {
+            // The current file may still grow meanwhile; its offsets stay below the next range.
+            return new Compaction(base + GENERATION_SPAN);
+        }
+    }
+
+    /** The file a compaction of the store in the given file writes to until it is committed. */
+    static File compactionFile(File file) {
+        return new File(file.getPath() + ".compact");
+    }
+
+    /** Something to do at the point a compaction can no longer be rolled back. */
+    public interface CommitAction {
+        void run() throws IOException;
+    }
+
+    // ---------------------------
+    // A compaction in progress: the blobs copied so far and the file they go to.
+    // ---------------------------
+    public final class Compaction {
+        private final File target = compactionFile(file);
+        private final RandomAccessFile out;
+        private final long newBase;
+        private long newSize = FILE_HEADER_LENGTH;
+        private final Map<Long, Long> moved = new HashMap<>();
+        private final Map<Digest, Long> newIndex = new HashMap<>();
+        private final Map<Long, Integer> newRawLengths = new HashMap<>();
+
+        private Compaction(long newBase) throws IOException {
+            this.newBase = newBase;
+            Files.deleteIfExists(target.toPath());
+            out = new RandomAccessFile(target, "rw");
+            out.writeInt(MAGIC);
+            out.writeLong(newBase);
+        }
+
+        /**
+         * Copies the blob at the offset into the new file (once) and returns its offset there.
+         * Returns -1 for "no body" and for offsets that are not in the store.
+         */
+        public long copy(long offset) throws IOException {
+            if (offset < 0) return -1;
+            Long done = moved.get(offset);
+            if (done != null) return done;
+            byte[] blob;
+            synchronized (readLock) {
+                synchronized (BodyStore.this) {
+                    if (!rawLengths.containsKey(offset)) return -1;
+                }
+                reader.seek(offset - base);
+                int payloadLength = reader.readInt();
+                blob = new byte[HEADER_LENGTH + payloadLength];
+                reader.seek(offset - base);
+                reader.readFully(blob);
+            }
+            long newOffset = newBase + newSize;
+            out.seek(newSize);
+            out.write(blob);
+            newSize += blob.length;
+            int rawLength = ByteBuffer.wrap(blob).getInt(5);
+            newIndex.put(new Digest(Arrays.copyOfRange(blob, 9, HEADER_LENGTH)), newOffset);
+            newRawLengths.put(newOffset, rawLength);
+            moved.put(offset, newOffset);
+            return newOffset;
+        }
+
+        /**
+         * Copies the blobs of entries that are not in the journal file yet, runs the action, which
+         * makes the new journal current, and swaps the new file in. Reads and writes wait until
+         * the swap is done.
+         *
+         * @param queuedBlobs returns the blobs of the journal records still queued for writing
+         */
+        public void commit(Supplier<Collection<Long>> queuedBlobs, CommitAction atCommitPoint) throws IOException {
+            synchronized (readLock) {
+                synchronized (BodyStore.this) {
+                    try {
+                        for (Long offset : unjournaled.keySet()) copy(offset);
+                        for (Long offset : queuedBlobs.get()) copy(currentOffset(offset));
+                        out.getFD().sync();
+                        out.close();
+                        atCommitPoint.run();
+                    } catch (IOException e) {
+                        abandon();
+                        throw e;
+                    }
+                    // Past the commit point: if anything fails now, the next start finishes the swap.
+                    writer.close();
+                    reader.close();
+                    try {
+                        Files.move(target.toPath(), file.toPath(),
+                                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    } finally {
+                        writer = new RandomAccessFile(file, "rw");
+                        reader = new RandomAccessFile(file, "r");
+                    }
+                    // Older relocations now point at blobs that moved again (or were dropped).
+                    relocated.replaceAll((stale, current) -> moved.getOrDefault(current, -1L));
+                    relocated.values().removeIf(current -> current < 0);
+                    relocated.putAll(moved);
+                    Map<Long, Integer> stillUnjournaled = new HashMap<>();
+                    unjournaled.forEach((offset, n) -> {
+                        Long current = moved.get(offset);
+                        if (current != null) stillUnjournaled.put(current, n);
+                    });
+                    unjournaled = stillUnjournaled;
+                    index = newIndex;
+                    rawLengths = newRawLengths;
+                    base = newBase;
+                    size = newSize;
+                }
+            }
+        }
+
+        /** Drops the new file; the store carries on with its current one. */
+        public void abandon() {
+            try {
+                out.close();
+                Files.deleteIfExists(target.toPath());
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * One-line summary of how much deduplication and compression are saving.
+     */
+    public synchronized String getStatsSummary() {
+        double dedupRatio = index.isEmpty() ? 1.0 : (double) references / index.size();
+        double sizeRatio = size <= FILE_HEADER_LENGTH ? 1.0 : (double) referencedBytes / size;
+        return String.format("%,d bodies stored as %,d unique blobs (%.1fx dedup); %,d KB of text in %,d KB on disk (%.1fx overall)",
+                references, index.size(), dedupRatio, referencedBytes / 1024, size / 1024, sizeRatio);
+    }
+
+    public void close() {
+        try {
+            synchronized (readLock) {
+                synchronized (this) {
+                    writer.close();
+                    reader.close();
+                }
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    // ---------------------------
+    // 128-bit content digest used as the index key.
+    // ---------------------------
+    private static final class Digest {
+        private final long high;
+        private final long low;
+
+        Digest(byte[] hash) {
+            long h = 0;
+            long l = 0;
+            for (int i = 0; i < 8; i++) h = (h << 8) | (hash[i] & 0xff);
+            for (int i = 8; i < 16; i++) l = (l << 8) | (hash[i] & 0xff);
+            this.high = h;
+            this.low = l;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Digest)) return false;
+            Digest other = (Digest) o;
+            return high == other.high && low == other.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(high ^ low);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreeNode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+import java.util.function.Consumer;
+
+/**
+ * Tree model grouping entries by domain, then by first URL segment, then by endpoint template.
+ * <p>
+ * The model keeps an index of its group nodes, so new entries are added by inserting their leaves
+ * (and any missing group nodes) and firing {@code nodesWereInserted}. {@link #addEntries} fires
+ * one event per affected parent for a whole batch. Existing nodes are never
+ * replaced, which keeps the tree's expansion and selection as they are. {@link #rebuild} is
+ * only needed when entries are removed or the grouping itself changes (e.g. new path rules).
+ * <p>
+ * Every group node is a {@link GroupNode} that counts the entries below it (total, highlighted
+ * and per status class). The counts are updated along the path to the root whenever a leaf is
+ * added or re-highlighted, so renderers read them in constant time instead of walking subtrees.
+ */
+public class GroupedTreeModel extends DefaultTreeModel {
+
+    private final PathNormalizer pathNormalizer;
+    private final Map<String, DefaultMutableTreeNode> domainNodes = new HashMap<>();
+    private final Map<String, DefaultMutableTreeNode> segmentNodes = new HashMap<>();
+    private final Map<String, DefaultMutableTreeNode> templateNodes = new HashMap<>();
+
+    public GroupedTreeModel(String rootName, PathNormalizer pathNormalizer) {
+        super(new GroupNode(rootName));
+        this.pathNormalizer = pathNormalizer;
+    }
+
+    /**
+     * Adds one entry, inserting only the new nodes and notifying listeners about them.
+     */
+    public void addEntry(UserInterface.ReplayedRequestEntry entry) {
+        DefaultMutableTreeNode templateNode = groupNodeFor(entry, null);
+        DefaultMutableTreeNode entryNode = new DefaultMutableTreeNode(entry, false);
+        templateNode.add(entryNode);
+        countEntry(templateNode, entry, true);
+        nodesWereInserted(templateNode, new int[]{templateNode.getChildCount() - 1});
+    }
+
+    /**
+     * Adds a batch of entries and fires a single insert event per parent node whose children
+     * changed. Children of group nodes created by this batch are covered by the event for the
+     * new group node itself.
+     */
+    public void addEntries(List<UserInterface.ReplayedRequestEntry> entries) {
+        Batch batch = new Batch();
+        for (UserInterface.ReplayedRequestEntry entry : entries) {
+            DefaultMutableTreeNode templateNode = groupNodeFor(entry, batch);
+            templateNode.add(new DefaultMutableTreeNode(entry, false));
+            countEntry(templateNode, entry, false);
+            batch.childAdded(templateNode);
+        }
+        for (Map.Entry<DefaultMutableTreeNode, List<Integer>> e : batch.inserted.entrySet()) {
+            List<Integer> indices = e.getValue();
+            int[] childIndices = new int[indices.size()];
+            for (int i = 0; i < childIndices.length; i++) childIndices[i] = indices.get(i);
+            nodesWereInserted(e.getKey(), childIndices);
+        }
+        // Existing group nodes above the new leaves have new counts in their labels.
+        for (DefaultMutableTreeNode parent : batch.inserted.keySet()) {
+            fireAncestorsChanged(parent);
+        }
+    }
+
+    /**
+     * Adds a batch of entries that are all older than the entries already in the tree, as when
+     * saved history is loaded newest first. Their leaves go in front of each template node's
+     * existing leaves in one block, so leaves stay in logging order; new group nodes are
+     * appended as usual. Fires one insert event per parent node, like {@link #addEntries}.
+     */
+    public void addOlderEntries(List<UserInterface.ReplayedRequestEntry> entries) {
+        Batch batch = new Batch();
+        Map<GroupNode, List<DefaultMutableTreeNode>> leaves = new LinkedHashMap<>();
+        for (UserInterface.ReplayedRequestEntry entry : entries) {
+            DefaultMutableTreeNode templateNode = groupNodeFor(entry, batch);
+            leaves.computeIfAbsent((GroupNode) templateNode, k -> new ArrayList<>())
+                    .add(new DefaultMutableTreeNode(entry, false));
+            countEntry(templateNode, entry, false);
+        }
+        for (Map.Entry<DefaultMutableTreeNode, List<Integer>> e : batch.inserted.entrySet()) {
+            List<Integer> indices = e.getValue();
+            int[] childIndices = new int[indices.size()];
+            for (int i = 0; i < childIndices.length; i++) childIndices[i] = indices.get(i);
+            nodesWereInserted(e.getKey(), childIndices);
+        }
+        for (Map.Entry<GroupNode, List<DefaultMutableTreeNode>> e : leaves.entrySet()) {
+            GroupNode templateNode = e.getKey();
+            templateNode.insertFirst(e.getValue());
+            // Leaves of a new template node are covered by the event for the node itself.
+            if (batch.created.contains(templateNode)) continue;
+            int[] childIndices = new int[e.getValue().size()];
+            for (int i = 0; i < childIndices.length; i++) childIndices[i] = i;
+            nodesWereInserted(templateNode, childIndices);
+        }
+        for (DefaultMutableTreeNode parent : batch.inserted.keySet()) {
+            fireAncestorsChanged(parent);
+        }
+        for (GroupNode templateNode : leaves.keySet()) {
+            fireAncestorsChanged(templateNode);
+        }
+    }
+
+    /**
+     * Sets the highlighted flag of the leaf, or of every leaf under a group node, and updates
+     * the cached counts along the way.
+     *
+     * @param changed called for each entry whose flag actually changed
+     */
+    public void setHighlighted(DefaultMutableTreeNode node, boolean state, Consumer<UserInterface.ReplayedRequestEntry> changed) {
+        setHighlightedRecursive(node, state, changed);
+        fireAncestorsChanged(node);
+    }
+
+    private void setHighlightedRecursive(DefaultMutableTreeNode node, boolean state,
+                                         Consumer<UserInterface.ReplayedRequestEntry> changed) {
+        if (node.isLeaf() && node.getUserObject() instanceof UserInterface.ReplayedRequestEntry) {
+            UserInterface.ReplayedRequestEntry entry = (UserInterface.ReplayedRequestEntry) node.getUserObject();
+            if (entry.highlighted == state) return;
+            entry.highlighted = state;
+            for (TreeNode n = node.getParent(); n instanceof GroupNode; n = n.getParent()) {
+                ((GroupNode) n).highlighted += state ? 1 : -1;
+            }
+            changed.accept(entry);
+            return;
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            setHighlightedRecursive((DefaultMutableTreeNode) node.getChildAt(i), state, changed);
+        }
+        if (node instanceof GroupNode) {
+            // The label (and so the width) of every group node in the subtree may have changed.
+            nodeChanged(node);
+        }
+    }
+
+    /** Adds the entry to the counts of the given group node and all its ancestors. */
+    private void countEntry(DefaultMutableTreeNode groupNode, UserInterface.ReplayedRequestEntry entry, boolean fireChanged) {
+        for (TreeNode n = groupNode; n instanceof GroupNode; n = n.getParent()) {
+            ((GroupNode) n).count(entry);
+        }
+        if (fireChanged) fireAncestorsChanged(groupNode);
+    }
+
+    private void fireAncestorsChanged(DefaultMutableTreeNode node) {
+        for (TreeNode n = node; n != null; n = n.getParent()) {
+            nodeChanged(n);
+        }
+    }
+
+    /** Returns the domains that currently have a node in the tree. */
+    public Set<String> getDomains() {
+        return new HashSet<>(domainNodes.keySet());
+    }
+
+    /**
+     * Discards all nodes and groups the given entries from scratch.
+     */
+    public void rebuild(List<UserInterface.ReplayedRequestEntry> entries) {
+        GroupNode rootNode = (GroupNode) getRoot();
+        rootNode.removeAllChildren();
+        rootNode.resetCounts();
+        domainNodes.clear();
+        segmentNodes.clear();
+        templateNodes.clear();
+        // The structure-changed event below covers everything, so the batch's events are dropped.
+        Batch batch = new Batch();
+        for (UserInterface.ReplayedRequestEntry entry : entries) {
+            DefaultMutableTreeNode templateNode = groupNodeFor(entry, batch);
+            templateNode.add(new DefaultMutableTreeNode(entry, false));
+            countEntry(templateNode, entry, false);
+        }
+        nodeStructureChanged(rootNode);
+    }
+
+    /**
+     * Finds (or creates) the template node the entry belongs under.
+     * Grouping is done by domain (first token of the URL), then by first segment of the endpoint
+     * template, then by the template itself, so /users/123 and /users/456 share /users/{id}.
+     *
+     * @param batch if null, insert events are fired for new group nodes straight away;
+     *              otherwise they are collected in the batch and the caller fires them
+     */
+    private DefaultMutableTreeNode groupNodeFor(UserInterface.ReplayedRequestEntry entry, Batch batch) {
+        String[] parts = entry.url.split("/", 2);
+        String domain = parts[0];
+        String template = pathNormalizer.template("/" + ((parts.length > 1) ? parts[1] : ""));
+        String path = template.substring(1);
+        String firstSegment = "";
+        if (!path.isEmpty()) {
+            String[] pathParts = path.split("/");
+            if (pathParts.length > 0) {
+                firstSegment = pathParts[0];
+            }
+        }
+        DefaultMutableTreeNode domainNode = domainNodes.get(domain);
+        if (domainNode == null) {
+            domainNode = new GroupNode(domain);
+            domainNodes.put(domain, domainNode);
+            insertGroup((DefaultMutableTreeNode) getRoot(), domainNode, batch);
+        }
+        String segKey = domain + "/" + firstSegment;
+        DefaultMutableTreeNode segmentNode = segmentNodes.get(segKey);
+        if (segmentNode == null) {
+            segmentNode = new GroupNode(firstSegment.isEmpty() ? "/" : firstSegment);
+            segmentNodes.put(segKey, segmentNode);
+            insertGroup(domainNode, segmentNode, batch);
+        }
+        String templateKey = domain + template;
+        DefaultMutableTreeNode templateNode = templateNodes.get(templateKey);
+        if (templateNode == null) {
+            templateNode = new GroupNode(template);
+            templateNodes.put(templateKey, templateNode);
+            insertGroup(segmentNode, templateNode, batch);
+        }
+        return templateNode;
+    }
+
+    private void insertGroup(DefaultMutableTreeNode parent, DefaultMutableTreeNode child, Batch batch) {
+        parent.add(child);
+        if (batch == null) {
+            nodesWereInserted(parent, new int[]{parent.getChildCount() - 1});
+        } else {
+            batch.childAdded(parent);
+            batch.created.add(child);
+        }
+    }
+
+    // ---------------------------
+    // Group node with cached counts of the entries below it.
+    // The user object (and toString) stays the plain name so saved tree paths still match.
+    // ---------------------------
+    public static class GroupNode extends DefaultMutableTreeNode {
+        // Status classes: index 1-5 for 1xx-5xx, 0 for anything else (e.g. no response).
+        private static final int STATUS_CLASSES = 6;
+
+        private int total;
+        private int highlighted;
+        private final int[] statusClassCounts = new int[STATUS_CLASSES];
+
+        GroupNode(String name) {
+            super(name);
+        }
+
+        void count(UserInterface.ReplayedRequestEntry entry) {
+            total++;
+            if (entry.highlighted) highlighted++;
+            int statusClass = entry.statusCode / 100;
+            statusClassCounts[statusClass >= 1 && statusClass < STATUS_CLASSES ? statusClass : 0]++;
+        }
+
+        /** Inserts the leaves in front of the existing children, moving those only once. */
+        void insertFirst(List<DefaultMutableTreeNode> leaves) {
+            if (children == null) children = new Vector<>();
+            for (DefaultMutableTreeNode leaf : leaves) leaf.setParent(this);
+            children.addAll(0, leaves);
+        }
+
+        void resetCounts() {
+            total = 0;
+            highlighted = 0;
+            Arrays.fill(statusClassCounts, 0);
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getHighlightedCount() {
+            return highlighted;
+        }
+
+        public boolean hasHighlighted() {
+            return highlighted > 0;
+        }
+
+        /** Name followed by the counts, e.g. {@code /users (12, 1 highlighted; 2xx:10 4xx:2)}. */
+        public String getLabel() {
+            StringBuilder sb = new StringBuilder(String.valueOf(getUserObject()));
+            sb.append(" (").append(total);
+            if (highlighted > 0) sb.append(", ").append(highlighted).append(" highlighted");
+            String separator = "; ";
+            for (int i = 1; i <= STATUS_CLASSES; i++) {
+                int statusClass = i % STATUS_CLASSES; // 1xx-5xx first, then "other"
+                if (statusClassCounts[statusClass] == 0) continue;
+                sb.append(separator).append(statusClass == 0 ? "other" : statusClass + "xx")
+                        .append(':').append(statusClassCounts[statusClass]);
+                separator = " ";
+            }
+            return sb.append(')').toString();
+        }
+    }
+
+    // ---------------------------
+    // Insert events collected while adding a batch of entries.
+    // ---------------------------
+    private static class Batch {
+        final Set<DefaultMutableTreeNode> created = new HashSet<>();
+        final Map<DefaultMutableTreeNode, List<Integer>> inserted = new LinkedHashMap<>();
+
+        /** Records that the parent's last child was just added, unless the parent itself is new. */
+        void childAdded(DefaultMutableTreeNode parent) {
+            if (created.contains(parent)) return;
+            inserted.computeIfAbsent(parent, k -> new ArrayList<>()).add(parent.getChildCount() - 1);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Column-oriented copy of the fields the History table shows, one primitive array per column.
+ * <p>
+ * Row {@code i} is the i-th entry appended, which is id order except for saved history (loaded
+ * newest first) mixed with live entries. Verbs, hosts and paths are dictionary-encoded (each
+ * distinct string is kept once and rows hold its int code), statuses are ints and timestamps
+ * are epoch seconds. A million rows cost a few tens of MB
+ * instead of a million entry objects plus tree nodes, and sorting or filtering never touches
+ * the entries themselves.
+ */
+public class HistoryColumnStore {
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Dictionary verbs = new Dictionary();
+    private final Dictionary hosts = new Dictionary();
+    private final Dictionary paths = new Dictionary();
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int[] timestamps = new int[INITIAL_CAPACITY];
+    private short[] verbCodes = new short[INITIAL_CAPACITY]; // unsigned, up to 65536 distinct verb variants
+    private short[] statuses = new short[INITIAL_CAPACITY];
+    private int[] hostCodes = new int[INITIAL_CAPACITY];
+    private int[] pathCodes = new int[INITIAL_CAPACITY];
+    private int size;
+    private String lastTimestampText;
+    private int lastTimestamp;
+
+    /** Appends a row for the entry and returns its row number. */
+    public int add(UserInterface.ReplayedRequestEntry entry) {
+        if (size == ids.length) grow();
+        String url = entry.url == null ? "" : entry.url;
+        int slash = url.indexOf('/');
+        String host = slash < 0 ? url : url.substring(0, slash);
+        String path = slash < 0 ? "/" : url.substring(slash);
+        ids[size] = entry.id;
+        timestamps[size] = parseTimestamp(entry.timestamp);
+        verbCodes[size] = (short) verbs.code(entry.verb == null ? "" : entry.verb);
+        statuses[size] = (short) entry.statusCode;
+        hostCodes[size] = hosts.code(host);
+        pathCodes[size] = paths.code(path);
+        return size++;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        verbCodes = Arrays.copyOf(verbCodes, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        hostCodes = Arrays.copyOf(hostCodes, capacity);
+        pathCodes = Arrays.copyOf(pathCodes, capacity);
+    }
+
+    private int parseTimestamp(String timestamp) {
+        if (timestamp == null) return 0;
+        // Entries arrive roughly in time order, so consecutive rows usually share the second.
+        if (timestamp.equals(lastTimestampText)) return lastTimestamp;
+        int seconds;
+        try {
+            seconds = (int) LocalDateTime.parse(timestamp, TIMESTAMP_FORMAT).atZone(ZoneId.systemDefault()).toEpochSecond();
+        } catch (DateTimeParseException e) {
+            seconds = 0;
+        }
+        lastTimestampText = timestamp;
+        lastTimestamp = seconds;
+        return seconds;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long id(int row) {
+        return ids[row];
+    }
+
+    /** Epoch seconds, 0 if the entry's timestamp could not be parsed. */
+    public int timestamp(int row) {
+        return timestamps[row];
+    }
+
+    public String formattedTimestamp(int row) {
+        int seconds = timestamps[row];
+        if (seconds == 0) return "";
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(seconds), ZoneId.systemDefault()).format(TIMESTAMP_FORMAT);
+    }
+
+    public int verbCode(int row) {
+        return verbCodes[row] & 0xffff;
+    }
+
+    public String verb(int row) {
+        return verbs.value(verbCode(row));
+    }
+
+    public int status(int row) {
+        return statuses[row];
+    }
+
+    public int hostCode(int row) {
+        return hostCodes[row];
+    }
+
+    public String host(int row) {
+        return hosts.value(hostCodes[row]);
+    }
+
+    public int pathCode(int row) {
+        return pathCodes[row];
+    }
+
+    public String path(int row) {
+        return paths.value(pathCodes[row]);
+    }
+
+    public Dictionary getVerbs() {
+        return verbs;
+    }
+
+    public Dictionary getHosts() {
+        return hosts;
+    }
+
+    public Dictionary getPaths() {
+        return paths;
+    }
+
+    // ---------------------------
+    // Distinct strings of one column, addressed by their int code.
+    // ---------------------------
+    public static class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private String[] values = new String[64];
+        private int size;
+
+        int code(String value) {
+            Integer code = codes.get(value);
+            if (code != null) return code;
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size] = value;
+            codes.put(value, size);
+            return size++;
+        }
+
+        public String value(int code) {
+            return values[code];
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+}
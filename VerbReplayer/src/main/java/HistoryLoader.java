@@ -0,0 +1,169 @@
+import burp.api.montoya.logging.Logging;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads the saved history on a background thread, so the extension's tab can be registered
+ * straight away instead of after the whole journal has been read.
+ * <p>
+ * The journal is read newest first ({@link ReplayJournal#loadNewestFirst}) and handed over in
+ * chunks through a small queue, which the event thread takes from with {@link #poll()} between
+ * other work. The queue holds at most {@value #QUEUED_CHUNKS} chunks, so reading never runs
+ * far ahead of the UI. As soon as the highest saved id is known, the shared id counter is moved
+ * past it and {@link #areIdsKnown()} turns true; from then on live entries can be numbered and
+ * shown while older ones are still coming in. The journal's writer is started when loading ends,
+ * so records appended in the meantime are written after everything that was loaded. If the
+ * journal could not be read, it is moved aside first and the writer starts a new one; if even
+ * that fails, the writer is not started and nothing is saved this session.
+ */
+public class HistoryLoader {
+
+    /** Entries per chunk; small enough for the event thread to add a few per tick. */
+    static final int CHUNK_SIZE = 5_000;
+    private static final int QUEUED_CHUNKS = 2;
+
+    /** Work done before the journal is read, e.g. migrating files from older versions. */
+    public interface Preparation {
+        void run() throws IOException;
+    }
+
+    /** A chunk of loaded entries, each list in logging order and older than earlier chunks. */
+    public static final class Chunk {
+        public final List<UserInterface.ReplayedRequestEntry> successEntries;
+        public final List<UserInterface.ReplayedRequestEntry> errorEntries;
+
+        Chunk(List<UserInterface.ReplayedRequestEntry> successEntries,
+              List<UserInterface.ReplayedRequestEntry> errorEntries) {
+            this.successEntries = successEntries;
+            this.errorEntries = errorEntries;
+        }
+    }
+
+    private final Logging logging;
+    private final ReplayJournal journal;
+    private final Preparation preparation;
+    private final AtomicLong nextEntryId;
+    private final BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(QUEUED_CHUNKS);
+    private final Thread thread;
+
+    private volatile boolean idsKnown;
+    private volatile boolean finished;
+    private volatile boolean cancelled;
+    private volatile double progress;
+    private volatile int loadedCount;
+
+    /**
+     * @param nextEntryId the counter live entries are numbered from; moved past the saved ids
+     */
+    public HistoryLoader(Logging logging, ReplayJournal journal, Preparation preparation, AtomicLong nextEntryId) {
+        this.logging = logging;
+        this.journal = journal;
+        this.preparation = preparation;
+        this.nextEntryId = nextEntryId;
+        this.thread = new Thread(this::run, "VerbReplayer-history-loader");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    private void run() {
+        boolean writable = true;
+        try {
+            preparation.run();
+            journal.loadNewestFirst(CHUNK_SIZE, new ReplayJournal.LoadListener() {
+                @Override
+                public void idsKnown(long maxId) {
+                    nextEntryId.accumulateAndGet(maxId + 1, Math::max);
+                    idsKnown = true;
+                }
+
+                @Override
+                public boolean chunk(List<UserInterface.ReplayedRequestEntry> successEntries,
+                                     List<UserInterface.ReplayedRequestEntry> errorEntries, double fraction) {
+                    return hand(new Chunk(successEntries, errorEntries), fraction);
+                }
+            });
+        } catch (IOException e) {
+            logging.logToError("Error loading journal: " + e.getMessage());
+            writable = setAside();
+        } finally {
+            // Live entries must not wait forever, even if the journal could not be read.
+            idsKnown = true;
+            if (writable) journal.start();
+            finished = true;
+        }
+    }
+
+    /** Moves an unreadable journal out of the writer's way; returns false if that failed. */
+    private boolean setAside() {
+        try {
+            File moved = journal.setAside();
+            if (moved != null) logging.logToError("Moved the unreadable journal to " + moved.getName() + "; starting a new one.");
+            return true;
+        } catch (IOException e) {
+            logging.logToError("Could not move the unreadable journal aside, so new results will not be saved: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** Waits for room in the queue; returns false if loading was cancelled meanwhile. */
+    private boolean hand(Chunk chunk, double fraction) {
+        try {
+            while (!cancelled) {
+                if (chunks.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                    progress = fraction;
+                    loadedCount += chunk.successEntries.size() + chunk.errorEntries.size();
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /** Returns the next loaded chunk, or null if none is waiting. */
+    public Chunk poll() {
+        return chunks.poll();
+    }
+
+    /** True once live entries can be given ids, i.e. the highest saved id is known. */
+    public boolean areIdsKnown() {
+        return idsKnown;
+    }
+
+    /** True once loading has ended and every chunk has been taken. */
+    public boolean isDone() {
+        return finished && chunks.isEmpty();
+    }
+
+    /** The fraction of the journal read so far. */
+    public double getProgress() {
+        return progress;
+    }
+
+    /** The number of entries read so far. */
+    public int getLoadedCount() {
+        return loadedCount;
+    }
+
+    /**
+     * Stops loading and waits for the loader thread, so the journal writer has been started (if
+     * it is going to be) when this returns. Entries not loaded yet stay in the journal for the next start.
+     */
+    public void cancel() {
+        cancelled = true;
+        try {
+            thread.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
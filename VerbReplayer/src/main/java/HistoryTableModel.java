@@ -0,0 +1,339 @@
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+/**
+ * Flat, virtualized table model for the History log.
+ * <p>
+ * The rows live in a {@link HistoryColumnStore}; the table only sees an {@code int[]} view of
+ * store row numbers. Sorting and filtering rearrange or rebuild that index array, and cell values
+ * are looked up from the columns when Swing asks for them, so only the visible rows are ever
+ * turned into Strings. New rows are sorted among themselves and merged into the view, so a
+ * sorted table does not have to be re-sorted on every batch.
+ */
+public class HistoryTableModel extends AbstractTableModel {
+
+    public static final int COLUMN_ID = 0;
+    public static final int COLUMN_TIME = 1;
+    public static final int COLUMN_VERB = 2;
+    public static final int COLUMN_STATUS = 3;
+    public static final int COLUMN_HOST = 4;
+    public static final int COLUMN_PATH = 5;
+    private static final String[] COLUMN_NAMES = {"#", "Time", "Verb", "Status", "Host", "Path"};
+
+    /** Status class filter value meaning "any status". */
+    public static final int ANY_STATUS = -1;
+
+    private final List<UserInterface.ReplayedRequestEntry> entries = new ArrayList<>(); // by store row
+    private final HistoryColumnStore store = new HistoryColumnStore();
+
+    private int[] view = new int[0];
+    private int viewSize;
+
+    private int sortColumn = COLUMN_ID;
+    private boolean ascending = true;
+
+    private String filterText = "";
+    private int filterStatusClass = ANY_STATUS;
+    // Per dictionary code: 0 = not checked yet, 1 = contains the filter text, 2 = does not.
+    private byte[] hostMatches = new byte[0];
+    private byte[] pathMatches = new byte[0];
+
+    /**
+     * @param entries the initial rows
+     */
+    public HistoryTableModel(List<UserInterface.ReplayedRequestEntry> entries) {
+        for (UserInterface.ReplayedRequestEntry entry : entries) {
+            store.add(entry);
+            this.entries.add(entry);
+        }
+        refilter();
+    }
+
+    /**
+     * Adds rows for the entries. They are usually newer than all existing rows, but need not
+     * be: saved history is loaded newest first while live entries keep arriving.
+     */
+    public void addEntries(List<UserInterface.ReplayedRequestEntry> added) {
+        int[] fresh = new int[added.size()];
+        int freshSize = 0;
+        boolean newest = true; // every fresh row comes after the current view in id order
+        long lastId = viewSize == 0 ? Long.MIN_VALUE : store.id(view[viewSize - 1]);
+        for (UserInterface.ReplayedRequestEntry entry : added) {
+            int row = store.add(entry);
+            entries.add(entry);
+            if (!matches(row)) continue;
+            fresh[freshSize++] = row;
+            newest &= entry.id > lastId;
+            lastId = entry.id;
+        }
+        if (freshSize == 0) return;
+        int oldSize = viewSize;
+        if (sortColumn == COLUMN_ID && ascending && newest) {
+            // New rows come last in logging order, so they are simply appended.
+            ensureViewCapacity(viewSize + freshSize);
+            System.arraycopy(fresh, 0, view, viewSize, freshSize);
+            viewSize += freshSize;
+            fireTableRowsInserted(oldSize, viewSize - 1);
+            return;
+        }
+        sort(fresh, freshSize);
+        merge(fresh, freshSize);
+        fireTableDataChanged();
+    }
+
+    /** Returns the entry shown in the given view row. */
+    public UserInterface.ReplayedRequestEntry getEntry(int viewRow) {
+        return entries.get(view[viewRow]);
+    }
+
+    /** Returns the view row showing the given store row, or -1 if it is filtered out. */
+    public int viewRowOf(int storeRow) {
+        if (storeRow < 0 || storeRow >= store.size()) return -1;
+        // The view is always sorted by compareRows, which only ties a row with itself.
+        int lo = 0;
+        int hi = viewSize;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compareRows(view[mid], storeRow);
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid;
+            } else {
+                return view[mid] == storeRow ? mid : -1;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the store row (the order the entry was added in) of the given view row. */
+    public int storeRowOf(int viewRow) {
+        return view[viewRow];
+    }
+
+    /**
+     * Sorts by the column, toggling the direction if it is already the sort column.
+     */
+    public void sortBy(int column) {
+        if (column == sortColumn) {
+            ascending = !ascending;
+        } else {
+            sortColumn = column;
+            ascending = true;
+        }
+        sort(view, viewSize);
+        fireTableDataChanged();
+    }
+
+    public int getSortColumn() {
+        return sortColumn;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    /**
+     * Shows only rows whose host or path contains the text (case-insensitive) and whose status
+     * is in the given class (1-5 for 1xx-5xx, 0 for no/other status, {@link #ANY_STATUS}).
+     */
+    public void setFilter(String text, int statusClass) {
+        filterText = text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+        filterStatusClass = statusClass;
+        hostMatches = new byte[0];
+        pathMatches = new byte[0];
+        refilter();
+    }
+
+    /**
+     * Returns the current filter as a test on entries, for work off the event thread such as
+     * exports. Later calls to {@link #setFilter} do not change the returned filter.
+     */
+    public Predicate<UserInterface.ReplayedRequestEntry> getFilter() {
+        String text = filterText;
+        int statusClass = filterStatusClass;
+        return entry -> {
+            if (statusClass != ANY_STATUS) {
+                int entryClass = entry.statusCode / 100;
+                if (entryClass < 1 || entryClass > 5) entryClass = 0;
+                if (entryClass != statusClass) return false;
+            }
+            if (text.isEmpty()) return true;
+            // Host and path are split the same way as in the column store.
+            String url = entry.url == null ? "" : entry.url.toLowerCase(Locale.ROOT);
+            int slash = url.indexOf('/');
+            String host = slash < 0 ? url : url.substring(0, slash);
+            String path = slash < 0 ? "/" : url.substring(slash);
+            return host.contains(text) || path.contains(text);
+        };
+    }
+
+    private void refilter() {
+        ensureViewCapacity(store.size());
+        viewSize = 0;
+        for (int row = 0; row < store.size(); row++) {
+            if (matches(row)) view[viewSize++] = row;
+        }
+        sort(view, viewSize);
+        fireTableDataChanged();
+    }
+
+    private boolean matches(int row) {
+        if (filterStatusClass != ANY_STATUS) {
+            int statusClass = store.status(row) / 100;
+            if (statusClass < 1 || statusClass > 5) statusClass = 0;
+            if (statusClass != filterStatusClass) return false;
+        }
+        if (filterText.isEmpty()) return true;
+        // Each distinct host and path is checked once per filter, not once per row.
+        hostMatches = checkMatch(hostMatches, store.getHosts(), store.hostCode(row));
+        if (hostMatches[store.hostCode(row)] == 1) return true;
+        pathMatches = checkMatch(pathMatches, store.getPaths(), store.pathCode(row));
+        return pathMatches[store.pathCode(row)] == 1;
+    }
+
+    private byte[] checkMatch(byte[] cache, HistoryColumnStore.Dictionary dictionary, int code) {
+        if (code >= cache.length) {
+            cache = Arrays.copyOf(cache, Math.max(dictionary.size(), code + 1) * 2);
+        }
+        if (cache[code] == 0) {
+            cache[code] = (byte) (dictionary.value(code).toLowerCase(Locale.ROOT).contains(filterText) ? 1 : 2);
+        }
+        return cache;
+    }
+
+    private void ensureViewCapacity(int capacity) {
+        if (view.length < capacity) {
+            view = Arrays.copyOf(view, Math.max(capacity, view.length * 2));
+        }
+    }
+
+    // ---------------------------
+    // Sorting over store row numbers.
+    // ---------------------------
+
+    /** Compares two store rows by the current sort column; ties fall back to logging order. */
+    private int compareRows(int a, int b) {
+        int result;
+        switch (sortColumn) {
+            case COLUMN_TIME:
+                result = Integer.compare(store.timestamp(a), store.timestamp(b));
+                break;
+            case COLUMN_VERB:
+                result = store.verb(a).compareTo(store.verb(b));
+                break;
+            case COLUMN_STATUS:
+                result = Integer.compare(store.status(a), store.status(b));
+                break;
+            case COLUMN_HOST:
+                result = store.hostCode(a) == store.hostCode(b) ? 0 : store.host(a).compareTo(store.host(b));
+                break;
+            case COLUMN_PATH:
+                result = store.pathCode(a) == store.pathCode(b) ? 0 : store.path(a).compareTo(store.path(b));
+                break;
+            default:
+                result = 0;
+        }
+        if (!ascending) result = -result;
+        if (result != 0) return result;
+        // Store rows are not necessarily in id order, so ties (and the id column) compare ids.
+        int byId = Long.compare(store.id(a), store.id(b));
+        return ascending || sortColumn != COLUMN_ID ? byId : -byId;
+    }
+
+    /** Stable merge sort of the first {@code length} rows of the array. */
+    private void sort(int[] rows, int length) {
+        if (length < 2) return;
+        int[] buffer = new int[length];
+        for (int width = 1; width < length; width *= 2) {
+            for (int lo = 0; lo < length - width; lo += 2 * width) {
+                int mid = lo + width;
+                int hi = Math.min(lo + 2 * width, length);
+                if (compareRows(rows[mid - 1], rows[mid]) <= 0) continue; // already in order
+                int i = lo, j = mid, k = lo;
+                while (i < mid && j < hi) buffer[k++] = compareRows(rows[i], rows[j]) <= 0 ? rows[i++] : rows[j++];
+                while (i < mid) buffer[k++] = rows[i++];
+                while (j < hi) buffer[k++] = rows[j++];
+                System.arraycopy(buffer, lo, rows, lo, hi - lo);
+            }
+        }
+    }
+
+    /**
+     * Merges sorted new rows into the sorted view, in place and from the back. The insertion point
+     * of each new row is found by binary search, and the view rows after it are moved in one block.
+     */
+    private void merge(int[] fresh, int freshSize) {
+        ensureViewCapacity(viewSize + freshSize);
+        int end = viewSize; // view rows before this have not been moved yet
+        int to = viewSize + freshSize;
+        for (int f = freshSize - 1; f >= 0; f--) {
+            int position = insertionPoint(fresh[f], end);
+            to -= end - position;
+            System.arraycopy(view, position, view, to, end - position);
+            view[--to] = fresh[f];
+            end = position;
+        }
+        viewSize += freshSize;
+    }
+
+    /** Returns the position among the first {@code end} view rows that the row goes after. */
+    private int insertionPoint(int row, int end) {
+        int lo = 0;
+        int hi = end;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareRows(view[mid], row) <= 0) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // ---------------------------
+    // AbstractTableModel
+    // ---------------------------
+
+    @Override
+    public int getRowCount() {
+        return viewSize;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == COLUMN_ID ? Long.class : column == COLUMN_STATUS ? Integer.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int viewRow, int column) {
+        int row = view[viewRow];
+        switch (column) {
+            case COLUMN_ID:
+                return store.id(row);
+            case COLUMN_TIME:
+                return store.formattedTimestamp(row);
+            case COLUMN_VERB:
+                return store.verb(row);
+            case COLUMN_STATUS:
+                return store.status(row);
+            case COLUMN_HOST:
+                return store.host(row);
+            case COLUMN_PATH:
+                return store.path(row);
+            default:
+                return null;
+        }
+    }
+}
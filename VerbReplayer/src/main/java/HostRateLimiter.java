@@ -0,0 +1,130 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-host token bucket plus a cap on concurrent replays to the same host.
+ * <p>
+ * Workers call {@link #tryAcquire(String)} before sending. Instead of blocking the worker
+ * (which would let one slow host starve the pool), it returns how long the caller should
+ * wait before trying again. When a host answers 429 or 503 its rate is halved and it is
+ * paused for the Retry-After period; successful responses then restore the rate gradually.
+ */
+public class HostRateLimiter {
+
+    public static final double DEFAULT_REQUESTS_PER_SECOND = 10.0;
+    public static final int DEFAULT_BURST = 20;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    private static final double MIN_BACKOFF_FACTOR = 1.0 / 64;
+    private static final double RECOVERY_STEP = 0.05;
+    private static final long DEFAULT_PAUSE_MILLIS = 1_000;
+    private static final long MAX_PAUSE_MILLIS = 60_000;
+    private static final long SATURATED_RETRY_MILLIS = 50;
+
+    private final Map<String, HostState> hosts = new ConcurrentHashMap<>();
+    private volatile double requestsPerSecond = DEFAULT_REQUESTS_PER_SECOND;
+    private volatile int burst = DEFAULT_BURST;
+    private volatile int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+    /**
+     * Takes a token and an in-flight slot for the host if both are available.
+     *
+     * @return 0 if the replay may be sent now (the caller must later call {@link #release}),
+     *         otherwise the number of milliseconds to wait before asking again
+     */
+    public long tryAcquire(String host) {
+        return hosts.computeIfAbsent(host, h -> new HostState(burst)).tryAcquire();
+    }
+
+    /**
+     * Returns the in-flight slot taken by {@link #tryAcquire} and adapts the host's rate
+     * to the response.
+     *
+     * @param statusCode        the response status, or 0 if no response was received
+     * @param retryAfterSeconds the response's Retry-After value, or -1 if absent
+     */
+    public void release(String host, int statusCode, long retryAfterSeconds) {
+        HostState state = hosts.get(host);
+        if (state != null) {
+            state.release(statusCode, retryAfterSeconds);
+        }
+    }
+
+    /** Sets the sustained rate per host; 0 disables rate limiting. */
+    public void setRequestsPerSecond(double requestsPerSecond) {
+        this.requestsPerSecond = Math.max(0, requestsPerSecond);
+    }
+
+    public void setBurst(int burst) {
+        this.burst = Math.max(1, burst);
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /** Number of hosts currently slowed down after 429/503 responses. */
+    public int getThrottledHostCount() {
+        int count = 0;
+        for (HostState state : hosts.values()) {
+            if (state.isThrottled()) count++;
+        }
+        return count;
+    }
+
+    // ---------------------------
+    // Bucket and in-flight counter for a single host.
+    // ---------------------------
+    private class HostState {
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+        private long pausedUntilNanos;
+        private double backoffFactor = 1.0;
+        private int inFlight;
+
+        HostState(int initialTokens) {
+            this.tokens = initialTokens;
+        }
+
+        synchronized long tryAcquire() {
+            long now = System.nanoTime();
+            if (now < pausedUntilNanos) {
+                return Math.max(1, (pausedUntilNanos - now) / 1_000_000);
+            }
+            if (inFlight >= maxInFlight) {
+                return SATURATED_RETRY_MILLIS;
+            }
+            double rate = requestsPerSecond * backoffFactor;
+            if (requestsPerSecond > 0) {
+                tokens = Math.min(burst, tokens + (now - lastRefillNanos) / 1e9 * rate);
+                lastRefillNanos = now;
+                if (tokens < 1) {
+                    return Math.max(1, (long) Math.ceil((1 - tokens) / rate * 1000));
+                }
+                tokens -= 1;
+            }
+            inFlight++;
+            return 0;
+        }
+
+        synchronized void release(int statusCode, long retryAfterSeconds) {
+            inFlight = Math.max(0, inFlight - 1);
+            if (statusCode == 429 || statusCode == 503) {
+                // Multiplicative decrease, and stop sending until the server says we may.
+                backoffFactor = Math.max(MIN_BACKOFF_FACTOR, backoffFactor / 2);
+                long pauseMillis = retryAfterSeconds >= 0
+                        ? Math.min(MAX_PAUSE_MILLIS, retryAfterSeconds * 1000)
+                        : DEFAULT_PAUSE_MILLIS;
+                pausedUntilNanos = Math.max(pausedUntilNanos, System.nanoTime() + pauseMillis * 1_000_000);
+                tokens = Math.min(tokens, 0);
+            } else if (statusCode > 0 && backoffFactor < 1.0) {
+                // Additive increase back towards the configured rate.
+                backoffFactor = Math.min(1.0, backoffFactor + RECOVERY_STEP);
+            }
+        }
+
+        synchronized boolean isThrottled() {
+            return backoffFactor < 1.0 || System.nanoTime() < pausedUntilNanos;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Per-host replay gate: a cached Burp scope decision plus the user's per-host enable toggles.
+ * <p>
+ * Asking Burp whether a URL is in scope is comparatively expensive and the answer rarely differs
+ * between paths of one host, so the first answer for each host is cached until Burp reports a
+ * scope change. Hosts the user disables are skipped regardless of scope; listeners are told so
+ * the replay engine can drop queued replays for that host straight away.
+ */
+public class HostScope {
+
+    private final Predicate<String> scope;
+    private final Map<String, Boolean> inScopeByHost = new ConcurrentHashMap<>();
+    private final Set<String> disabledHosts = ConcurrentHashMap.newKeySet();
+    private final CopyOnWriteArrayList<Consumer<String>> disableListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param scope tells whether a URL is in Burp's target scope
+     */
+    public HostScope(Predicate<String> scope) {
+        this.scope = scope;
+    }
+
+    /**
+     * Returns the cached scope decision for the host, asking Burp with the given URL the first time.
+     */
+    public boolean isInScope(String host, String url) {
+        Boolean cached = inScopeByHost.get(host);
+        if (cached != null) return cached;
+        boolean inScope = scope.test(url);
+        inScopeByHost.put(host, inScope);
+        return inScope;
+    }
+
+    /** Forgets the cached decisions; called when Burp's scope changes. */
+    public void clearScopeCache() {
+        inScopeByHost.clear();
+    }
+
+    public boolean isEnabled(String host) {
+        return !disabledHosts.contains(host);
+    }
+
+    /**
+     * Enables or disables replay for the host. Disabling notifies the listeners so queued
+     * replays can be cancelled.
+     */
+    public void setEnabled(String host, boolean enabled) {
+        if (enabled) {
+            disabledHosts.remove(host);
+        } else if (disabledHosts.add(host)) {
+            for (Consumer<String> listener : disableListeners) {
+                listener.accept(host);
+            }
+        }
+    }
+
+    /** Registers a callback run with the host name whenever a host is disabled. */
+    public void addDisableListener(Consumer<String> listener) {
+        disableListeners.add(listener);
+    }
+
+    public Set<String> getDisabledHosts() {
+        return disabledHosts;
+    }
+}
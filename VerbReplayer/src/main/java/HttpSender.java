@@ -0,0 +1,27 @@
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import java.util.List;
+
+/**
+ * The part of Burp's HTTP API the {@link ReplayEngine} sends through, so the engine can also run
+ * against a plain socket client outside Burp. See {@link MontoyaHttpSender}.
+ */
+public interface HttpSender {
+
+    /**
+     * Sends one request.
+     *
+     * @param responseTimeoutMillis how long to wait for the response; 0 for the sender's default
+     * @param connectionId          if not null, the request is sent as HTTP/1.1 over the kept-alive
+     *                              connection with this id (opened if needed)
+     * @return the response, or null if none was received
+     */
+    HttpResponse send(HttpRequest request, long responseTimeoutMillis, String connectionId);
+
+    /**
+     * Sends the requests in parallel over one multiplexed HTTP/2 connection.
+     *
+     * @return the responses in request order, with null for requests that got none
+     */
+    List<HttpResponse> sendHttp2(List<HttpRequest> requests);
+}
@@ -0,0 +1,135 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram with HDR-style log-linear buckets, for timings taken on the replay workers
+ * and the proxy thread.
+ * <p>
+ * Values are microseconds from 0 to about 19 hours. Below {@link #SUB_BUCKETS} µs every value has
+ * its own bucket; above that each power of two is split into 32 buckets, so a reported percentile
+ * is at most 1/32 (about 3%) above the true value. The buckets are a fixed array of counters, so
+ * recording is a few shifts and atomic increments: no allocation and no lock.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    private static final int VALUE_BITS = 36;
+    static final long MAX_VALUE = (1L << VALUE_BITS) - 1;
+    static final int BUCKETS = SUB_BUCKETS + (VALUE_BITS - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /** Records a duration measured with {@link System#nanoTime()}. */
+    public void recordNanos(long nanos) {
+        record(nanos / 1000);
+    }
+
+    /** Records a value in microseconds; values beyond the range are counted as the maximum. */
+    public void record(long micros) {
+        long value = Math.max(0, Math.min(MAX_VALUE, micros));
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        // Shift the value down until it fits in the upper half of the sub-buckets.
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) (value >> shift) - HALF_SUB_BUCKETS;
+    }
+
+    /** The largest value that falls into the bucket. */
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = (bucket - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (bucket - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Copies the counters. Recording may go on meanwhile, so the copy can be a few values off
+     * from any single instant, which is fine for display.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, sum.get(), max.get());
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    // ---------------------------
+    // A copy of the counters, for percentiles.
+    // ---------------------------
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMaxMicros() {
+            return max;
+        }
+
+        public double getMeanMicros() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * The value at the given percentile (0–100) in microseconds: the upper end of the bucket
+         * holding it, capped at the recorded maximum. 0 if nothing was recorded.
+         */
+        public long valueAtPercentile(double percentile) {
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(max, highestValueOf(i));
+            }
+            return max;
+        }
+
+        /** Calls the consumer with the upper end and count of every non-empty bucket, in order. */
+        public void forEachBucket(BucketConsumer consumer) {
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) consumer.accept(highestValueOf(i), counts[i]);
+            }
+        }
+    }
+
+    public interface BucketConsumer {
+        void accept(long highestValueMicros, long count);
+    }
+}
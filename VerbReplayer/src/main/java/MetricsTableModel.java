@@ -0,0 +1,73 @@
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Table model over per-host or per-verb {@link ReplayMetrics.Summary} rows for the Metrics tab.
+ * Latencies are shown in milliseconds.
+ */
+public class MetricsTableModel extends AbstractTableModel {
+
+    private static final String[] COLUMN_NAMES = {"Name", "Sends", "Sends/s", "p50 ms", "p99 ms", "Max ms",
+            "Timeouts", "Errors", "KB received"};
+    private static final Class<?>[] COLUMN_CLASSES = {String.class, Long.class, Double.class, Double.class,
+            Double.class, Double.class, Long.class, Long.class, Long.class};
+
+    private List<ReplayMetrics.Summary> rows = new ArrayList<>();
+
+    public void setRows(List<ReplayMetrics.Summary> rows) {
+        this.rows = rows;
+        fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return COLUMN_CLASSES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        ReplayMetrics.Summary summary = rows.get(row);
+        switch (column) {
+            case 0:
+                return summary.name;
+            case 1:
+                return summary.sends;
+            case 2:
+                return Math.round(summary.perSecond * 10) / 10.0;
+            case 3:
+                return millis(summary.latency.valueAtPercentile(50));
+            case 4:
+                return millis(summary.latency.valueAtPercentile(99));
+            case 5:
+                return millis(summary.latency.getMaxMicros());
+            case 6:
+                return summary.timeouts;
+            case 7:
+                return summary.errors;
+            case 8:
+                return summary.bytes / 1024;
+            default:
+                return null;
+        }
+    }
+
+    private static double millis(long micros) {
+        return Math.round(micros / 100.0) / 10.0;
+    }
+}
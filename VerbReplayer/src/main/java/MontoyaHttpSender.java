@@ -0,0 +1,39 @@
+import burp.api.montoya.http.Http;
+import burp.api.montoya.http.HttpMode;
+import burp.api.montoya.http.RequestOptions;
+import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends replays through Burp's own HTTP stack, so they honour its upstream proxy, TLS and
+ * session handling settings.
+ */
+public class MontoyaHttpSender implements HttpSender {
+
+    private final Http http;
+
+    public MontoyaHttpSender(Http http) {
+        this.http = http;
+    }
+
+    @Override
+    public HttpResponse send(HttpRequest request, long responseTimeoutMillis, String connectionId) {
+        RequestOptions options = RequestOptions.requestOptions();
+        if (responseTimeoutMillis > 0) options = options.withResponseTimeout(responseTimeoutMillis);
+        if (connectionId != null) options = options.withHttpMode(HttpMode.HTTP_1).withConnectionId(connectionId);
+        return http.sendRequest(request, options).response();
+    }
+
+    @Override
+    public List<HttpResponse> sendHttp2(List<HttpRequest> requests) {
+        List<HttpRequestResponse> sent = http.sendRequests(requests, HttpMode.HTTP_2);
+        List<HttpResponse> responses = new ArrayList<>(sent.size());
+        for (HttpRequestResponse requestResponse : sent) {
+            responses.add(requestResponse != null ? requestResponse.response() : null);
+        }
+        return responses;
+    }
+}
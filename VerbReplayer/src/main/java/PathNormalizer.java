@@ -0,0 +1,131 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Turns concrete request paths into endpoint templates, e.g. {@code /api/orders/123/items}
+ * becomes {@code /api/orders/{id}/items}, so every record of the same endpoint shares one
+ * replay slot and one group in the trees.
+ * <p>
+ * User rules are applied first to the whole path ({@code regex} or {@code regex => replacement}),
+ * then each segment that looks like a UUID, number, hex digest or base64 token is folded.
+ * Long segments only count as base64 tokens if they mix in digits the way random tokens do (an
+ * uppercase letter and a digit, or a third of the characters being digits); route names made
+ * of hyphen- or underscore-separated lowercase words, such as
+ * {@code oauth2-authorization-endpoint}, or of camelCase words are never folded, since two such routes would
+ * otherwise share a template and the second would never be replayed.
+ */
+public class PathNormalizer {
+
+    private static final Pattern UUID = Pattern.compile(
+            "[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}", Pattern.CASE_INSENSITIVE);
+    private static final Pattern NUMERIC = Pattern.compile("\\d+");
+    private static final Pattern HEX = Pattern.compile("(?=.*\\d)[0-9a-f]{8,}", Pattern.CASE_INSENSITIVE);
+    private static final Pattern BASE64 = Pattern.compile("[A-Za-z0-9+_=-]{20,}");
+    private static final Pattern ROUTE_WORDS = Pattern.compile(
+            "[a-z][a-z0-9]*(?:[-_][a-z][a-z0-9]*)+|[a-z]+(?:[A-Z][a-z]+)+[0-9]*");
+    private static final Pattern REPEATED_SLASHES = Pattern.compile("/{2,}");
+    private static final String RULE_SEPARATOR = "=>";
+    private static final String DEFAULT_REPLACEMENT = "{var}";
+
+    private volatile boolean foldIds = true;
+    private volatile List<Rule> rules = Collections.emptyList();
+
+    /**
+     * Returns the template for the given path. Query strings are not expected here.
+     */
+    public String template(String path) {
+        String result;
+        if (path == null || path.isEmpty()) {
+            result = "/";
+        } else {
+            result = path.contains("//") ? REPEATED_SLASHES.matcher(path).replaceAll("/") : path;
+        }
+        for (Rule rule : rules) {
+            result = rule.pattern.matcher(result).replaceAll(rule.replacement);
+        }
+        if (foldIds) {
+            result = foldSegments(result);
+        }
+        if (result.length() > 1 && result.endsWith("/")) {
+            result = result.substring(0, result.length() - 1);
+        }
+        return result;
+    }
+
+    private static String foldSegments(String path) {
+        String[] segments = path.split("/", -1);
+        StringBuilder sb = new StringBuilder(path.length());
+        for (int i = 0; i < segments.length; i++) {
+            if (i > 0) sb.append('/');
+            sb.append(foldSegment(segments[i]));
+        }
+        return sb.toString();
+    }
+
+    private static String foldSegment(String segment) {
+        if (segment.isEmpty() || segment.startsWith("{")) return segment;
+        if (UUID.matcher(segment).matches()) return "{uuid}";
+        if (NUMERIC.matcher(segment).matches()) return "{id}";
+        if (HEX.matcher(segment).matches()) return "{hex}";
+        if (isToken(segment)) return "{b64}";
+        return segment;
+    }
+
+    private static boolean isToken(String segment) {
+        if (!BASE64.matcher(segment).matches() || ROUTE_WORDS.matcher(segment).matches()) return false;
+        int digits = 0;
+        boolean upper = false;
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else if (c >= 'A' && c <= 'Z') {
+                upper = true;
+            }
+        }
+        return digits > 0 && (upper || digits * 3 >= segment.length());
+    }
+
+    /** Enables or disables the built-in UUID/number/hex/base64 folding. */
+    public void setFoldIds(boolean foldIds) {
+        this.foldIds = foldIds;
+    }
+
+    /**
+     * Replaces the user rules, one per line: {@code regex} or {@code regex => replacement}.
+     * Blank lines and lines starting with # are ignored.
+     *
+     * @throws PatternSyntaxException if any rule does not compile; the old rules are then kept
+     */
+    public void setRules(String ruleText) {
+        List<Rule> compiled = new ArrayList<>();
+        for (String line : ruleText.split("\\R")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+            String regex = trimmed;
+            String replacement = DEFAULT_REPLACEMENT;
+            int sep = trimmed.lastIndexOf(RULE_SEPARATOR);
+            if (sep >= 0) {
+                regex = trimmed.substring(0, sep).trim();
+                replacement = trimmed.substring(sep + RULE_SEPARATOR.length()).trim();
+            }
+            compiled.add(new Rule(Pattern.compile(regex, Pattern.CASE_INSENSITIVE),
+                    Matcher.quoteReplacement(replacement)));
+        }
+        rules = Collections.unmodifiableList(compiled);
+    }
+
+    private static class Rule {
+        final Pattern pattern;
+        final String replacement;
+
+        Rule(Pattern pattern, String replacement) {
+            this.pattern = pattern;
+            this.replacement = replacement;
+        }
+    }
+}
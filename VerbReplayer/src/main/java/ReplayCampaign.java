@@ -0,0 +1,336 @@
+import burp.api.montoya.MontoyaApi;
+import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import burp.api.montoya.proxy.ProxyHttpRequestResponse;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Replays traffic that was captured before the extension (or a verb) was enabled: walks the
+ * Proxy history or the Site map and feeds every item through the same pipeline as live traffic
+ * ({@link ReplayEngine#replayVariants}), so the request filter, dedup cache, baselines, priority
+ * scheduler and rate limits all apply.
+ * <p>
+ * Montoya has no paged or streaming access to either source: {@code proxy().history()} and
+ * {@code siteMap().requestResponses()} build the whole list before the first item can be
+ * replayed, so a large history is held in memory for the length of the campaign. How much that
+ * costs depends on how Burp backs the list items, which has not been measured. What the campaign
+ * itself adds is bounded: a single producer thread walks the list by index, only looks at one
+ * item at a time and keeps no copies, and it waits whenever the replay queue is half full,
+ * leaving the workers (and the rest of the queue) to live traffic.
+ * <p>
+ * Each start begins a new run; a producer left over from a stopped run notices that it is no
+ * longer current and exits without touching the position, even if it was still busy with an item.
+ * <p>
+ * The position is checkpointed to a small properties file every {@link #CHECKPOINT_INTERVAL}
+ * items and on pause/stop, so a campaign interrupted by an unload can be resumed. Replays still
+ * in the queue are lost on unload, so the checkpoint steps back past the most recent items until
+ * their replays cover the queued and running work. It is still best-effort: replays waiting for
+ * a rate limit or a retry are not counted, and live traffic in the queue only makes it step back
+ * further than needed. Proxy history
+ * only grows at the end, so its positions stay valid; the Site map has no stable order, so
+ * resuming it is best-effort (items replayed before are skipped by the dedup cache anyway).
+ */
+public class ReplayCampaign {
+
+    public enum Source {
+        PROXY_HISTORY("Proxy history"), SITE_MAP("Site map");
+
+        private final String label;
+
+        Source(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    public enum State { IDLE, RUNNING, PAUSED, STOPPED, FINISHED }
+
+    static final int CHECKPOINT_INTERVAL = 500;
+    private static final long BACKPRESSURE_WAIT_MILLIS = 50;
+    private static final long RATE_SAMPLE_MILLIS = 1_000;
+    private static final int RECENT_ITEMS = 1_024;
+
+    private final MontoyaApi api;
+    private final ReplayEngine engine;
+    private final File checkpointFile;
+
+    private volatile State state = State.IDLE;
+    private volatile Source source;
+    private volatile int position;
+    private volatile int total;
+    private volatile long variantsQueued;
+    private volatile double itemsPerSecond;
+    private volatile String firstUrl = ""; // identifies the list a checkpoint belongs to
+    private String resumeFirstUrl;
+    private Thread thread;
+    private int generation; // bumped by each start, so a stale producer can tell it is stale
+
+    // Ring of the last items that queued replays and how many, for stepping the checkpoint back.
+    private final int[] recentItems = new int[RECENT_ITEMS];
+    private final int[] recentVariants = new int[RECENT_ITEMS];
+    private int recentCount;
+    private int recentEnd;
+
+    public ReplayCampaign(MontoyaApi api, ReplayEngine engine, File checkpointFile) {
+        this.api = api;
+        this.engine = engine;
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Returns the item index a previous campaign over this source stopped at, or 0 if there is no
+     * usable checkpoint.
+     */
+    public int checkpointFor(Source source) {
+        Properties p = readCheckpoint();
+        if (p == null || !source.name().equals(p.getProperty("source"))) return 0;
+        try {
+            return Integer.parseInt(p.getProperty("next", "0"));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Starts walking the source on a background thread.
+     *
+     * @param startIndex item to start at: 0, or {@link #checkpointFor} to resume
+     * @return false if a campaign is already running or paused
+     */
+    public synchronized boolean start(Source source, int startIndex) {
+        if (state == State.RUNNING || state == State.PAUSED) return false;
+        this.source = source;
+        this.position = Math.max(0, startIndex);
+        Properties checkpoint = readCheckpoint();
+        this.resumeFirstUrl = checkpoint != null ? checkpoint.getProperty("first", "") : "";
+        this.total = 0;
+        this.variantsQueued = 0;
+        this.itemsPerSecond = 0;
+        this.recentCount = 0;
+        state = State.RUNNING;
+        int runGeneration = ++generation;
+        notifyAll(); // a paused producer of an earlier run wakes up and exits
+        thread = new Thread(() -> run(runGeneration), "VerbReplayer-campaign");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    public synchronized void pause() {
+        if (state != State.RUNNING) return;
+        state = State.PAUSED;
+        writeCheckpoint();
+    }
+
+    public synchronized void resume() {
+        if (state != State.PAUSED) return;
+        state = State.RUNNING;
+        notifyAll();
+    }
+
+    /** Stops the campaign and keeps its checkpoint so it can be resumed later. */
+    public synchronized void stop() {
+        if (state != State.RUNNING && state != State.PAUSED) return;
+        state = State.STOPPED;
+        writeCheckpoint();
+        notifyAll();
+    }
+
+    private void run(int runGeneration) {
+        try {
+            if (source == Source.PROXY_HISTORY) {
+                List<ProxyHttpRequestResponse> items = api.proxy().history();
+                walk(runGeneration, items.size(), i -> {
+                    ProxyHttpRequestResponse item = items.get(i);
+                    return replay(item.finalRequest(), item.hasResponse() ? item.originalResponse() : null);
+                }, items.isEmpty() ? "" : items.get(0).finalRequest().url());
+            } else {
+                List<HttpRequestResponse> items = api.siteMap().requestResponses();
+                walk(runGeneration, items.size(), i -> {
+                    HttpRequestResponse item = items.get(i);
+                    return replay(item.request(), item.hasResponse() ? item.response() : null);
+                }, items.isEmpty() ? "" : items.get(0).request().url());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            api.logging().logToError("Replay campaign stopped: " + e.getMessage());
+            synchronized (this) {
+                if (runGeneration == generation) stop();
+            }
+        }
+    }
+
+    private int replay(HttpRequest request, HttpResponse response) {
+        if (request == null) return 0;
+        try {
+            return engine.replayVariants(request, response);
+        } catch (Exception e) {
+            api.logging().logToError("Campaign: error queueing replays for " + request.url() + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private interface Item {
+        int replay(int index);
+    }
+
+    private void walk(int runGeneration, int size, Item item, String firstUrl) throws InterruptedException {
+        int index;
+        synchronized (this) {
+            if (runGeneration != generation) return;
+            total = size;
+            this.firstUrl = firstUrl;
+            if (position > 0 && (position > size || !firstUrl.equals(resumeFirstUrl))) {
+                api.logging().logToOutput("Campaign checkpoint does not match the current " + source + ", starting from the first item.");
+                position = 0;
+            }
+            index = position;
+        }
+        long sampleStart = System.currentTimeMillis();
+        int samplePosition = index;
+        while (index < size) {
+            if (!awaitRunnable(runGeneration)) return;
+            int queued = item.replay(index);
+            synchronized (this) {
+                if (runGeneration != generation) return;
+                variantsQueued += queued;
+                if (queued > 0) remember(index, queued);
+                position = ++index;
+                if (position % CHECKPOINT_INTERVAL == 0) writeCheckpoint();
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - sampleStart >= RATE_SAMPLE_MILLIS) {
+                double rate = (index - samplePosition) * 1000.0 / (now - sampleStart);
+                // Smoothed so the ETA does not jump with every backpressure pause.
+                itemsPerSecond = itemsPerSecond == 0 ? rate : itemsPerSecond * 0.7 + rate * 0.3;
+                sampleStart = now;
+                samplePosition = index;
+            }
+        }
+        synchronized (this) {
+            if (runGeneration == generation && state == State.RUNNING) {
+                state = State.FINISHED;
+                checkpointFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Blocks while the campaign is paused or the replay queue is half full.
+     *
+     * @return false once the campaign has been stopped or started again
+     */
+    private boolean awaitRunnable(int runGeneration) throws InterruptedException {
+        while (true) {
+            synchronized (this) {
+                while (state == State.PAUSED && runGeneration == generation) {
+                    wait();
+                }
+                if (state != State.RUNNING || runGeneration != generation) return false;
+            }
+            if (engine.getQueueDepth() < engine.getQueueCapacity() / 2) return true;
+            Thread.sleep(BACKPRESSURE_WAIT_MILLIS);
+        }
+    }
+
+    private void remember(int index, int variants) {
+        recentItems[recentEnd] = index;
+        recentVariants[recentEnd] = variants;
+        recentEnd = (recentEnd + 1) % RECENT_ITEMS;
+        recentCount = Math.min(recentCount + 1, RECENT_ITEMS);
+    }
+
+    /**
+     * Returns the item to resume at: the current position, stepped back past the latest items
+     * until their replays add up to the work still queued or running.
+     */
+    private int checkpointPosition() {
+        long pending = engine.getQueueDepth() + engine.getActiveCount();
+        int next = position;
+        for (int i = 1; i <= recentCount && pending > 0; i++) {
+            int slot = (recentEnd - i + RECENT_ITEMS) % RECENT_ITEMS;
+            next = recentItems[slot];
+            pending -= recentVariants[slot];
+        }
+        return next;
+    }
+
+    private Properties readCheckpoint() {
+        if (!checkpointFile.exists()) return null;
+        Properties p = new Properties();
+        try (InputStream in = new FileInputStream(checkpointFile)) {
+            p.load(in);
+            return p;
+        } catch (IOException e) {
+            api.logging().logToError("Error reading campaign checkpoint: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private synchronized void writeCheckpoint() {
+        if (source == null) return;
+        Properties p = new Properties();
+        p.setProperty("source", source.name());
+        p.setProperty("next", Integer.toString(checkpointPosition()));
+        p.setProperty("total", Integer.toString(total));
+        p.setProperty("first", firstUrl);
+        File tmp = new File(checkpointFile.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            p.store(out, "VerbReplayer replay campaign");
+        } catch (IOException e) {
+            api.logging().logToError("Error writing campaign checkpoint: " + e.getMessage());
+            return;
+        }
+        if (!tmp.renameTo(checkpointFile)) {
+            checkpointFile.delete();
+            tmp.renameTo(checkpointFile);
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    /** Index of the next item to process. */
+    public int getPosition() {
+        return position;
+    }
+
+    /** Number of items in the source, known once the campaign has started walking it. */
+    public int getTotal() {
+        return total;
+    }
+
+    public long getVariantsQueued() {
+        return variantsQueued;
+    }
+
+    public double getItemsPerSecond() {
+        return itemsPerSecond;
+    }
+
+    /** Estimated seconds left at the current rate, or -1 if unknown. */
+    public long getEtaSeconds() {
+        double rate = itemsPerSecond;
+        if (state != State.RUNNING || rate <= 0 || total == 0) return -1;
+        return (long) Math.ceil((total - position) / rate);
+    }
+}
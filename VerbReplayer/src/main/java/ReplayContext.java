@@ -0,0 +1,26 @@
+import burp.api.montoya.http.message.requests.HttpRequest;
+
+/**
+ * What the {@link ReplayEngine} needs from around it: the filter and path template settings, the
+ * verbs the user has selected, and somewhere to put the results. Implemented by the
+ * {@link UserInterface} inside Burp and by the load test harness (in the {@code loadtest} module)
+ * without it.
+ */
+public interface ReplayContext {
+
+    RequestFilter getRequestFilter();
+
+    PathNormalizer getPathNormalizer();
+
+    /** Returns false if replays of the verb are currently switched off. */
+    boolean isVerbSelected(String verb);
+
+    /**
+     * Stores one finished replay. Called on the replay workers.
+     *
+     * @param statusCode  the response status, or 0 if the replay failed
+     * @param response    the response text, or the failure reason in brackets
+     * @param interesting true if the replay belongs in Results rather than History
+     */
+    void logTraffic(String verb, String url, int statusCode, HttpRequest request, String response, boolean interesting);
+}
@@ -0,0 +1,103 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers which host + path + verb combinations have already been replayed so that
+ * repeated page views do not replay the same endpoint again.
+ * <p>
+ * An endpoint only counts as replayed once a replay of it got a response. While the replay is
+ * queued or in flight its key is reserved, so other views of the same page do not queue it again;
+ * if the replay is then dropped, cancelled or fails for good, the reservation is released and the
+ * next view of the endpoint tries again.
+ * <p>
+ * The cache is bounded: the least recently seen endpoints are evicted first, and an entry
+ * expires after the configured "replay again after" period (0 keeps it until evicted or reset).
+ */
+public class ReplayDedupCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 50_000;
+    public static final int DEFAULT_TTL_MINUTES = 0;
+    private static final Long PENDING = -1L;
+
+    private final LinkedHashMap<String, Long> seen = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > maxEntries;
+        }
+    };
+    private volatile boolean enabled = true;
+    private volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+    private volatile long ttlMillis = DEFAULT_TTL_MINUTES * 60_000L;
+    private long skipped;
+
+    /**
+     * Reserves the endpoint and returns true if the replay should go ahead, or returns false if
+     * the same endpoint and verb are already being replayed or were replayed recently enough to
+     * be skipped. A reservation must end in {@link #commit} or {@link #release}.
+     *
+     * @param path the endpoint template from {@link PathNormalizer#template(String)}
+     */
+    public synchronized boolean reserve(String host, String path, String verb) {
+        if (!enabled) return true;
+        String key = key(host, path, verb);
+        long now = System.currentTimeMillis();
+        Long lastReplayed = seen.get(key);
+        if (lastReplayed != null
+                && (lastReplayed.equals(PENDING) || ttlMillis <= 0 || now - lastReplayed < ttlMillis)) {
+            skipped++;
+            return false;
+        }
+        seen.put(key, PENDING);
+        return true;
+    }
+
+    /** Records the reserved endpoint as replayed; called once its replay got a response. */
+    public synchronized void commit(String host, String path, String verb) {
+        // Does nothing if the reservation was evicted or reset meanwhile.
+        seen.replace(key(host, path, verb), PENDING, System.currentTimeMillis());
+    }
+
+    /** Drops the reservation of a replay that was never answered, so the endpoint is tried again. */
+    public synchronized void release(String host, String path, String verb) {
+        seen.remove(key(host, path, verb), PENDING);
+    }
+
+    private static String key(String host, String path, String verb) {
+        return host + " " + verb + " " + path;
+    }
+
+    /** Forgets every replayed endpoint so everything is replayed again. */
+    public synchronized void reset() {
+        seen.clear();
+        skipped = 0;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public synchronized void setMaxEntries(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+        // Trim straight away rather than waiting for the next insert.
+        Iterator<String> it = seen.keySet().iterator();
+        while (seen.size() > this.maxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /** Sets how long a replayed endpoint is skipped for; 0 means until evicted or reset. */
+    public void setTtlMinutes(int minutes) {
+        this.ttlMillis = Math.max(0, minutes) * 60_000L;
+    }
+
+    public synchronized int size() {
+        return seen.size();
+    }
+
+    /** Number of replays skipped since the last reset. */
+    public synchronized long getSkippedCount() {
+        return skipped;
+    }
+}
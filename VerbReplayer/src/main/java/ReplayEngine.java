@@ -0,0 +1,623 @@
+import burp.api.montoya.http.message.MimeType;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import burp.api.montoya.logging.Logging;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Sends the verb variants of intercepted requests on a bounded pool of background workers,
+ * so the proxy thread can hand the original request straight back to Burp.
+ * Queued replays are ordered by the {@link ReplayScheduler}: state-changing verbs and endpoints
+ * not replayed yet go first, and busy hosts are spread out. Replays that do not fit in the queue
+ * are dropped (and counted) rather than blocking the proxy.
+ * Before sending, each replay asks the {@link HostRateLimiter} for its host; if the host is
+ * saturated the replay is parked on a timer and re-queued later instead of holding a worker.
+ * Right before sending, the host is checked again against the per-host toggles and Burp's scope
+ * ({@link RequestFilter#allowsHost}) and the History tab's verb checkboxes. Disabling a host or
+ * unticking a verb removes the matching queued replays at once and cancels the in-flight ones:
+ * their unsent batch siblings and retries are dropped.
+ * <p>
+ * Every send has a response deadline, and every
+ * replay ends in exactly one {@link Outcome}. Network errors and empty responses are retried up to
+ * the configured number of times after a jittered exponential backoff; timeouts are not retried,
+ * since a tarpitted endpoint would only tie up workers again. Failures that stay failures are
+ * counted and logged to History with status 0 and the reason as the response, so none is lost.
+ * The variants come from the {@link VerbMatrix}, which is also told each response's status so it
+ * can stop sending a class of variants a host keeps rejecting.
+ * Each response is compared with the original response's signature by the
+ * {@link ResponseComparator} to decide whether the variant goes to Results or History. The
+ * signature is computed by the first worker that needs it, not on the proxy thread.
+ * <p>
+ * With batching on, a worker that picks up a variant also takes the other queued variants of the
+ * same original request (as far as the rate limiter allows) and sends them together: in parallel
+ * over one multiplexed HTTP/2 connection if the original request used HTTP/2, otherwise one after
+ * another over a kept-alive HTTP/1.1 connection owned by the worker. Requests of an HTTP/2 batch
+ * that got no response count as NO_RESPONSE and are left to the retry policy; only a host whose
+ * HTTP/2 send throws is remembered and gets the HTTP/1.1 path from then on. Burp's {@code sendRequests} takes
+ * no request options, so HTTP/2 batches are bounded by Burp's own network timeouts instead.
+ * <p>
+ * Every send's latency, outcome and response size go to the {@link ReplayMetrics}.
+ * <p>
+ * The engine knows nothing about Swing or about Burp beyond its message types: settings come from
+ * and results go to a {@link ReplayContext}, and requests go out through an {@link HttpSender}.
+ */
+public class ReplayEngine {
+
+    /** How a replay ended. */
+    public enum Outcome { RESPONSE, TIMEOUT, NETWORK_ERROR, NO_RESPONSE, CANCELLED }
+
+    public static final int DEFAULT_CONCURRENCY = 8;
+    public static final int DEFAULT_RESPONSE_TIMEOUT_SECONDS = 30;
+    public static final int DEFAULT_MAX_RETRIES = 2;
+    static final long RETRY_BASE_DELAY_MILLIS = 500;
+    static final long RETRY_MAX_DELAY_MILLIS = 30_000;
+    public static final int MAX_CONCURRENCY = 64;
+    private static final int QUEUE_CAPACITY = 10_000;
+
+    private final Logging logging;
+    private final HttpSender sender;
+    private final ReplayContext context;
+    private final ThreadPoolExecutor executor;
+    private final ReplayScheduler scheduler = new ReplayScheduler(QUEUE_CAPACITY);
+    private final ScheduledExecutorService deferredExecutor;
+    private final HostRateLimiter rateLimiter = new HostRateLimiter();
+    private final ReplayDedupCache dedupCache = new ReplayDedupCache();
+    private final ResponseComparator responseComparator = new ResponseComparator();
+    private final VerbMatrix verbMatrix = new VerbMatrix();
+    private final AtomicInteger activeReplays = new AtomicInteger();
+    private final AtomicInteger deferredReplays = new AtomicInteger();
+    private final AtomicLong droppedReplays = new AtomicLong();
+    private final AtomicLongArray outcomes = new AtomicLongArray(Outcome.values().length);
+    private final AtomicLong retries = new AtomicLong();
+    private final Set<ReplayTask> inFlight = ConcurrentHashMap.newKeySet();
+    private volatile long responseTimeoutMillis = DEFAULT_RESPONSE_TIMEOUT_SECONDS * 1000L;
+    private volatile int maxRetries = DEFAULT_MAX_RETRIES;
+    private final AtomicLong http2Batches = new AtomicLong();
+    private final Set<String> http1OnlyHosts = ConcurrentHashMap.newKeySet();
+    private volatile boolean batchVariants;
+    private final ReplayMetrics metrics;
+
+    public ReplayEngine(Logging logging, HttpSender sender, ReplayContext context) {
+        this.logging = logging;
+        this.sender = sender;
+        this.context = context;
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread t = new Thread(r, "VerbReplayer-replay-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        executor = new ThreadPoolExecutor(DEFAULT_CONCURRENCY, DEFAULT_CONCURRENCY,
+                30, TimeUnit.SECONDS, scheduler, threadFactory,
+                (r, pool) -> {
+                    discard(r);
+                    long dropped = droppedReplays.incrementAndGet();
+                    if (dropped == 1 || dropped % 1000 == 0) {
+                        logging.logToError("Replay queue full, dropped " + dropped + " replays so far.");
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        scheduler.setEvictionListener(this::discard);
+        deferredExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "VerbReplayer-rate-limit");
+            t.setDaemon(true);
+            return t;
+        });
+        metrics = new ReplayMetrics(this::getQueueDepth, this::getActiveCount);
+        context.getRequestFilter().getHostScope().addDisableListener(
+                host -> cancelWhere(task -> task.hostname.equals(host)));
+    }
+
+    /**
+     * Runs a request through the request filter and the dedup cache and queues one variant for
+     * each row of the verb matrix whose verb is selected on the History tab. Used for live proxy traffic and by replay campaigns.
+     *
+     * @param originalResponse the response to the original request, used for the MIME type rules
+     *                         and as the baseline; null if there is none
+     * @return the number of variants queued
+     */
+    public int replayVariants(HttpRequest originalRequest, HttpResponse originalResponse) {
+        String hostname = originalRequest.httpService().host().toLowerCase();
+        String uri = originalRequest.pathWithoutQuery();
+
+        // Extension, host, MIME type, path and scope rules from the Settings tab.
+        MimeType stated = originalResponse != null ? originalResponse.statedMimeType() : MimeType.NONE;
+        MimeType inferred = originalResponse != null ? originalResponse.inferredMimeType() : MimeType.NONE;
+        RequestFilter.Verdict verdict = context.getRequestFilter().check(hostname, uri,
+                stated, inferred, originalRequest.url());
+        if (verdict != RequestFilter.Verdict.ACCEPTED) return 0;
+
+        // /users/123 and /users/456 are the same endpoint, so dedup on the template.
+        String template = context.getPathNormalizer().template(uri);
+        VariantGroup group = new VariantGroup("HTTP/2".equalsIgnoreCase(originalRequest.httpVersion()), originalResponse);
+        int queued = 0;
+        for (VerbMatrix.Variant variant : verbMatrix.getVariants()) {
+            if (!context.isVerbSelected(variant.effectiveVerb)) continue;
+            // Checked before dedup so a suspended variant is still replayed once its class is back.
+            if (!verbMatrix.allows(hostname, variant)) continue;
+            // Skip endpoints this variant has already been replayed against (or is queued for).
+            if (!dedupCache.reserve(hostname, template, variant.label)) continue;
+            submit(variant, hostname, template, hostname + uri, variant.apply(originalRequest), group);
+            queued++;
+        }
+        return queued;
+    }
+
+    /**
+     * Queues one verb variant for replay. Returns immediately.
+     *
+     * @param variant    the verb matrix row the request was built from
+     * @param hostname   the target host, used as the rate-limiting key
+     * @param template   the path template, used to tell whether the endpoint was replayed before
+     * @param displayUrl hostname + path, as shown in the trees
+     * @param request    the already rewritten request
+     * @param group      shared by the variants of one original request, with its response
+     */
+    private void submit(VerbMatrix.Variant variant, String hostname, String template, String displayUrl,
+                        HttpRequest request, VariantGroup group) {
+        ReplayTask task = new ReplayTask(variant, hostname, template, displayUrl, request, group);
+        if (executor.isShutdown()) {
+            releaseReservation(task);
+            return;
+        }
+        executor.execute(task);
+    }
+
+    /**
+     * Gives up a replay the queue refused, shed or evicted. Its endpoint is then replayed again
+     * on its next view, so under backpressure low-priority work is put off rather than lost.
+     */
+    private void discard(Runnable replay) {
+        if (replay instanceof ReplayTask) releaseReservation((ReplayTask) replay);
+    }
+
+    /**
+     * Releases the task's dedup reservation, so the endpoint is replayed again on its next view.
+     * Called on every path where the task ends without a response.
+     */
+    private void releaseReservation(ReplayTask task) {
+        dedupCache.release(task.hostname, task.template, task.verb);
+    }
+
+    private void replay(ReplayTask task) {
+        if (!admit(task)) return;
+        List<ReplayTask> batch = new ArrayList<>();
+        batch.add(task);
+        if (batchVariants) {
+            ReplayScheduler.Job sibling;
+            while ((sibling = scheduler.pollSibling(task.group)) != null) {
+                ReplayTask siblingTask = (ReplayTask) sibling;
+                if (admit(siblingTask)) batch.add(siblingTask);
+            }
+        }
+        activeReplays.addAndGet(batch.size());
+        inFlight.addAll(batch);
+        SendResult[] results = new SendResult[batch.size()];
+        try {
+            transmit(batch, results);
+        } finally {
+            for (int i = 0; i < batch.size(); i++) {
+                complete(batch.get(i), results[i] != null ? results[i]
+                        : new SendResult(null, Outcome.NETWORK_ERROR, "not sent", 0));
+            }
+        }
+    }
+
+    /**
+     * Re-checks the host and verb and takes a rate-limit permit for the task. Returns false if
+     * the task was cancelled or parked until the host may be sent to again.
+     */
+    private boolean admit(ReplayTask task) {
+        if (task.cancelled
+                || !context.getRequestFilter().allowsHost(task.hostname, task.request.url())
+                || !context.isVerbSelected(task.variant.effectiveVerb)) {
+            // Host or verb disabled (or host left the scope) after this replay was queued.
+            outcomes.incrementAndGet(Outcome.CANCELLED.ordinal());
+            releaseReservation(task);
+            return false;
+        }
+        long waitMillis = rateLimiter.tryAcquire(task.hostname);
+        if (waitMillis > 0) {
+            defer(task, waitMillis);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Sends the batch (all of one host) and stores each result at the task's index.
+     */
+    private void transmit(List<ReplayTask> batch, SendResult[] results) {
+        ReplayTask first = batch.get(0);
+        if (!batchVariants) {
+            results[0] = send(first, () -> sender.send(first.request, responseTimeoutMillis, null));
+            return;
+        }
+        if (first.group.http2 && !http1OnlyHosts.contains(first.hostname)) {
+            List<HttpRequest> requests = new ArrayList<>(batch.size());
+            List<Integer> indices = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                ReplayTask task = batch.get(i);
+                if (task.cancelled) {
+                    results[i] = new SendResult(null, Outcome.CANCELLED, "cancelled before sending", 0);
+                } else {
+                    requests.add(task.request);
+                    indices.add(i);
+                }
+            }
+            if (requests.isEmpty()) return;
+            long start = System.nanoTime();
+            try {
+                List<HttpResponse> sent = sender.sendHttp2(requests);
+                // Individual completion times are not reported, so each gets the batch's time.
+                long elapsed = System.nanoTime() - start;
+                for (int j = 0; j < indices.size(); j++) {
+                    HttpResponse response = j < sent.size() ? sent.get(j) : null;
+                    // Missing responses are not resent here; the retry policy decides in complete().
+                    results[indices.get(j)] = response != null
+                            ? new SendResult(response, Outcome.RESPONSE, null, elapsed)
+                            : new SendResult(null, Outcome.NO_RESPONSE, "no response in HTTP/2 batch", elapsed);
+                }
+                http2Batches.incrementAndGet();
+                return;
+            } catch (Exception e) {
+                // Only a failed send marks the host as HTTP/1.1 only; the batch then goes out that way.
+                logging.logToError("HTTP/2 batch to " + first.hostname + " failed, using HTTP/1.1: " + e.getMessage());
+                http1OnlyHosts.add(first.hostname);
+            }
+        }
+        // One connection per worker and host, so requests on it never overlap.
+        String connectionId = "VerbReplayer-" + Thread.currentThread().getName() + "-" + first.hostname;
+        for (int i = 0; i < batch.size(); i++) {
+            ReplayTask task = batch.get(i);
+            if (task.cancelled) {
+                results[i] = new SendResult(null, Outcome.CANCELLED, "cancelled before sending", 0);
+                continue;
+            }
+            results[i] = send(task, () -> sender.send(task.request, responseTimeoutMillis, connectionId));
+        }
+    }
+
+    /**
+     * Sends one request and classifies the result. A missing response counts as a timeout if the
+     * deadline had passed by then.
+     */
+    private SendResult send(ReplayTask task, Supplier<HttpResponse> transmission) {
+        long start = System.nanoTime();
+        try {
+            HttpResponse response = transmission.get();
+            long elapsed = System.nanoTime() - start;
+            if (response != null) return new SendResult(response, Outcome.RESPONSE, null, elapsed);
+            long timeout = responseTimeoutMillis;
+            if (timeout > 0 && TimeUnit.NANOSECONDS.toMillis(elapsed) >= timeout) {
+                return new SendResult(null, Outcome.TIMEOUT, "no response within " + timeout + " ms", elapsed);
+            }
+            return new SendResult(null, Outcome.NO_RESPONSE, "connection closed without a response", elapsed);
+        } catch (Exception e) {
+            long elapsed = System.nanoTime() - start;
+            String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            boolean timedOut = e instanceof TimeoutException || message.toLowerCase().contains("timed out");
+            return new SendResult(null, timedOut ? Outcome.TIMEOUT : Outcome.NETWORK_ERROR, message, elapsed);
+        }
+    }
+
+    /**
+     * Records one replay's outcome, logs it, returns its rate-limit permit and schedules a retry
+     * for transient failures.
+     */
+    private void complete(ReplayTask task, SendResult result) {
+        int statusCode = 0;
+        long retryAfterSeconds = -1;
+        inFlight.remove(task);
+        try {
+            scheduler.markCovered(task.hostname, task.template);
+            if (result.outcome != Outcome.CANCELLED) {
+                long bytes = result.response != null ? result.response.toByteArray().length() : 0;
+                metrics.recordSend(task.hostname, task.verb, result.outcome, result.elapsedNanos, bytes);
+            }
+            if (result.outcome == Outcome.RESPONSE) {
+                HttpResponse response = result.response;
+                dedupCache.commit(task.hostname, task.template, task.verb);
+                outcomes.incrementAndGet(Outcome.RESPONSE.ordinal());
+                statusCode = response.statusCode();
+                verbMatrix.recordOutcome(task.hostname, task.variant, statusCode);
+                retryAfterSeconds = parseRetryAfter(response.headerValue("Retry-After"));
+                // Log every replayed request; only variants that differ from the original go to Results.
+                ResponseSignature baseline = task.group.baseline(responseComparator);
+                boolean interesting = responseComparator.isInteresting(baseline, task.variant.method, response);
+                context.logTraffic(task.verb, task.displayUrl, statusCode, task.request, response.toString(), interesting);
+                return;
+            }
+            boolean transientFailure = result.outcome == Outcome.NETWORK_ERROR || result.outcome == Outcome.NO_RESPONSE;
+            if (transientFailure && !task.cancelled && task.attempts < maxRetries) {
+                task.attempts++;
+                retries.incrementAndGet();
+                defer(task, retryDelayMillis(task.attempts));
+                return;
+            }
+            outcomes.incrementAndGet(result.outcome.ordinal());
+            releaseReservation(task);
+            if (result.outcome == Outcome.CANCELLED) return;
+            String reason = result.outcome + ": " + result.detail
+                    + (task.attempts > 0 ? " (after " + task.attempts + " retries)" : "");
+            logging.logToError("Replayed " + task.verb + " " + task.displayUrl + " failed with " + reason);
+            context.logTraffic(task.verb, task.displayUrl, 0, task.request, "[" + reason + "]", false);
+        } catch (Exception e) {
+            logging.logToError("Error replaying " + task.verb + " " + task.displayUrl + ": " + e.getMessage());
+        } finally {
+            rateLimiter.release(task.hostname, statusCode, retryAfterSeconds);
+            activeReplays.decrementAndGet();
+        }
+    }
+
+    /** Exponential backoff with "equal jitter": half the step plus a random share of the other half. */
+    static long retryDelayMillis(int attempt) {
+        long step = Math.min(RETRY_MAX_DELAY_MILLIS, RETRY_BASE_DELAY_MILLIS << Math.min(attempt - 1, 16));
+        return step / 2 + ThreadLocalRandom.current().nextLong(step / 2 + 1);
+    }
+
+    /**
+     * Parks a replay whose host is currently rate limited (or that waits for a retry) and
+     * re-queues it once it may be sent.
+     */
+    private void defer(ReplayTask task, long delayMillis) {
+        if (deferredExecutor.isShutdown()) {
+            releaseReservation(task);
+            return;
+        }
+        deferredReplays.incrementAndGet();
+        deferredExecutor.schedule(() -> {
+            deferredReplays.decrementAndGet();
+            if (!executor.isShutdown()) {
+                executor.execute(task);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cancels the replays of verbs no longer ticked on the History tab; called when a verb
+     * checkbox is cleared.
+     */
+    public void cancelDeselectedVerbs() {
+        cancelWhere(task -> !context.isVerbSelected(task.variant.effectiveVerb));
+    }
+
+    /**
+     * Removes the matching replays from the queue and marks the matching in-flight ones as
+     * cancelled. Replays parked by the rate limiter or waiting for a retry are dropped when they
+     * come back around, by the check in {@link #admit}.
+     */
+    private void cancelWhere(Predicate<ReplayTask> matches) {
+        for (ReplayTask task : inFlight) {
+            if (matches.test(task)) task.cancelled = true;
+        }
+        long removed = 0;
+        // The queue iterates over a snapshot; remove() tells whether a worker took the task first.
+        for (Runnable r : executor.getQueue()) {
+            if (r instanceof ReplayTask && matches.test((ReplayTask) r) && executor.getQueue().remove(r)) {
+                releaseReservation((ReplayTask) r);
+                removed++;
+            }
+        }
+        outcomes.addAndGet(Outcome.CANCELLED.ordinal(), removed);
+    }
+
+    /**
+     * Parses a Retry-After header given in seconds. HTTP-date values are ignored.
+     */
+    private static long parseRetryAfter(String value) {
+        if (value == null) return -1;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Changes the number of replays that may be in flight at the same time.
+     */
+    public void setConcurrency(int concurrency) {
+        int n = Math.max(1, Math.min(MAX_CONCURRENCY, concurrency));
+        // Core size may never exceed max size, so order the two updates accordingly.
+        if (n > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(n);
+            executor.setCorePoolSize(n);
+        } else {
+            executor.setCorePoolSize(n);
+            executor.setMaximumPoolSize(n);
+        }
+    }
+
+    /**
+     * Turns sending the variants of one request together (HTTP/2 multiplexing, or HTTP/1.1
+     * keep-alive) on or off.
+     */
+    public void setBatchVariants(boolean batchVariants) {
+        this.batchVariants = batchVariants;
+    }
+
+    /** Number of variant batches sent over multiplexed HTTP/2 connections. */
+    public long getHttp2BatchCount() {
+        return http2Batches.get();
+    }
+
+    /** Number of hosts whose HTTP/2 batch failed and that are sent HTTP/1.1 keep-alive batches instead. */
+    public int getHttp1FallbackHostCount() {
+        return http1OnlyHosts.size();
+    }
+
+    public int getConcurrency() {
+        return executor.getMaximumPoolSize();
+    }
+
+    public HostRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public ReplayDedupCache getDedupCache() {
+        return dedupCache;
+    }
+
+    public ResponseComparator getResponseComparator() {
+        return responseComparator;
+    }
+
+    public VerbMatrix getVerbMatrix() {
+        return verbMatrix;
+    }
+
+    public ReplayScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public ReplayMetrics getMetrics() {
+        return metrics;
+    }
+
+    public int getQueueCapacity() {
+        return QUEUE_CAPACITY;
+    }
+
+    /** Number of replays waiting for a worker, including those parked by the rate limiter. */
+    public int getQueueDepth() {
+        return executor.getQueue().size() + deferredReplays.get();
+    }
+
+    /** Number of replays currently being sent. */
+    public int getActiveCount() {
+        return activeReplays.get();
+    }
+
+    /**
+     * Number of replays discarded because the queue was full: refused, pushed out by
+     * better-ranked replays, or shed as low priority.
+     */
+    public long getDroppedCount() {
+        return droppedReplays.get() + scheduler.getEvictedCount();
+    }
+
+    /** Number of replays discarded because their host or verb was disabled or the host went out of scope. */
+    public long getCancelledCount() {
+        return getOutcomeCount(Outcome.CANCELLED);
+    }
+
+    /** Number of replays that ended with the given outcome; retried attempts are not counted. */
+    public long getOutcomeCount(Outcome outcome) {
+        return outcomes.get(outcome.ordinal());
+    }
+
+    /** Number of retries scheduled after network errors or empty responses. */
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    /** Sets the response deadline for each send; 0 leaves it to Burp's network settings. */
+    public void setResponseTimeoutSeconds(int seconds) {
+        this.responseTimeoutMillis = Math.max(0, seconds) * 1000L;
+    }
+
+    /** Sets how often a send that failed with a network error or without a response is retried. */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = Math.max(0, maxRetries);
+    }
+
+    /**
+     * Stops accepting new replays and discards the queued ones. Called when the extension is unloaded.
+     */
+    public void shutdown() {
+        deferredExecutor.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    // ---------------------------
+    // One verb variant waiting to be sent.
+    // ---------------------------
+    private class ReplayTask extends ReplayScheduler.Job {
+        final VerbMatrix.Variant variant;
+        final String verb; // the variant's label, as logged
+        final String hostname;
+        final String template;
+        final String displayUrl;
+        final HttpRequest request;
+        final VariantGroup group;
+        volatile boolean cancelled;
+        int attempts; // retries so far
+
+        ReplayTask(VerbMatrix.Variant variant, String hostname, String template, String displayUrl,
+                   HttpRequest request, VariantGroup group) {
+            super(hostname, template, variant.effectiveVerb, group);
+            this.group = group;
+            this.variant = variant;
+            this.verb = variant.label;
+            this.template = template;
+            this.hostname = hostname;
+            this.displayUrl = displayUrl;
+            this.request = request;
+        }
+
+        @Override
+        public void run() {
+            replay(this);
+        }
+    }
+
+    // ---------------------------
+    // The variants of one original request, which may be sent together.
+    // ---------------------------
+    private static final class VariantGroup {
+        final boolean http2; // the original request used HTTP/2
+        private HttpResponse originalResponse; // dropped once the baseline has been computed
+        private ResponseSignature baseline;
+
+        VariantGroup(boolean http2, HttpResponse originalResponse) {
+            this.http2 = http2;
+            this.originalResponse = originalResponse;
+        }
+
+        /**
+         * Returns the signature of the original response, or null if there is none. Computed by
+         * the first worker that needs it rather than on the proxy thread, and then shared by all
+         * variants of the request.
+         */
+        synchronized ResponseSignature baseline(ResponseComparator comparator) {
+            if (baseline == null && originalResponse != null) {
+                baseline = comparator.signature(originalResponse);
+                originalResponse = null;
+            }
+            return baseline;
+        }
+    }
+
+    // ---------------------------
+    // What one send produced.
+    // ---------------------------
+    private static final class SendResult {
+        final HttpResponse response; // null unless the outcome is RESPONSE
+        final Outcome outcome;
+        final String detail;
+        final long elapsedNanos;
+
+        SendResult(HttpResponse response, Outcome outcome, String detail, long elapsedNanos) {
+            this.response = response;
+            this.outcome = outcome;
+            this.detail = detail;
+            this.elapsedNanos = elapsedNanos;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Streams logged entries to a file as JSON Lines, CSV or HAR 1.2, for reporting tools.
+ * <p>
+ * Entries are written one at a time: each entry's request and response are read (from the body
+ * store, usually), written out and dropped before the next one is read, so memory use does not
+ * grow with the size of the log. Only the list of entry references is held for the whole export.
+ * Exports are meant to run off the event thread; the export stops with an
+ * {@link InterruptedIOException} when its thread is interrupted.
+ * <ul>
+ * <li>JSON Lines: one object per entry with {@code id}, {@code timestamp}, {@code verb},
+ * {@code status}, {@code url}, {@code highlighted}, {@code request} and {@code response}.</li>
+ * <li>CSV: the same columns, with the raw messages as quoted (multi-line) fields.</li>
+ * <li>HAR: the messages are split into headers and bodies, and URLs use the scheme recorded when
+ * the entry was logged. Entries saved before the scheme was recorded fall back to {@code http}
+ * for port 80 and {@code https} otherwise. Timings are zero.
+ * Entries that got no response have status 0 and the failure reason as status text.</li>
+ * </ul>
+ */
+public class ReplayExporter {
+
+    public enum Format {
+        JSONL("JSON Lines", "jsonl"),
+        CSV("CSV", "csv"),
+        HAR("HAR", "har");
+
+        private final String label;
+        private final String extension;
+
+        Format(String label, String extension) {
+            this.label = label;
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        @Override
+        public String toString() {
+            return label + " (*." + extension + ")";
+        }
+    }
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int PROGRESS_INTERVAL = 256;
+
+    private final Format format;
+    private final Function<UserInterface.ReplayedRequestEntry, String> requestReader;
+    private final Function<UserInterface.ReplayedRequestEntry, String> responseReader;
+
+    /**
+     * @param requestReader  returns an entry's request text, wherever it is kept
+     * @param responseReader returns an entry's response text, wherever it is kept
+     */
+    public ReplayExporter(Format format,
+                          Function<UserInterface.ReplayedRequestEntry, String> requestReader,
+                          Function<UserInterface.ReplayedRequestEntry, String> responseReader) {
+        this.format = format;
+        this.requestReader = requestReader;
+        this.responseReader = responseReader;
+    }
+
+    /**
+     * Writes the entries that pass the filter, in list order.
+     *
+     * @param entries  a snapshot of the entries; it must not change during the export
+     * @param progress called now and then with the number of entries looked at so far
+     * @return the number of entries written
+     */
+    public int export(List<UserInterface.ReplayedRequestEntry> entries,
+                      Predicate<UserInterface.ReplayedRequestEntry> filter,
+                      Writer out, IntConsumer progress) throws IOException {
+        int written = 0;
+        writeStart(out);
+        for (int i = 0; i < entries.size(); i++) {
+            if (i % PROGRESS_INTERVAL == 0) {
+                if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException("Export cancelled");
+                progress.accept(i);
+            }
+            UserInterface.ReplayedRequestEntry entry = entries.get(i);
+            if (!filter.test(entry)) continue;
+            String requestText = orEmpty(requestReader.apply(entry));
+            String response = orEmpty(responseReader.apply(entry));
+            switch (format) {
+                case JSONL:
+                    writeJsonLine(out, entry, requestText, response);
+                    break;
+                case CSV:
+                    writeCsvRow(out, entry, requestText, response);
+                    break;
+                case HAR:
+                    if (written > 0) out.write(",");
+                    writeHarEntry(out, entry, requestText, response);
+                    break;
+            }
+            written++;
+        }
+        writeEnd(out);
+        progress.accept(entries.size());
+        return written;
+    }
+
+    private void writeStart(Writer out) throws IOException {
+        if (format == Format.CSV) {
+            out.write("id,timestamp,verb,status,url,highlighted,request,response\n");
+        } else if (format == Format.HAR) {
+            out.write("{\"log\":{\"version\":\"1.2\",\"creator\":{\"name\":\"VerbReplayer\",\"version\":\"1.0\"},\"entries\":[");
+        }
+    }
+
+    private void writeEnd(Writer out) throws IOException {
+        if (format == Format.HAR) {
+            out.write("\n]}}\n");
+        }
+    }
+
+    // ---------------------------
+    // JSON Lines and CSV
+    // ---------------------------
+
+    private static void writeJsonLine(Writer out, UserInterface.ReplayedRequestEntry entry,
+                                      String requestText, String response) throws IOException {
+        out.write("{\"id\":" + entry.id + ",\"timestamp\":");
+        writeJsonString(out, entry.timestamp);
+        out.write(",\"verb\":");
+        writeJsonString(out, entry.verb);
+        out.write(",\"status\":" + entry.statusCode + ",\"url\":");
+        writeJsonString(out, entry.url);
+        out.write(",\"highlighted\":" + entry.highlighted + ",\"request\":");
+        writeJsonString(out, requestText);
+        out.write(",\"response\":");
+        writeJsonString(out, response);
+        out.write("}\n");
+    }
+
+    private static void writeCsvRow(Writer out, UserInterface.ReplayedRequestEntry entry,
+                                    String requestText, String response) throws IOException {
+        out.write(entry.id + "," + csv(entry.timestamp) + "," + csv(entry.verb) + "," + entry.statusCode + ","
+                + csv(entry.url) + "," + entry.highlighted + ",");
+        out.write(csv(requestText));
+        out.write(",");
+        out.write(csv(response));
+        out.write("\n");
+    }
+
+    /** Quotes a CSV field if it contains a separator, quote or line break. */
+    static String csv(String value) {
+        if (value == null) return "";
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /** Writes a JSON string literal, copying runs of plain characters straight to the writer. */
+    private static void writeJsonString(Writer out, String s) throws IOException {
+        if (s == null) {
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c != '"' && c != '\\' && c >= 0x20) continue;
+            out.write(s, start, i - start);
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                default: out.write(String.format("\\u%04x", (int) c));
+            }
+            start = i + 1;
+        }
+        out.write(s, start, s.length() - start);
+        out.write('"');
+    }
+
+    // ---------------------------
+    // HAR
+    // ---------------------------
+
+    private static void writeHarEntry(Writer out, UserInterface.ReplayedRequestEntry entry,
+                                      String requestText, String response) throws IOException {
+        Message request = Message.parse(requestText);
+        String[] requestLine = request.startLine.split(" ", 3);
+        String method = requestLine.length > 1 ? requestLine[0] : entry.verb;
+        String target = requestLine.length > 1 ? requestLine[1] : "/";
+        String httpVersion = requestLine.length > 2 ? requestLine[2] : "HTTP/1.1";
+
+        out.write("\n{\"startedDateTime\":");
+        writeJsonString(out, startedDateTime(entry.timestamp));
+        out.write(",\"time\":0,\"request\":{\"method\":");
+        writeJsonString(out, method);
+        out.write(",\"url\":");
+        writeJsonString(out, absoluteUrl(entry, request, target));
+        out.write(",\"httpVersion\":");
+        writeJsonString(out, httpVersion);
+        out.write(",\"cookies\":[],\"headers\":");
+        writeHeaders(out, request.headers);
+        out.write(",\"queryString\":[");
+        int q = target.indexOf('?');
+        if (q >= 0) {
+            boolean first = true;
+            for (String pair : target.substring(q + 1).split("&")) {
+                if (pair.isEmpty()) continue;
+                int eq = pair.indexOf('=');
+                out.write(first ? "{\"name\":" : ",{\"name\":");
+                writeJsonString(out, eq < 0 ? pair : pair.substring(0, eq));
+                out.write(",\"value\":");
+                writeJsonString(out, eq < 0 ? "" : pair.substring(eq + 1));
+                out.write("}");
+                first = false;
+            }
+        }
+        out.write("],\"headersSize\":-1,\"bodySize\":" + request.body.length());
+        if (!request.body.isEmpty()) {
+            out.write(",\"postData\":{\"mimeType\":");
+            writeJsonString(out, orEmpty(request.header("Content-Type")));
+            out.write(",\"text\":");
+            writeJsonString(out, request.body);
+            out.write("}");
+        }
+
+        out.write("},\"response\":");
+        if (response.startsWith("HTTP/")) {
+            Message message = Message.parse(response);
+            String[] statusLine = message.startLine.split(" ", 3);
+            out.write("{\"status\":" + entry.statusCode + ",\"statusText\":");
+            writeJsonString(out, statusLine.length > 2 ? statusLine[2] : "");
+            out.write(",\"httpVersion\":");
+            writeJsonString(out, statusLine[0]);
+            out.write(",\"cookies\":[],\"headers\":");
+            writeHeaders(out, message.headers);
+            out.write(",\"content\":{\"size\":" + message.body.length() + ",\"mimeType\":");
+            writeJsonString(out, orEmpty(message.header("Content-Type")));
+            out.write(",\"text\":");
+            writeJsonString(out, message.body);
+            out.write("},\"redirectURL\":");
+            writeJsonString(out, orEmpty(message.header("Location")));
+            out.write(",\"headersSize\":-1,\"bodySize\":" + message.body.length() + "}");
+        } else {
+            // No response was received; the log holds the failure reason, e.g. "[timeout]".
+            String reason = response.startsWith("[") && response.endsWith("]")
+                    ? response.substring(1, response.length() - 1) : response;
+            out.write("{\"status\":0,\"statusText\":");
+            writeJsonString(out, reason);
+            out.write(",\"httpVersion\":\"\",\"cookies\":[],\"headers\":[],\"content\":{\"size\":0,\"mimeType\":\"\"}"
+                    + ",\"redirectURL\":\"\",\"headersSize\":-1,\"bodySize\":-1}");
+        }
+        out.write(",\"cache\":{},\"timings\":{\"send\":0,\"wait\":0,\"receive\":0}"
+                + ",\"_id\":" + entry.id + ",\"_highlighted\":" + entry.highlighted + "}");
+    }
+
+    private static void writeHeaders(Writer out, List<String[]> headers) throws IOException {
+        out.write("[");
+        for (int i = 0; i < headers.size(); i++) {
+            out.write(i == 0 ? "{\"name\":" : ",{\"name\":");
+            writeJsonString(out, headers.get(i)[0]);
+            out.write(",\"value\":");
+            writeJsonString(out, headers.get(i)[1]);
+            out.write("}");
+        }
+        out.write("]");
+    }
+
+    private static String absoluteUrl(UserInterface.ReplayedRequestEntry entry, Message request, String target) {
+        if (target.startsWith("http://") || target.startsWith("https://")) return target;
+        String authority = request.header("Host");
+        if (authority == null || authority.isEmpty()) {
+            String url = orEmpty(entry.url);
+            int slash = url.indexOf('/');
+            authority = slash < 0 ? url : url.substring(0, slash);
+        }
+        String scheme = entry.scheme != null ? entry.scheme : authority.endsWith(":80") ? "http" : "https";
+        return scheme + "://" + authority + (target.startsWith("/") ? target : "/" + target);
+    }
+
+    private static String startedDateTime(String timestamp) {
+        try {
+            return LocalDateTime.parse(timestamp, TIMESTAMP_FORMAT).atZone(ZoneId.systemDefault())
+                    .toOffsetDateTime().toString();
+        } catch (DateTimeParseException | NullPointerException e) {
+            return "1970-01-01T00:00:00Z";
+        }
+    }
+
+    private static String orEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    // ---------------------------
+    // A raw HTTP message split into start line, headers and body.
+    // ---------------------------
+    private static final class Message {
+        final String startLine;
+        final List<String[]> headers;
+        final String body;
+
+        private Message(String startLine, List<String[]> headers, String body) {
+            this.startLine = startLine;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        static Message parse(String raw) {
+            int end = raw.indexOf("\r\n\r\n");
+            int bodyStart = end + 4;
+            if (end < 0) {
+                end = raw.indexOf("\n\n");
+                bodyStart = end + 2;
+            }
+            if (end < 0) {
+                end = raw.length();
+                bodyStart = raw.length();
+            }
+            String[] lines = raw.substring(0, end).split("\r?\n");
+            List<String[]> headers = new ArrayList<>(lines.length);
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon <= 0) continue;
+                headers.add(new String[]{lines[i].substring(0, colon).trim(), lines[i].substring(colon + 1).trim()});
+            }
+            return new Message(lines[0], headers, raw.substring(bodyStart));
+        }
+
+        String header(String name) {
+            for (String[] header : headers) {
+                if (header[0].equalsIgnoreCase(name)) return header[1];
+            }
+            return null;
+        }
+    }
+}
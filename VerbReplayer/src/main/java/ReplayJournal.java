@@ -0,0 +1,873 @@
+import burp.api.montoya.logging.Logging;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only journal that persists the logged entries.
+ * <p>
+ * Every change (a new entry, a highlight toggle, a "clear non-highlighted") is one record:
+ * {@code [int length][payload][int length]}. The trailing length lets a torn write at the end
+ * of the file be detected and cut off on the next load, and lets the file be read backwards so
+ * the newest entries can be shown first ({@link #loadNewestFirst}). Records are queued by the
+ * caller and written in batches by a background thread, which fsyncs after each batch. Highlight
+ * toggles and clears leave dead records behind, so the writer periodically compacts the file by
+ * rewriting only the live entries to a new file and swapping it in.
+ * <p>
+ * Request and response texts live in the content-addressed {@link BodyStore}, and an ADD record
+ * only carries their offsets there. If the store could not be opened the texts are written into
+ * the record instead, and moved into the store on a later load.
+ * When a compaction leaves enough of the store's blobs unreferenced, the live ones are copied
+ * into a new store file as well (see {@link BodyStore#beginCompaction()}), and the journal and
+ * store are swapped together: the new journal is first renamed to a "committed" file, and
+ * {@link #finishInterruptedCompaction} completes both swaps on the next start if the extension
+ * stopped in between.
+ */
+public class ReplayJournal {
+
+    private static final int MAGIC = 0x56524A31; // "VRJ1"
+    private static final byte ADD = 1;
+    private static final byte HIGHLIGHT = 2;
+    private static final byte CLEAR_NON_HIGHLIGHTED = 3;
+    private static final byte BODIES_INLINE = 0;
+    private static final byte BODIES_IN_STORE = 1;
+    private static final byte SCHEME_UNKNOWN = 0;
+    private static final byte SCHEME_HTTP = 1;
+    private static final byte SCHEME_HTTPS = 2;
+    private static final long COMPACTION_INTERVAL_MILLIS = 10 * 60_000L;
+    private static final int MAX_RECORD_LENGTH = 256 * 1024 * 1024;
+
+    private final Logging logging;
+    private final File file;
+    private final BodyStore bodyStore;   // may be null if the body file could not be opened
+    private final BlockingQueue<byte[]> pending = new LinkedBlockingQueue<>();
+    private volatile boolean running;
+    private Thread writerThread;
+
+    // Owned by the writer thread once started.
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+    private boolean garbageSinceCompaction;
+    private long lastCompactionMillis = System.currentTimeMillis();
+
+    public ReplayJournal(Logging logging, File file, BodyStore bodyStore) {
+        this.logging = logging;
+        this.file = file;
+        this.bodyStore = bodyStore;
+    }
+
+    /**
+     * Receives the entries of a journal loaded by {@link #loadNewestFirst}, on the loading thread.
+     */
+    public interface LoadListener {
+        /**
+         * Called once, before any entries, with the highest entry id in the journal (0 if it has
+         * none). Ids increase along the file, so this is found within the last few records.
+         */
+        void idsKnown(long maxId);
+
+        /**
+         * Called with the next chunk of live entries. Each list is in logging order, and every
+         * entry is older than all entries passed in earlier chunks.
+         *
+         * @param progress the fraction of the file read so far
+         * @return false to stop loading
+         */
+        boolean chunk(List<UserInterface.ReplayedRequestEntry> successEntries,
+                      List<UserInterface.ReplayedRequestEntry> errorEntries, double progress);
+    }
+
+    /**
+     * Replays the journal into the given lists, in the order the entries were logged.
+     * A torn record at the end of the file is truncated away.
+     *
+     * @return the highest entry id seen, or 0 if the journal is empty
+     */
+    public long load(List<UserInterface.ReplayedRequestEntry> successEntries,
+                     List<UserInterface.ReplayedRequestEntry> errorEntries) throws IOException {
+        long[] maxId = {0};
+        List<List<UserInterface.ReplayedRequestEntry>> successChunks = new ArrayList<>();
+        List<List<UserInterface.ReplayedRequestEntry>> errorChunks = new ArrayList<>();
+        loadNewestFirst(Integer.MAX_VALUE, new LoadListener() {
+            @Override
+            public void idsKnown(long id) {
+                maxId[0] = id;
+            }
+
+            @Override
+            public boolean chunk(List<UserInterface.ReplayedRequestEntry> success,
+                                 List<UserInterface.ReplayedRequestEntry> error, double progress) {
+                successChunks.add(success);
+                errorChunks.add(error);
+                return true;
+            }
+        });
+        for (int i = successChunks.size() - 1; i >= 0; i--) {
+            successEntries.addAll(successChunks.get(i));
+            errorEntries.addAll(errorChunks.get(i));
+        }
+        return maxId[0];
+    }
+
+    /**
+     * Reads the journal from its end towards its start and passes the live entries to the
+     * listener in chunks of about {@code chunkSize}, newest first, so the most recent history
+     * can be shown before the rest is read. A torn record at the end of the file is truncated
+     * away first.
+     * <p>
+     * Reading backwards, a HIGHLIGHT or CLEAR_NON_HIGHLIGHTED record comes before the entries it
+     * applies to. The first HIGHLIGHT seen for an id is its final state. An entry is cleared if
+     * it was not highlighted at any later clear; its state at a clear is the value of the next
+     * HIGHLIGHT found past the clear (or of its ADD record), which is tracked per id by counting
+     * the clears seen so far. Only ids with HIGHLIGHT records whose ADD has not been reached yet
+     * are kept in memory.
+     * <p>
+     * If a record before the end is corrupt, reading stops there and the entries after it are
+     * still passed on. The intact records after it are copied into a new journal, which replaces
+     * the damaged file, and the damaged file is kept next to it (see {@link #setAside}), so the
+     * writer never appends to it or compacts it.
+     */
+    public void loadNewestFirst(int chunkSize, LoadListener listener) throws IOException {
+        if (!file.exists()) {
+            listener.idsKnown(0);
+            return;
+        }
+        long validLength = validLength();
+        if (validLength < file.length()) {
+            logging.logToError("Journal " + file.getName() + " has a torn tail, truncating to " + validLength + " bytes.");
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+        boolean idsKnown = false;
+        int records = 0;
+        int live = 0;
+        int clears = 0;
+        boolean inlineBodies = false;
+        int missingBodies = 0;
+        Map<Long, HighlightHistory> highlights = new HashMap<>();
+        List<UserInterface.ReplayedRequestEntry> success = new ArrayList<>();
+        List<UserInterface.ReplayedRequestEntry> error = new ArrayList<>();
+        long intactFrom = validLength; // start of the records read so far
+        boolean corrupt = false;
+        try (ReverseRecordReader reader = new ReverseRecordReader(file, validLength)) {
+            try {
+                while (true) {
+                    intactFrom = reader.position();
+                    byte[] payload = reader.previous();
+                    if (payload == null) break;
+                    records++;
+                    byte type = payload[0];
+                    DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload, 1, payload.length - 1));
+                    switch (type) {
+                        case ADD: {
+                            boolean isSuccess = in.readBoolean();
+                            UserInterface.ReplayedRequestEntry entry = readEntry(in);
+                            if (!idsKnown) {
+                                listener.idsKnown(entry.id);
+                                idsKnown = true;
+                            }
+                            HighlightHistory history = highlights.remove(entry.id);
+                            boolean cleared = history == null
+                                    ? clears > 0 && !entry.highlighted
+                                    : history.cleared || (clears > history.clearsSeen && !entry.highlighted);
+                            if (history != null) entry.highlighted = history.finalState;
+                            if (isSuccess && cleared) break;
+                            if (!hasBlobs(payload)) {
+                                inlineBodies = true;
+                                if (bodyStore != null) moveToStore(entry);
+                            } else if (bodyStore == null
+                                    || !bodyStore.contains(entry.requestOffset)
+                                    || !bodyStore.contains(entry.responseOffset)) {
+                                // The blob file is missing or was cut short by a crash.
+                                missingBodies++;
+                                entry.requestOffset = -1;
+                                entry.responseOffset = -1;
+                            } else {
+                                bodyStore.noteReferences(entry);
+                            }
+                            (isSuccess ? success : error).add(entry);
+                            live++;
+                            break;
+                        }
+                        case HIGHLIGHT: {
+                            long id = in.readLong();
+                            boolean state = in.readBoolean();
+                            HighlightHistory history = highlights.get(id);
+                            if (history == null) {
+                                history = new HighlightHistory(state);
+                                highlights.put(id, history);
+                            }
+                            // The entry had this state at every clear between this record and the next one.
+                            if (clears > history.clearsSeen && !state) history.cleared = true;
+                            history.clearsSeen = clears;
+                            break;
+                        }
+                        case CLEAR_NON_HIGHLIGHTED:
+                            clears++;
+                            break;
+                        default:
+                            throw new CorruptRecordException("Unknown journal record type " + type);
+                    }
+                    if (success.size() + error.size() >= chunkSize) {
+                        if (!listener.chunk(reversed(success), reversed(error), 1 - (double) reader.position() / validLength)) {
+                            return;
+                        }
+                        success = new ArrayList<>();
+                        error = new ArrayList<>();
+                    }
+                }
+            } catch (CorruptRecordException | EOFException e) {
+                logging.logToError("Journal " + file.getName() + " is damaged before offset " + intactFrom
+                        + " (" + e.getMessage() + "); loading only the entries after it.");
+                corrupt = true;
+            }
+        }
+        if (!idsKnown) listener.idsKnown(0);
+        if (!success.isEmpty() || !error.isEmpty()) listener.chunk(reversed(success), reversed(error), 1);
+        if (corrupt) {
+            File damaged = replaceWithIntactTail(intactFrom, validLength);
+            logging.logToError("Moved the damaged journal to " + damaged.getName() + ".");
+        }
+        if (missingBodies > 0) {
+            logging.logToError(missingBodies + " journal entries point at missing request/response bodies.");
+        }
+        // Start with a compaction if most of the file is dead records, or if inline
+        // bodies were just moved into the body store.
+        garbageSinceCompaction = records > 2 * live + 1000 || (inlineBodies && bodyStore != null);
+        if (garbageSinceCompaction) lastCompactionMillis = 0;
+    }
+
+    /**
+     * Replaces the journal with a new file holding only its records between the given offsets,
+     * and keeps a copy of the old file under a ".corrupt-" name for inspection. The journal is
+     * the old or the new file at every point, even if the extension stops in between.
+     *
+     * @return the copy of the old file
+     */
+    private File replaceWithIntactTail(long from, long to) throws IOException {
+        File tail = new File(file.getPath() + ".tail");
+        File damaged = damagedFile();
+        try {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                 FileOutputStream fos = new FileOutputStream(tail);
+                 DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024))) {
+                dos.writeInt(MAGIC);
+                byte[] buffer = new byte[64 * 1024];
+                raf.seek(from);
+                for (long left = to - from; left > 0; ) {
+                    int n = (int) Math.min(buffer.length, left);
+                    raf.readFully(buffer, 0, n);
+                    dos.write(buffer, 0, n);
+                    left -= n;
+                }
+                dos.flush();
+                fos.getFD().sync();
+            }
+            Files.copy(file.toPath(), damaged.toPath());
+            Files.move(tail.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(tail.toPath());
+            throw e;
+        }
+        return damaged;
+    }
+
+    /**
+     * Moves a journal that could not be read out of the way, to a ".corrupt-" name, so the
+     * writer starts a new file instead of appending to it. Must be called before {@link #start}.
+     *
+     * @return the file it was moved to, or null if there was no journal
+     */
+    public File setAside() throws IOException {
+        if (!file.exists()) return null;
+        File damaged = damagedFile();
+        Files.move(file.toPath(), damaged.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        return damaged;
+    }
+
+    private File damagedFile() {
+        return new File(file.getPath() + ".corrupt-" + System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the length of the journal without a torn record at its end. The last record's two
+     * length fields are checked first; only if they disagree is the whole file scanned forwards.
+     */
+    private long validLength() throws IOException {
+        long length = file.length();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (length >= 4) {
+                if (raf.readInt() != MAGIC) throw new IOException(file.getName() + " is not a VerbReplayer journal");
+                if (length == 4) return length;
+                if (length >= 4 + 9) {
+                    raf.seek(length - 4);
+                    int recordLength = raf.readInt();
+                    long start = length - 8 - recordLength;
+                    if (recordLength > 0 && recordLength <= MAX_RECORD_LENGTH && start >= 4) {
+                        raf.seek(start);
+                        if (raf.readInt() == recordLength) return length;
+                    }
+                }
+            }
+        }
+        return scan(file, (type, in) -> {
+        });
+    }
+
+    private static <T> List<T> reversed(List<T> list) {
+        Collections.reverse(list);
+        return list;
+    }
+
+    // Highlight records of one id seen so far while reading backwards.
+    private static final class HighlightHistory {
+        final boolean finalState;
+        int clearsSeen;         // clears seen (backwards) when the last of its records was read
+        boolean cleared;        // not highlighted at some clear after its ADD record
+
+        HighlightHistory(boolean finalState) {
+            this.finalState = finalState;
+        }
+    }
+
+    /**
+     * Completes a journal and body store compaction that was interrupted after its commit point,
+     * or drops the leftovers of one interrupted before it. Must be called before the body store
+     * and the journal are opened.
+     */
+    public static void finishInterruptedCompaction(File journalFile, File blobFile) throws IOException {
+        File committed = committedFile(journalFile);
+        File newBlobs = BodyStore.compactionFile(blobFile);
+        if (committed.exists()) {
+            if (newBlobs.exists()) {
+                Files.move(newBlobs.toPath(), blobFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            Files.move(committed.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } else {
+            Files.deleteIfExists(newBlobs.toPath());
+        }
+    }
+
+    private static File committedFile(File journalFile) {
+        return new File(journalFile.getPath() + ".committed");
+    }
+
+    /**
+     * Writes the given entries as the initial content of a new journal. Used once, to migrate
+     * the whole-list serialization files written by older versions.
+     */
+    public void writeInitial(List<UserInterface.ReplayedRequestEntry> successEntries,
+                             List<UserInterface.ReplayedRequestEntry> errorEntries) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp);
+             DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos))) {
+            dos.writeInt(MAGIC);
+            for (UserInterface.ReplayedRequestEntry entry : successEntries) writeRecord(dos, addRecord(entry, true));
+            for (UserInterface.ReplayedRequestEntry entry : errorEntries) writeRecord(dos, addRecord(entry, false));
+            dos.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (bodyStore != null) {
+            for (UserInterface.ReplayedRequestEntry entry : successEntries) bodyStore.journaled(entry);
+            for (UserInterface.ReplayedRequestEntry entry : errorEntries) bodyStore.journaled(entry);
+        }
+    }
+
+    /**
+     * Starts the background writer. Records appended before this are kept until it starts.
+     */
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        writerThread = new Thread(this::writerLoop, "VerbReplayer-journal");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    public void appendAdd(UserInterface.ReplayedRequestEntry entry, boolean success) {
+        pending.add(addRecord(entry, success));
+        // Only now, so a compaction always finds the entry's blobs in one place or the other.
+        if (bodyStore != null) bodyStore.journaled(entry);
+    }
+
+    public void appendHighlight(long id, boolean state) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(10);
+        try (DataOutputStream dos = new DataOutputStream(bytes)) {
+            dos.writeByte(HIGHLIGHT);
+            dos.writeLong(id);
+            dos.writeBoolean(state);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        pending.add(bytes.toByteArray());
+    }
+
+    public void appendClearNonHighlighted() {
+        pending.add(new byte[]{CLEAR_NON_HIGHLIGHTED});
+    }
+
+    /**
+     * Writes whatever is still queued and stops the writer. Called when the extension is unloaded.
+     */
+    public void close() {
+        running = false;
+        Thread t = writerThread;
+        if (t == null) return;
+        t.interrupt();
+        try {
+            t.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---------------------------
+    // Background writer
+    // ---------------------------
+    private void writerLoop() {
+        List<byte[]> batch = new ArrayList<>();
+        try {
+            openForAppend();
+            while (running || !pending.isEmpty()) {
+                try {
+                    byte[] first = pending.poll(1, TimeUnit.SECONDS);
+                    if (first != null) {
+                        batch.add(first);
+                        pending.drainTo(batch);
+                        writeBatch(batch);
+                        batch.clear();
+                    }
+                } catch (InterruptedException e) {
+                    // close() interrupts us; drain what is left and exit.
+                    running = false;
+                    pending.drainTo(batch);
+                    writeBatch(batch);
+                    batch.clear();
+                }
+                if (garbageSinceCompaction
+                        && System.currentTimeMillis() - lastCompactionMillis > COMPACTION_INTERVAL_MILLIS) {
+                    try {
+                        compact();
+                    } catch (IOException e) {
+                        // Appending still works; only the dead records stay until the next try.
+                        logging.logToError("Journal compaction failed: " + e.getMessage());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logging.logToError("Journal writer stopped: " + e.getMessage());
+        } finally {
+            closeQuietly();
+        }
+    }
+
+    private void writeBatch(List<byte[]> batch) throws IOException {
+        if (batch.isEmpty()) return;
+        // Bodies first, so no record we are about to sync points past the end of the body file.
+        if (bodyStore != null) bodyStore.force();
+        boolean relocate = bodyStore != null && bodyStore.hasRelocations();
+        for (byte[] record : batch) {
+            // Queued before a compaction moved the blobs it points at.
+            if (relocate && hasBlobs(record)) relocateBodies(record);
+            writeRecord(out, record);
+            if (record[0] != ADD) garbageSinceCompaction = true;
+        }
+        out.flush();
+        fileOut.getFD().sync();
+    }
+
+    /** The blobs referenced by the ADD records waiting to be written. */
+    private List<Long> queuedBlobs() {
+        List<Long> blobs = new ArrayList<>();
+        for (byte[] record : pending) {
+            if (!hasBlobs(record)) continue;
+            ByteBuffer fields = ByteBuffer.wrap(record);
+            blobs.add(fields.getLong(record.length - 24));
+            blobs.add(fields.getLong(record.length - 12));
+        }
+        return blobs;
+    }
+
+    /** Rewrites the body offsets at the end of an ADD record to the store's current ones. */
+    private void relocateBodies(byte[] record) {
+        ByteBuffer fields = ByteBuffer.wrap(record);
+        for (int at : new int[]{record.length - 24, record.length - 12}) {
+            fields.putLong(at, bodyStore.currentOffset(fields.getLong(at)));
+        }
+    }
+
+    private void openForAppend() throws IOException {
+        boolean isNew = !file.exists() || file.length() == 0;
+        fileOut = new FileOutputStream(file, true);
+        out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024));
+        if (isNew) {
+            out.writeInt(MAGIC);
+            out.flush();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            if (out != null) out.close();
+        } catch (IOException ignored) {
+        }
+        out = null;
+    }
+
+    /**
+     * Rewrites the journal with only the live entries (final highlight state folded into the
+     * ADD record) and atomically replaces the old file, compacting the body store along with it
+     * if that is worthwhile. Runs on the writer thread, or before the writer is started.
+     *
+     * @throws IOException if a record before the end of the file is corrupt; the journal is then
+     *                     left as it is rather than cut short at that record
+     */
+    void compact() throws IOException {
+        boolean open = out != null;
+        if (open) {
+            out.flush();
+            out.close();
+        }
+        try {
+            rewrite();
+        } finally {
+            // A failed compaction is retried after the usual interval, not on every batch.
+            lastCompactionMillis = System.currentTimeMillis();
+            if (open) openForAppend();
+        }
+    }
+
+    private void rewrite() throws IOException {
+        // Pass 1: work out which entries are still alive and their final highlight state.
+        Map<Long, Boolean> highlighted = new HashMap<>();
+        Set<Long> successIds = new LinkedHashSet<>();
+        long oldLength = file.length();
+        scanWhole(file, (type, in) -> {
+            if (type == ADD) {
+                boolean isSuccess = in.readBoolean();
+                // Earlier compactions (and migrated files) fold the highlight state into the ADD record.
+                UserInterface.ReplayedRequestEntry entry = readEntry(in);
+                highlighted.put(entry.id, entry.highlighted);
+                if (isSuccess) successIds.add(entry.id);
+            } else if (type == HIGHLIGHT) {
+                long id = in.readLong();
+                boolean state = in.readBoolean();
+                highlighted.replace(id, state);
+            } else if (type == CLEAR_NON_HIGHLIGHTED) {
+                Iterator<Long> it = successIds.iterator();
+                while (it.hasNext()) {
+                    Long id = it.next();
+                    if (!highlighted.get(id)) {
+                        highlighted.remove(id);
+                        it.remove();
+                    }
+                }
+            }
+        });
+        // Pass 2: copy the live ADD records with their final highlight state.
+        File tmp = new File(file.getPath() + ".compact");
+        Set<Long> liveBlobs = new HashSet<>();
+        try (FileOutputStream fos = new FileOutputStream(tmp);
+             DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024))) {
+            dos.writeInt(MAGIC);
+            scanWhole(file, (type, in) -> {
+                if (type != ADD) return;
+                boolean isSuccess = in.readBoolean();
+                UserInterface.ReplayedRequestEntry entry = readEntry(in);
+                Boolean state = highlighted.get(entry.id);
+                if (state == null) return;
+                entry.highlighted = state;
+                if (!isInStore(entry) && bodyStore != null) {
+                    // Blobs are content-addressed, so this reuses what load() already stored.
+                    moveToStore(entry);
+                }
+                if (entry.requestOffset >= 0) liveBlobs.add(entry.requestOffset);
+                if (entry.responseOffset >= 0) liveBlobs.add(entry.responseOffset);
+                writeRecord(dos, addRecord(entry, isSuccess));
+            });
+            if (bodyStore != null) bodyStore.force();
+            dos.flush();
+            fos.getFD().sync();
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp.toPath());
+            throw e;
+        }
+        long oldBodiesLength = bodyStore != null ? bodyStore.size() : 0;
+        if (bodyStore != null && bodyStore.isWorthCompacting(liveBlobs)) {
+            compactBodies(tmp);
+            logging.logToOutput("Compacted body store from " + oldBodiesLength + " to " + bodyStore.size() + " bytes.");
+        } else {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        garbageSinceCompaction = false;
+        logging.logToOutput("Compacted journal from " + oldLength + " to " + file.length() + " bytes.");
+    }
+
+    /**
+     * Pass 3 of a compaction: copies the blobs referenced by the compacted journal into a new body
+     * store file, rewrites the journal to point at the copies, and swaps both in.
+     */
+    private void compactBodies(File compacted) throws IOException {
+        File relocated = new File(file.getPath() + ".relocated");
+        File committed = committedFile(file);
+        BodyStore.Compaction bodies = bodyStore.beginCompaction();
+        try (FileOutputStream fos = new FileOutputStream(relocated);
+             DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024))) {
+            dos.writeInt(MAGIC);
+            scanWhole(compacted, (type, in) -> {
+                boolean isSuccess = in.readBoolean();
+                UserInterface.ReplayedRequestEntry entry = readEntry(in);
+                entry.requestOffset = bodies.copy(entry.requestOffset);
+                entry.responseOffset = bodies.copy(entry.responseOffset);
+                writeRecord(dos, addRecord(entry, isSuccess));
+            });
+            dos.flush();
+            fos.getFD().sync();
+        } catch (IOException e) {
+            bodies.abandon();
+            Files.deleteIfExists(compacted.toPath());
+            throw e;
+        }
+        // The rename to the committed file is the commit point; the store swaps its file right after.
+        bodies.commit(this::queuedBlobs, () -> Files.move(relocated.toPath(), committed.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE));
+        Files.move(committed.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(compacted.toPath());
+    }
+
+    /** Moves the inline texts of an ADD record into the body store. */
+    private void moveToStore(UserInterface.ReplayedRequestEntry entry) throws IOException {
+        bodyStore.store(entry, entry.requestText, entry.response);
+        // The record is already in the journal, with the texts inline.
+        bodyStore.journaled(entry);
+    }
+
+    // ---------------------------
+    // Record encoding
+    // ---------------------------
+    private interface RecordVisitor {
+        void visit(byte type, DataInputStream payload) throws IOException;
+    }
+
+    /**
+     * Streams every complete record of the file to the visitor.
+     *
+     * @return the length of the valid prefix of the file
+     */
+    private static long scan(File f, RecordVisitor visitor) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f), 64 * 1024))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(f.getName() + " is not a VerbReplayer journal");
+            }
+            long offset = 4;
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    if (length <= 0 || length > MAX_RECORD_LENGTH) break;
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    if (in.readInt() != length) break;
+                } catch (EOFException e) {
+                    break;
+                }
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload, 1, payload.length - 1));
+                visitor.visit(payload[0], record);
+                offset += 8L + payload.length;
+            }
+            return offset;
+        } catch (EOFException e) {
+            // Not even a complete header; treat as empty.
+            return 0;
+        }
+    }
+
+    /**
+     * Streams every record of the file to the visitor, failing if one of them is corrupt. Used
+     * where the records read replace the file, so a damaged record in the middle must not
+     * silently drop everything after it.
+     */
+    private static void scanWhole(File f, RecordVisitor visitor) throws IOException {
+        long valid = scan(f, visitor);
+        if (valid != f.length()) {
+            throw new IOException(f.getName() + " has a corrupt record at offset " + valid + ", leaving it uncompacted");
+        }
+    }
+
+    /**
+     * Reads the records of the file from a given end towards its start, using the trailing length
+     * of each record. Small reads go through a block buffer that is refilled backwards.
+     */
+    private static final class ReverseRecordReader implements Closeable {
+        private static final int BLOCK_SIZE = 64 * 1024;
+
+        private final RandomAccessFile raf;
+        private final byte[] block = new byte[BLOCK_SIZE];
+        private long blockStart;
+        private int blockLength;
+        private long position;
+
+        ReverseRecordReader(File f, long end) throws IOException {
+            this.raf = new RandomAccessFile(f, "r");
+            this.position = end;
+        }
+
+        /** Returns the payload of the record before the current position, or null at the start. */
+        byte[] previous() throws IOException {
+            if (position <= 4) return null;
+            int length = readInt(position - 4);
+            long start = position - 8 - length;
+            if (length <= 0 || length > MAX_RECORD_LENGTH || start < 4 || readInt(start) != length) {
+                throw new CorruptRecordException("Corrupt journal record ending at offset " + position);
+            }
+            byte[] payload = new byte[length];
+            if (length <= BLOCK_SIZE) {
+                fill(start + 4, length);
+                System.arraycopy(block, (int) (start + 4 - blockStart), payload, 0, length);
+            } else {
+                raf.seek(start + 4);
+                raf.readFully(payload);
+            }
+            position = start;
+            return payload;
+        }
+
+        /** The offset of the last record returned, i.e. how much of the file is still to be read. */
+        long position() {
+            return position;
+        }
+
+        private int readInt(long offset) throws IOException {
+            fill(offset, 4);
+            int i = (int) (offset - blockStart);
+            return ((block[i] & 0xFF) << 24) | ((block[i + 1] & 0xFF) << 16) | ((block[i + 2] & 0xFF) << 8) | (block[i + 3] & 0xFF);
+        }
+
+        /** Makes sure the block holds the given range, reading the block that ends with it if not. */
+        private void fill(long offset, int length) throws IOException {
+            if (offset >= blockStart && offset + length <= blockStart + blockLength) return;
+            long end = offset + length;
+            long start = Math.max(0, end - BLOCK_SIZE);
+            raf.seek(start);
+            raf.readFully(block, 0, (int) (end - start));
+            blockStart = start;
+            blockLength = (int) (end - start);
+        }
+
+        @Override
+        public void close() throws IOException {
+            raf.close();
+        }
+    }
+
+    /** A record whose length fields or contents do not make sense. */
+    private static final class CorruptRecordException extends IOException {
+        CorruptRecordException(String message) {
+            super(message);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream dos, byte[] record) throws IOException {
+        dos.writeInt(record.length);
+        dos.write(record);
+        dos.writeInt(record.length);
+    }
+
+    /** True for the ADD records whose texts are in the body store, with the offsets at the end. */
+    private static boolean hasBlobs(byte[] record) {
+        return record[0] == ADD && record[2] == BODIES_IN_STORE;
+    }
+
+    private static boolean isInStore(UserInterface.ReplayedRequestEntry entry) {
+        return entry.requestOffset >= 0 || entry.responseOffset >= 0;
+    }
+
+    /**
+     * Encodes an entry as an ADD record: {@code [type][success][bodies][id][verb][url][status]
+     * [timestamp][highlighted][scheme]}, then either the offsets and lengths of its texts in the
+     * body store or, if they are not stored there, the texts themselves.
+     */
+    private static byte[] addRecord(UserInterface.ReplayedRequestEntry entry, boolean success) {
+        boolean inline = !isInStore(entry);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(inline ? 256 : 96);
+        try (DataOutputStream dos = new DataOutputStream(bytes)) {
+            dos.writeByte(ADD);
+            dos.writeBoolean(success);
+            dos.writeByte(inline ? BODIES_INLINE : BODIES_IN_STORE);
+            dos.writeLong(entry.id);
+            writeString(dos, entry.verb);
+            writeString(dos, entry.url);
+            dos.writeInt(entry.statusCode);
+            writeString(dos, entry.timestamp);
+            dos.writeBoolean(entry.highlighted);
+            dos.writeByte("https".equals(entry.scheme) ? SCHEME_HTTPS : "http".equals(entry.scheme) ? SCHEME_HTTP : SCHEME_UNKNOWN);
+            if (inline) {
+                writeString(dos, entry.requestText);
+                writeString(dos, entry.response);
+            } else {
+                dos.writeLong(entry.requestOffset);
+                dos.writeInt(entry.requestLength);
+                dos.writeLong(entry.responseOffset);
+                dos.writeInt(entry.responseLength);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Reads an ADD record from just after its success flag. */
+    private static UserInterface.ReplayedRequestEntry readEntry(DataInputStream in) throws IOException {
+        byte bodies = in.readByte();
+        long id = in.readLong();
+        String verb = readString(in);
+        String url = readString(in);
+        int statusCode = in.readInt();
+        String timestamp = readString(in);
+        boolean highlighted = in.readBoolean();
+        byte scheme = in.readByte();
+        UserInterface.ReplayedRequestEntry entry;
+        if (bodies == BODIES_INLINE) {
+            String requestText = readString(in);
+            String response = readString(in);
+            entry = new UserInterface.ReplayedRequestEntry(verb, url, statusCode, requestText, response, timestamp);
+        } else {
+            entry = new UserInterface.ReplayedRequestEntry(verb, url, statusCode, null, null, timestamp);
+            entry.requestOffset = in.readLong();
+            entry.requestLength = in.readInt();
+            entry.responseOffset = in.readLong();
+            entry.responseLength = in.readInt();
+        }
+        entry.id = id;
+        entry.highlighted = highlighted;
+        entry.scheme = scheme == SCHEME_HTTPS ? "https" : scheme == SCHEME_HTTP ? "http" : null;
+        return entry;
+    }
+
+    // writeUTF is limited to 64 KB, which response bodies easily exceed.
+    private static void writeString(DataOutputStream dos, String s) throws IOException {
+        if (s == null) {
+            dos.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        dos.writeInt(bytes.length);
+        dos.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
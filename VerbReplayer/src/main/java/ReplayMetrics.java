@@ -0,0 +1,295 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * Live counters for the replay path, shown on the Metrics tab.
+ * <p>
+ * Each send is recorded once it completes, under its host, its verb (the verb matrix label) and
+ * the overall total: response latency in a {@link LatencyHistogram}, timeouts, network errors
+ * (including empty responses) and bytes received. Latency is only recorded for sends that got a
+ * response, so a tarpitting host shows up as timeouts rather than skewing the percentiles.
+ * Retried attempts are recorded individually. The time the proxy thread spends handing a request
+ * to the replay engine, which is the delay the extension adds to the browser, has its own
+ * histogram.
+ * <p>
+ * Recording allocates nothing once a host or verb has been seen. Hosts past {@link #MAX_HOSTS}
+ * are counted together so a crawl over many subdomains cannot grow the map without bound.
+ * Throughput is sampled by {@link #sample()}, which the UI calls from its status timer.
+ */
+public class ReplayMetrics {
+
+    static final int MAX_HOSTS = 1_000;
+    static final String OTHER_HOSTS = "(other hosts)";
+    private static final double RATE_SMOOTHING = 0.3;
+
+    private final IntSupplier queueDepth;
+    private final IntSupplier inFlight;
+    private final Stats total = new Stats("All replays");
+    private final Map<String, Stats> byHost = new ConcurrentHashMap<>();
+    private final Map<String, Stats> byVerb = new ConcurrentHashMap<>();
+    private final LatencyHistogram proxyOverhead = new LatencyHistogram();
+    private volatile long startedMillis = System.currentTimeMillis();
+    private volatile int peakQueueDepth;
+    private long lastSampleNanos = System.nanoTime();
+
+    /**
+     * @param queueDepth replays waiting for a worker
+     * @param inFlight   replays being sent
+     */
+    public ReplayMetrics(IntSupplier queueDepth, IntSupplier inFlight) {
+        this.queueDepth = queueDepth;
+        this.inFlight = inFlight;
+    }
+
+    /**
+     * Records one completed send.
+     *
+     * @param elapsedNanos time from sending to the response (or failure)
+     * @param bytes        size of the response, 0 if there was none
+     */
+    public void recordSend(String host, String verb, ReplayEngine.Outcome outcome, long elapsedNanos, long bytes) {
+        Stats hostStats = byHost.get(host);
+        if (hostStats == null) {
+            hostStats = byHost.size() < MAX_HOSTS
+                    ? byHost.computeIfAbsent(host, Stats::new)
+                    : byHost.computeIfAbsent(OTHER_HOSTS, Stats::new);
+        }
+        Stats verbStats = byVerb.computeIfAbsent(verb, Stats::new);
+        total.record(outcome, elapsedNanos, bytes);
+        hostStats.record(outcome, elapsedNanos, bytes);
+        verbStats.record(outcome, elapsedNanos, bytes);
+    }
+
+    /** Records how long the proxy thread spent queueing the variants of one request. */
+    public void recordProxyOverhead(long nanos) {
+        proxyOverhead.recordNanos(nanos);
+    }
+
+    /**
+     * Updates the per-second throughput and the peak queue depth. Called from the UI's status
+     * timer only.
+     */
+    public void sample() {
+        peakQueueDepth = Math.max(peakQueueDepth, queueDepth.getAsInt());
+        long now = System.nanoTime();
+        double seconds = (now - lastSampleNanos) / 1e9;
+        if (seconds <= 0) return;
+        lastSampleNanos = now;
+        total.sample(seconds);
+        for (Stats stats : byHost.values()) stats.sample(seconds);
+        for (Stats stats : byVerb.values()) stats.sample(seconds);
+    }
+
+    /** Clears all counters, e.g. before measuring a new run. */
+    public void reset() {
+        byHost.clear();
+        byVerb.clear();
+        total.reset();
+        proxyOverhead.reset();
+        peakQueueDepth = 0;
+        startedMillis = System.currentTimeMillis();
+    }
+
+    public Summary getTotal() {
+        return total.summary();
+    }
+
+    public List<Summary> getByHost() {
+        return summaries(byHost);
+    }
+
+    public List<Summary> getByVerb() {
+        return summaries(byVerb);
+    }
+
+    private static List<Summary> summaries(Map<String, Stats> stats) {
+        List<Summary> summaries = new ArrayList<>(stats.size());
+        for (Stats s : stats.values()) summaries.add(s.summary());
+        summaries.sort((a, b) -> Long.compare(b.sends, a.sends));
+        return summaries;
+    }
+
+    public LatencyHistogram.Snapshot getProxyOverhead() {
+        return proxyOverhead.snapshot();
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    public int getPeakQueueDepth() {
+        return peakQueueDepth;
+    }
+
+    public int getInFlight() {
+        return inFlight.getAsInt();
+    }
+
+    /** Milliseconds since the extension was loaded or the counters were last reset. */
+    public long getUptimeMillis() {
+        return System.currentTimeMillis() - startedMillis;
+    }
+
+    /**
+     * Writes all counters as one JSON object, including the non-empty histogram buckets
+     * ({@code [upper bound in µs, count]} pairs) so percentiles can be recomputed offline.
+     */
+    public void writeJson(Writer out) throws IOException {
+        out.write("{\n  \"capturedAt\": \"" + Instant.now() + "\",\n");
+        out.write("  \"uptimeMillis\": " + getUptimeMillis() + ",\n");
+        out.write("  \"queue\": {\"depth\": " + getQueueDepth() + ", \"peakDepth\": " + peakQueueDepth
+                + ", \"inFlight\": " + getInFlight() + "},\n");
+        out.write("  \"proxyOverhead\": ");
+        writeHistogram(out, proxyOverhead.snapshot());
+        out.write(",\n  \"total\": ");
+        writeSummary(out, total.summary());
+        out.write(",\n  \"hosts\": ");
+        writeSummaries(out, getByHost());
+        out.write(",\n  \"verbs\": ");
+        writeSummaries(out, getByVerb());
+        out.write("\n}\n");
+    }
+
+    private static void writeSummaries(Writer out, List<Summary> summaries) throws IOException {
+        out.write("[");
+        for (int i = 0; i < summaries.size(); i++) {
+            out.write(i == 0 ? "\n    " : ",\n    ");
+            writeSummary(out, summaries.get(i));
+        }
+        out.write(summaries.isEmpty() ? "]" : "\n  ]");
+    }
+
+    private static void writeSummary(Writer out, Summary s) throws IOException {
+        out.write("{\"name\": " + jsonString(s.name) + ", \"sends\": " + s.sends + ", \"responses\": " + s.responses
+                + ", \"timeouts\": " + s.timeouts + ", \"errors\": " + s.errors + ", \"bytes\": " + s.bytes
+                + ", \"perSecond\": " + String.format(Locale.ROOT, "%.2f", s.perSecond) + ", \"latency\": ");
+        writeHistogram(out, s.latency);
+        out.write("}");
+    }
+
+    private static void writeHistogram(Writer out, LatencyHistogram.Snapshot h) throws IOException {
+        StringBuilder buckets = new StringBuilder();
+        h.forEachBucket((highest, count) -> {
+            if (buckets.length() > 0) buckets.append(", ");
+            buckets.append('[').append(highest).append(", ").append(count).append(']');
+        });
+        out.write("{\"count\": " + h.getCount()
+                + ", \"meanMicros\": " + Math.round(h.getMeanMicros())
+                + ", \"p50Micros\": " + h.valueAtPercentile(50)
+                + ", \"p90Micros\": " + h.valueAtPercentile(90)
+                + ", \"p99Micros\": " + h.valueAtPercentile(99)
+                + ", \"p999Micros\": " + h.valueAtPercentile(99.9)
+                + ", \"maxMicros\": " + h.getMaxMicros()
+                + ", \"buckets\": [" + buckets + "]}");
+    }
+
+    private static String jsonString(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    // ---------------------------
+    // Counters for one host, one verb or the total.
+    // ---------------------------
+    private static final class Stats {
+        final String name;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong sends = new AtomicLong();
+        final AtomicLong timeouts = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        // Written by the status timer only.
+        private long sendsAtLastSample;
+        private volatile double perSecond;
+
+        Stats(String name) {
+            this.name = name;
+        }
+
+        void record(ReplayEngine.Outcome outcome, long elapsedNanos, long responseBytes) {
+            sends.incrementAndGet();
+            switch (outcome) {
+                case RESPONSE:
+                    latency.recordNanos(elapsedNanos);
+                    bytes.addAndGet(responseBytes);
+                    break;
+                case TIMEOUT:
+                    timeouts.incrementAndGet();
+                    break;
+                default:
+                    errors.incrementAndGet();
+                    break;
+            }
+        }
+
+        void sample(double seconds) {
+            long now = sends.get();
+            double rate = (now - sendsAtLastSample) / seconds;
+            sendsAtLastSample = now;
+            // Smoothed so the figure does not flicker between worker bursts.
+            perSecond = perSecond * (1 - RATE_SMOOTHING) + rate * RATE_SMOOTHING;
+        }
+
+        void reset() {
+            latency.reset();
+            sends.set(0);
+            timeouts.set(0);
+            errors.set(0);
+            bytes.set(0);
+            sendsAtLastSample = 0;
+            perSecond = 0;
+        }
+
+        Summary summary() {
+            LatencyHistogram.Snapshot snapshot = latency.snapshot();
+            long total = sends.get();
+            long failed = timeouts.get() + errors.get();
+            return new Summary(name, total, Math.max(0, total - failed), timeouts.get(), errors.get(),
+                    bytes.get(), perSecond, snapshot);
+        }
+    }
+
+    // ---------------------------
+    // A point-in-time copy of one row of counters.
+    // ---------------------------
+    public static final class Summary {
+        public final String name;
+        public final long sends;
+        public final long responses;
+        public final long timeouts;
+        public final long errors;
+        public final long bytes;
+        public final double perSecond;
+        public final LatencyHistogram.Snapshot latency;
+
+        Summary(String name, long sends, long responses, long timeouts, long errors, long bytes,
+                double perSecond, LatencyHistogram.Snapshot latency) {
+            this.name = name;
+            this.sends = sends;
+            this.responses = responses;
+            this.timeouts = timeouts;
+            this.errors = errors;
+            this.bytes = bytes;
+            this.perSecond = perSecond;
+            this.latency = latency;
+        }
+    }
+}
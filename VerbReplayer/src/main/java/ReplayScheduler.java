@@ -0,0 +1,382 @@
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Bounded priority queue in front of the replay workers, so that under load the replays most
+ * likely to turn up a finding are sent first.
+ * <p>
+ * Each job gets a deadline when it is queued: the time it was queued plus a penalty, and the
+ * workers always take the job with the earliest deadline. The penalty adds up from
+ * <ul>
+ * <li>verb risk: state-changing verbs (PUT, DELETE, PATCH, POST) none, other verbs a little,
+ *     HEAD/OPTIONS/TRACE probes the most</li>
+ * <li>novelty: none while no replay of the endpoint (host + path template) has been sent yet,
+ *     a fixed penalty after that</li>
+ * <li>host fairness: a little for every job of the same host already queued, so one busy host
+ *     cannot crowd out the others</li>
+ * </ul>
+ * Because the penalty is capped, a job can be overtaken for at most {@link #MAX_PENALTY_MILLIS};
+ * after that it is older than anything that can still be queued ahead of it, so nothing starves.
+ * <p>
+ * When the queue is full, a new job that ranks better than the worst queued job evicts it, and
+ * the eviction listener is handed the evicted job; otherwise the new job is refused and goes to
+ * the executor's rejection handler. With load shedding on, low-risk probes of already covered
+ * endpoints are refused (and so go to the rejection handler) as soon as the queue is three
+ * quarters full. Either way the job's owner learns that it will not run.
+ * <p>
+ * Jobs built from the same original request share a group, and {@link #pollSibling} lets a worker
+ * take the rest of a group out of the queue to send it together with the job it is running.
+ */
+public class ReplayScheduler extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    /** Verb risk classes, from most to least likely to change server state. */
+    public enum Risk { HIGH, MEDIUM, LOW }
+
+    static final long KNOWN_ENDPOINT_PENALTY_MILLIS = 5_000;
+    static final long MEDIUM_RISK_PENALTY_MILLIS = 2_000;
+    static final long LOW_RISK_PENALTY_MILLIS = 5_000;
+    static final long HOST_BACKLOG_PENALTY_MILLIS = 50;
+    static final long MAX_HOST_BACKLOG_PENALTY_MILLIS = 10_000;
+    public static final long MAX_PENALTY_MILLIS =
+            KNOWN_ENDPOINT_PENALTY_MILLIS + LOW_RISK_PENALTY_MILLIS + MAX_HOST_BACKLOG_PENALTY_MILLIS;
+    private static final int MAX_COVERED_ENDPOINTS = 100_000;
+
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final TreeSet<Job> jobs = new TreeSet<>();
+    private final Map<String, Integer> queuedPerHost = new HashMap<>();
+    private final Map<Object, ArrayDeque<Job>> queuedPerGroup = new HashMap<>();
+    private final Map<String, Boolean> coveredEndpoints = new LinkedHashMap<String, Boolean>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_COVERED_ENDPOINTS;
+        }
+    };
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+    private volatile boolean shedLowPriority = true;
+    private volatile Consumer<Job> evictionListener = job -> {
+    };
+
+    public ReplayScheduler(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /** Classifies a verb by how likely it is to change server state. */
+    public static Risk riskOf(String verb) {
+        switch (verb.toUpperCase(Locale.ROOT)) {
+            case "PUT":
+            case "DELETE":
+            case "PATCH":
+            case "POST":
+                return Risk.HIGH;
+            case "HEAD":
+            case "OPTIONS":
+            case "TRACE":
+                return Risk.LOW;
+            default:
+                return Risk.MEDIUM;
+        }
+    }
+
+    /**
+     * Marks the endpoint as covered once one of its replays has been sent, so later replays of it
+     * no longer count as novel.
+     */
+    public void markCovered(String host, String template) {
+        lock.lock();
+        try {
+            coveredEndpoints.put(host + " " + template, Boolean.TRUE);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Sets what to do with jobs evicted from the full queue; called outside the queue's lock. */
+    public void setEvictionListener(Consumer<Job> evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    public void setShedLowPriority(boolean shedLowPriority) {
+        this.shedLowPriority = shedLowPriority;
+    }
+
+    /** Number of queued jobs pushed out by better-ranked ones while the queue was full. */
+    public long getEvictedCount() {
+        return evicted.get();
+    }
+
+    /** Number of low-priority jobs refused by load shedding. */
+    public long getShedCount() {
+        return shed.get();
+    }
+
+    @Override
+    public boolean offer(Runnable runnable) {
+        Job job = (Job) runnable;
+        Job evictedJob = null;
+        lock.lock();
+        try {
+            if (job.deadline == 0) {
+                // First time queued; jobs re-queued by the rate limiter keep their place.
+                job.novel = !coveredEndpoints.containsKey(job.host + " " + job.template);
+                job.deadline = System.currentTimeMillis() + penalty(job);
+                job.sequence = sequence.incrementAndGet();
+            }
+            if (shedLowPriority && job.risk == Risk.LOW && !job.novel && jobs.size() >= capacity * 3 / 4) {
+                shed.incrementAndGet();
+                return false;
+            }
+            if (jobs.size() >= capacity) {
+                Job worst = jobs.last();
+                if (job.compareTo(worst) >= 0) return false;
+                removeJob(worst);
+                evicted.incrementAndGet();
+                evictedJob = worst;
+            }
+            jobs.add(job);
+            queuedPerHost.merge(job.host, 1, Integer::sum);
+            if (job.group != null) queuedPerGroup.computeIfAbsent(job.group, g -> new ArrayDeque<>()).add(job);
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+            if (evictedJob != null) evictionListener.accept(evictedJob);
+        }
+    }
+
+    private long penalty(Job job) {
+        long penalty = job.novel ? 0 : KNOWN_ENDPOINT_PENALTY_MILLIS;
+        if (job.risk == Risk.MEDIUM) penalty += MEDIUM_RISK_PENALTY_MILLIS;
+        if (job.risk == Risk.LOW) penalty += LOW_RISK_PENALTY_MILLIS;
+        int backlog = queuedPerHost.getOrDefault(job.host, 0);
+        penalty += Math.min(MAX_HOST_BACKLOG_PENALTY_MILLIS, backlog * HOST_BACKLOG_PENALTY_MILLIS);
+        return penalty;
+    }
+
+    // Caller holds the lock.
+    private void removeJob(Job job) {
+        if (!jobs.remove(job)) return;
+        forget(job);
+    }
+
+    // Caller holds the lock.
+    private Job pollFirst() {
+        Job job = jobs.pollFirst();
+        if (job != null) forget(job);
+        return job;
+    }
+
+    // Caller holds the lock; the job has just left the queue.
+    private void forget(Job job) {
+        queuedPerHost.computeIfPresent(job.host, (host, n) -> n == 1 ? null : n - 1);
+        if (job.group != null) {
+            ArrayDeque<Job> siblings = queuedPerGroup.get(job.group);
+            if (siblings != null) {
+                siblings.remove(job);
+                if (siblings.isEmpty()) queuedPerGroup.remove(job.group);
+            }
+        }
+    }
+
+    /**
+     * Takes a queued job of the given group out of the queue, or returns null if none is left.
+     */
+    public Job pollSibling(Object group) {
+        lock.lock();
+        try {
+            ArrayDeque<Job> siblings = queuedPerGroup.get(group);
+            if (siblings == null) return null;
+            Job job = siblings.peekFirst();
+            removeJob(job);
+            return job;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable runnable, long timeout, TimeUnit unit) {
+        return offer(runnable);
+    }
+
+    @Override
+    public void put(Runnable runnable) {
+        offer(runnable);
+    }
+
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (jobs.isEmpty()) {
+                if (nanos <= 0) return null;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (jobs.isEmpty()) {
+                notEmpty.await();
+            }
+            return pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            return jobs.isEmpty() ? null : jobs.first();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Job)) return false;
+        lock.lock();
+        try {
+            int before = jobs.size();
+            removeJob((Job) o);
+            return jobs.size() < before;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return jobs.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Math.max(0, capacity - size());
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        lock.lock();
+        try {
+            int n = 0;
+            while (n < maxElements && !jobs.isEmpty()) {
+                c.add(pollFirst());
+                n++;
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Iterates over a snapshot in priority order; {@code remove()} takes the job out of the queue.
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        List<Runnable> snapshot;
+        lock.lock();
+        try {
+            snapshot = new ArrayList<>(jobs);
+        } finally {
+            lock.unlock();
+        }
+        Iterator<Runnable> it = snapshot.iterator();
+        return new Iterator<Runnable>() {
+            private Runnable current;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Runnable next() {
+                current = it.next();
+                return current;
+            }
+
+            @Override
+            public void remove() {
+                if (current == null) throw new IllegalStateException();
+                ReplayScheduler.this.remove(current);
+                current = null;
+            }
+        };
+    }
+
+    // ---------------------------
+    // A unit of replay work; ordered by deadline, then by queueing order.
+    // ---------------------------
+    public abstract static class Job implements Runnable, Comparable<Job> {
+        final String host;
+        final String template;
+        final Risk risk;
+        final Object group;  // jobs built from the same original request; may be null
+        boolean novel;
+        long deadline;  // set when first queued
+        long sequence;
+
+        protected Job(String host, String template, String verb, Object group) {
+            this.host = host;
+            this.template = template;
+            this.risk = riskOf(verb);
+            this.group = group;
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            int c = Long.compare(deadline, other.deadline);
+            return c != 0 ? c : Long.compare(sequence, other.sequence);
+        }
+    }
+}
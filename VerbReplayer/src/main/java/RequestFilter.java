@@ -0,0 +1,250 @@
+import burp.api.montoya.http.message.MimeType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Decides which proxied requests get their verb variants replayed.
+ * <p>
+ * The settings are compiled once into an immutable {@link Rules} snapshot that is swapped in
+ * atomically, so the UI can change them while the proxy keeps calling {@link #check}. The checks
+ * run cheapest first and stop at the first rejection:
+ * <ol>
+ * <li>file extension of the path (query string ignored), via a reversed suffix trie</li>
+ * <li>host include / exclude lists ({@code example.com} or {@code *.example.com})</li>
+ * <li>MIME type of the original response (stated or inferred)</li>
+ * <li>path regexes, combined into one pattern</li>
+ * <li>hosts the user disabled, then Burp's target scope if enabled; both via {@link HostScope},
+ *     which caches the scope decision per host</li>
+ * </ol>
+ */
+public class RequestFilter {
+
+    /** Why a request was skipped; {@code ACCEPTED} if it was not. */
+    public enum Verdict { ACCEPTED, EXTENSION, HOST, MIME_TYPE, PATH, DISABLED, SCOPE }
+
+    public static final String DEFAULT_EXTENSIONS =
+            "jpg jpeg png gif bmp svg webp ico tiff pdf woff woff2 ttf eot mp4 avi mov mp3 wav zip rar 7z gz tar";
+    public static final String DEFAULT_MIME_TYPES =
+            "IMAGE_JPEG IMAGE_GIF IMAGE_PNG IMAGE_BMP IMAGE_TIFF IMAGE_SVG_XML IMAGE_UNKNOWN SOUND VIDEO FONT_WOFF FONT_WOFF2";
+
+    public static final boolean DEFAULT_IN_SCOPE_ONLY = true;
+
+    private final HostScope hostScope;
+    private volatile Rules rules;
+    private final AtomicLongArray skipped = new AtomicLongArray(Verdict.values().length);
+
+    public RequestFilter(HostScope hostScope) {
+        this.hostScope = hostScope;
+        this.rules = compile(DEFAULT_EXTENSIONS, "", "", DEFAULT_MIME_TYPES, "", DEFAULT_IN_SCOPE_ONLY);
+    }
+
+    /**
+     * Checks a request (and its original response's MIME types) against the current rules.
+     *
+     * @param url full URL, only used for the scope check
+     */
+    public Verdict check(String host, String path, MimeType statedMimeType, MimeType inferredMimeType, String url) {
+        Verdict verdict = rules.check(host, path, statedMimeType, inferredMimeType);
+        if (verdict == Verdict.ACCEPTED) verdict = checkHost(rules, host, url);
+        if (verdict != Verdict.ACCEPTED) skipped.incrementAndGet(verdict.ordinal());
+        return verdict;
+    }
+
+    /**
+     * Re-checks only the per-host part (enable toggle and scope) for a replay that was accepted
+     * earlier and is about to be sent, so toggles and scope changes also reach queued replays.
+     */
+    public boolean allowsHost(String host, String url) {
+        return checkHost(rules, host, url) == Verdict.ACCEPTED;
+    }
+
+    private Verdict checkHost(Rules current, String host, String url) {
+        if (!hostScope.isEnabled(host)) return Verdict.DISABLED;
+        if (current.inScopeOnly && !hostScope.isInScope(host, url)) return Verdict.SCOPE;
+        return Verdict.ACCEPTED;
+    }
+
+    public HostScope getHostScope() {
+        return hostScope;
+    }
+
+    public boolean isInScopeOnly() {
+        return rules.inScopeOnly;
+    }
+
+    /**
+     * Compiles and swaps in new rules. Lists are separated by whitespace or commas.
+     *
+     * @throws PatternSyntaxException   if a path regex does not compile
+     * @throws IllegalArgumentException if a MIME type name is unknown
+     */
+    public void setRules(String extensions, String includeHosts, String excludeHosts,
+                         String mimeTypes, String pathRegexes, boolean inScopeOnly) {
+        this.rules = compile(extensions, includeHosts, excludeHosts, mimeTypes, pathRegexes, inScopeOnly);
+    }
+
+    /** Number of requests skipped for the given reason since the extension was loaded. */
+    public long getSkippedCount(Verdict verdict) {
+        return skipped.get(verdict.ordinal());
+    }
+
+    private static Rules compile(String extensions, String includeHosts, String excludeHosts,
+                                 String mimeTypes, String pathRegexes, boolean inScopeOnly) {
+        SuffixTrie extensionTrie = new SuffixTrie();
+        for (String extension : split(extensions)) {
+            extensionTrie.add("." + (extension.startsWith(".") ? extension.substring(1) : extension));
+        }
+        Set<MimeType> skippedMimeTypes = EnumSet.noneOf(MimeType.class);
+        for (String name : split(mimeTypes)) {
+            try {
+                skippedMimeTypes.add(MimeType.valueOf(name.toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown MIME type: " + name
+                        + " (expected one of " + Arrays.toString(MimeType.values()) + ")");
+            }
+        }
+        StringBuilder combined = new StringBuilder();
+        for (String line : pathRegexes.split("\\R")) {
+            String regex = line.trim();
+            if (regex.isEmpty() || regex.startsWith("#")) continue;
+            Pattern.compile(regex); // report the offending rule on its own
+            if (combined.length() > 0) combined.append('|');
+            combined.append("(?:").append(regex).append(')');
+        }
+        Pattern pathPattern = combined.length() == 0 ? null : Pattern.compile(combined.toString(), Pattern.CASE_INSENSITIVE);
+        return new Rules(extensionTrie, new HostList(split(includeHosts)), new HostList(split(excludeHosts)),
+                skippedMimeTypes, pathPattern, inScopeOnly);
+    }
+
+    private static List<String> split(String text) {
+        List<String> items = new ArrayList<>();
+        if (text == null) return items;
+        for (String item : text.split("[\\s,]+")) {
+            if (!item.isEmpty()) items.add(item.toLowerCase(Locale.ROOT));
+        }
+        return items;
+    }
+
+    // ---------------------------
+    // One compiled, immutable set of rules.
+    // ---------------------------
+    private static final class Rules {
+        final SuffixTrie extensions;
+        final HostList includeHosts;
+        final HostList excludeHosts;
+        final Set<MimeType> skippedMimeTypes;
+        final Pattern pathPattern; // null if there are no path rules
+        final boolean inScopeOnly;
+
+        Rules(SuffixTrie extensions, HostList includeHosts, HostList excludeHosts,
+              Set<MimeType> skippedMimeTypes, Pattern pathPattern, boolean inScopeOnly) {
+            this.extensions = extensions;
+            this.includeHosts = includeHosts;
+            this.excludeHosts = excludeHosts;
+            this.skippedMimeTypes = skippedMimeTypes;
+            this.pathPattern = pathPattern;
+            this.inScopeOnly = inScopeOnly;
+        }
+
+        Verdict check(String host, String path, MimeType stated, MimeType inferred) {
+            if (extensions.matchesSuffixOfLastSegment(path)) return Verdict.EXTENSION;
+            String lowerHost = host.toLowerCase(Locale.ROOT);
+            if (!includeHosts.isEmpty() && !includeHosts.matches(lowerHost)) return Verdict.HOST;
+            if (excludeHosts.matches(lowerHost)) return Verdict.HOST;
+            if (skippedMimeTypes.contains(stated) || skippedMimeTypes.contains(inferred)) return Verdict.MIME_TYPE;
+            if (pathPattern != null && pathPattern.matcher(path).find()) return Verdict.PATH;
+            return Verdict.ACCEPTED;
+        }
+    }
+
+    // ---------------------------
+    // Exact hosts plus "*.domain" suffixes.
+    // ---------------------------
+    private static final class HostList {
+        final Set<String> exact = new HashSet<>();
+        final List<String> suffixes = new ArrayList<>(); // ".example.com"
+
+        HostList(List<String> hosts) {
+            for (String host : hosts) {
+                if (host.startsWith("*.")) {
+                    suffixes.add(host.substring(1));
+                } else {
+                    exact.add(host);
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return exact.isEmpty() && suffixes.isEmpty();
+        }
+
+        boolean matches(String host) {
+            if (exact.contains(host)) return true;
+            for (String suffix : suffixes) {
+                // "*.example.com" also covers example.com itself.
+                if (host.endsWith(suffix) || host.equals(suffix.substring(1))) return true;
+            }
+            return false;
+        }
+    }
+
+    // ---------------------------
+    // Trie of reversed suffixes (".png" is stored as g-n-p-.), matched from the end of the path.
+    // ---------------------------
+    private static final class SuffixTrie {
+        private final Node root = new Node();
+
+        void add(String suffix) {
+            Node node = root;
+            for (int i = suffix.length() - 1; i >= 0; i--) {
+                node = node.childOrCreate(suffix.charAt(i));
+            }
+            node.terminal = true;
+        }
+
+        /** True if the last path segment ends with one of the suffixes (case-insensitive). */
+        boolean matchesSuffixOfLastSegment(String path) {
+            Node node = root;
+            for (int i = path.length() - 1; i >= 0; i--) {
+                char c = path.charAt(i);
+                if (c == '/') return false;
+                node = node.child(Character.toLowerCase(c));
+                if (node == null) return false;
+                if (node.terminal) return true;
+            }
+            return false;
+        }
+
+        private static final class Node {
+            private char[] keys = new char[0];
+            private Node[] children = new Node[0];
+            boolean terminal;
+
+            Node child(char c) {
+                for (int i = 0; i < keys.length; i++) {
+                    if (keys[i] == c) return children[i];
+                }
+                return null;
+            }
+
+            Node childOrCreate(char c) {
+                Node child = child(c);
+                if (child != null) return child;
+                child = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = c;
+                children[children.length - 1] = child;
+                return child;
+            }
+        }
+    }
+}
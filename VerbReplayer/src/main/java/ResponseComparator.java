@@ -0,0 +1,114 @@
+import burp.api.montoya.http.message.responses.HttpResponse;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decides whether a replayed verb variant belongs in Results by comparing its response with the
+ * original (baseline) response of the proxied request.
+ * <p>
+ * A variant counts as a success only if its status is 200–399 (excluding 204), as before, and,
+ * when a baseline is known, its response differs meaningfully from the baseline: a different
+ * status code, a body length more than {@code maxLengthDistance} buckets away, a simhash more than
+ * {@code maxSimhashDistance} bits away, or a different set of header names. Apps that answer every
+ * verb with the same 200 page therefore stay out of Results; those variants go to History.
+ * A variant without a body to compare (a HEAD request, or an empty body where the baseline has
+ * one) is compared on its status and header set only, since its length and simhash always differ.
+ * <p>
+ * Signatures are cached by a cheap fingerprint of the response, so the identical 405/WAF pages
+ * that most variants get back are only tokenized once.
+ */
+public class ResponseComparator {
+
+    public static final int DEFAULT_MAX_SIMHASH_DISTANCE = 8;
+    public static final int DEFAULT_MAX_LENGTH_DISTANCE = 1;
+    private static final int CACHE_SIZE = 10_000;
+
+    private final Map<Long, ResponseSignature> cache = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, ResponseSignature> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private volatile boolean enabled = true;
+    private volatile int maxSimhashDistance = DEFAULT_MAX_SIMHASH_DISTANCE;
+    private volatile int maxLengthDistance = DEFAULT_MAX_LENGTH_DISTANCE;
+    private long cacheHits;
+    private long cacheLookups;
+    private long sameAsBaseline;
+
+    /**
+     * Returns the signature of the response, from the cache if an identical response was seen.
+     */
+    public ResponseSignature signature(HttpResponse response) {
+        byte[] body = response.body().getBytes();
+        long fingerprint = ResponseSignature.fingerprint(response, body);
+        synchronized (this) {
+            cacheLookups++;
+            ResponseSignature cached = cache.get(fingerprint);
+            if (cached != null) {
+                cacheHits++;
+                return cached;
+            }
+        }
+        ResponseSignature signature = ResponseSignature.of(response, body);
+        synchronized (this) {
+            cache.put(fingerprint, signature);
+        }
+        return signature;
+    }
+
+    /**
+     * Returns true if the variant should be listed under Results.
+     *
+     * @param baseline the original response's signature, or null if it is not known
+     * @param method   the method on the variant's request line
+     */
+    public boolean isInteresting(ResponseSignature baseline, String method, HttpResponse variant) {
+        int statusCode = variant.statusCode();
+        if (!isSuccessStatus(statusCode)) return false;
+        if (!enabled || baseline == null) return true;
+        ResponseSignature signature = signature(variant);
+        boolean compareBodies = !"HEAD".equalsIgnoreCase(method) && (signature.hasBody() || !baseline.hasBody());
+        boolean differs = signature.statusCode != baseline.statusCode
+                || !signature.sameHeaderSet(baseline)
+                || compareBodies && (signature.lengthDistance(baseline) > maxLengthDistance
+                        || signature.simhashDistance(baseline) > maxSimhashDistance);
+        if (!differs) {
+            synchronized (this) {
+                sameAsBaseline++;
+            }
+        }
+        return differs;
+    }
+
+    /** The status rule used on its own before baselines were compared. */
+    public static boolean isSuccessStatus(int statusCode) {
+        return statusCode >= 200 && statusCode < 400 && statusCode != 204;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setMaxSimhashDistance(int bits) {
+        this.maxSimhashDistance = Math.max(0, Math.min(64, bits));
+    }
+
+    public void setMaxLengthDistance(int buckets) {
+        this.maxLengthDistance = Math.max(0, buckets);
+    }
+
+    /** Number of 2xx/3xx variants sent to History because they matched their baseline. */
+    public synchronized long getSameAsBaselineCount() {
+        return sameAsBaseline;
+    }
+
+    /** Fraction of signature lookups answered from the cache. */
+    public synchronized double getCacheHitRate() {
+        return cacheLookups == 0 ? 0 : (double) cacheHits / cacheLookups;
+    }
+}
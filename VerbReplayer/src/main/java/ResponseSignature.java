@@ -0,0 +1,137 @@
+import burp.api.montoya.http.message.HttpHeader;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Compact similarity signature of an HTTP response, computed once and then compared in
+ * constant time.
+ * <ul>
+ * <li>status code</li>
+ * <li>length bucket: a quarter-octave bucket of the body length, so lengths within about 20%
+ *     land in the same or a neighbouring bucket</li>
+ * <li>simhash: 64-bit simhash over the body's word tokens; similar pages differ in few bits</li>
+ * <li>header set: the names of the response headers, hashed into a 64-bit mask (values and
+ *     per-request headers such as Date are ignored)</li>
+ * </ul>
+ */
+public final class ResponseSignature {
+
+    private static final int MAX_HASHED_BODY_BYTES = 256 * 1024;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // Headers whose presence changes from one response to the next regardless of the verb.
+    private static final Set<String> VOLATILE_HEADERS = new HashSet<>(Arrays.asList(
+            "date", "age", "expires", "last-modified", "etag", "set-cookie", "content-length",
+            "x-request-id", "x-correlation-id", "x-amzn-requestid", "x-amz-cf-id", "cf-ray",
+            "x-runtime", "server-timing", "report-to", "nel"));
+
+    final int statusCode;
+    final int lengthBucket;
+    final long simhash;
+    final long headerMask;
+
+    private ResponseSignature(int statusCode, int lengthBucket, long simhash, long headerMask) {
+        this.statusCode = statusCode;
+        this.lengthBucket = lengthBucket;
+        this.simhash = simhash;
+        this.headerMask = headerMask;
+    }
+
+    /**
+     * Cheap fingerprint of the parts the signature is computed from (status, header names and
+     * the hashed part of the body), used to find an already computed signature in a cache.
+     */
+    static long fingerprint(HttpResponse response, byte[] body) {
+        long h = FNV_OFFSET;
+        h = (h ^ response.statusCode()) * FNV_PRIME;
+        for (HttpHeader header : response.headers()) {
+            String name = header.name();
+            for (int i = 0; i < name.length(); i++) {
+                h = (h ^ Character.toLowerCase(name.charAt(i))) * FNV_PRIME;
+            }
+            h = (h ^ ':') * FNV_PRIME;
+        }
+        int n = Math.min(body.length, MAX_HASHED_BODY_BYTES);
+        for (int i = 0; i < n; i++) {
+            h = (h ^ (body[i] & 0xff)) * FNV_PRIME;
+        }
+        return h ^ body.length;
+    }
+
+    /** Computes the signature; the body is passed in because the caller already extracted it. */
+    static ResponseSignature of(HttpResponse response, byte[] body) {
+        return new ResponseSignature(response.statusCode(), lengthBucket(body.length),
+                simhash(body), headerMask(response));
+    }
+
+    /** Four buckets per doubling of the length. */
+    static int lengthBucket(int length) {
+        if (length < 4) return length;
+        int log2 = 31 - Integer.numberOfLeadingZeros(length);
+        int fraction = (length >>> (log2 - 2)) & 3; // the two bits below the leading one
+        return log2 * 4 + fraction;
+    }
+
+    /**
+     * 64-bit simhash over ASCII letter/digit runs of the body, each hashed with FNV-1a.
+     * Tokens are hashed while scanning, so no Strings are created.
+     */
+    static long simhash(byte[] body) {
+        int[] weights = new int[64];
+        int n = Math.min(body.length, MAX_HASHED_BODY_BYTES);
+        long h = FNV_OFFSET;
+        int tokenLength = 0;
+        for (int i = 0; i <= n; i++) {
+            int c = i < n ? body[i] & 0xff : 0;
+            boolean wordChar = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+            if (wordChar) {
+                h = (h ^ (c | 0x20)) * FNV_PRIME; // case-insensitive for letters
+                tokenLength++;
+            } else if (tokenLength > 0) {
+                for (int bit = 0; bit < 64; bit++) {
+                    weights[bit] += ((h >>> bit) & 1) != 0 ? 1 : -1;
+                }
+                h = FNV_OFFSET;
+                tokenLength = 0;
+            }
+        }
+        long simhash = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) simhash |= 1L << bit;
+        }
+        return simhash;
+    }
+
+    private static long headerMask(HttpResponse response) {
+        long mask = 0;
+        for (HttpHeader header : response.headers()) {
+            String name = header.name().toLowerCase(Locale.ROOT);
+            if (VOLATILE_HEADERS.contains(name)) continue;
+            mask |= 1L << (name.hashCode() & 63);
+        }
+        return mask;
+    }
+
+    /** Number of simhash bits that differ, 0 (same) to 64. */
+    int simhashDistance(ResponseSignature other) {
+        return Long.bitCount(simhash ^ other.simhash);
+    }
+
+    /** Number of length buckets between the two bodies. */
+    int lengthDistance(ResponseSignature other) {
+        return Math.abs(lengthBucket - other.lengthBucket);
+    }
+
+    /** True if the body is not empty; only an empty body falls in bucket 0. */
+    boolean hasBody() {
+        return lengthBucket != 0;
+    }
+
+    boolean sameHeaderSet(ResponseSignature other) {
+        return headerMask == other.headerMask;
+    }
+}
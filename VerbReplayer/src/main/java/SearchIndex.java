@@ -0,0 +1,330 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Incremental search index over the logged entries.
+ * <p>
+ * Every entry becomes a document numbered in the order it was indexed. Field indexes map the
+ * verb, status code, host and first path segment to posting lists of document numbers. Response
+ * bodies go into an inverted index of lowercased word tokens. Since the body store already
+ * deduplicates bodies by content, tokens point at body blobs rather than documents, and each
+ * blob keeps the list of documents that share it. A body that thousands of entries share
+ * (a WAF page, say) is then tokenized once.
+ * <p>
+ * Updates run on a single background thread in submission order, so the event thread only
+ * queues work. Queries evaluate each condition to a {@link BitSet} over document numbers and
+ * intersect them, which stays well under a second at a million documents.
+ * <p>
+ * Query syntax: whitespace-separated terms that must all match.
+ * <ul>
+ * <li>{@code verb:PUT}, {@code host:example.com}, {@code path:admin} (first path segment)</li>
+ * <li>{@code status:200} or {@code status:2xx}</li>
+ * <li>{@code in:results} or {@code in:history}</li>
+ * <li>anything else is a word in the response body; {@code word*} matches a prefix</li>
+ * </ul>
+ */
+public class SearchIndex {
+
+    private static final int MIN_TOKEN_LENGTH = 2;
+    private static final int MAX_TOKEN_LENGTH = 40;
+    private static final int MAX_INDEXED_CHARS = 1 << 20; // only the first 1M chars of a body
+
+    private final Function<UserInterface.ReplayedRequestEntry, String> responseReader;
+    private final ExecutorService indexer;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    // --- Documents ---
+    private final List<UserInterface.ReplayedRequestEntry> docs = new ArrayList<>();
+    private final BitSet successDocs = new BitSet();
+    private final BitSet deletedDocs = new BitSet();
+
+    // --- Field indexes ---
+    private final Map<String, IntList> verbIndex = new HashMap<>();
+    private final Map<Integer, IntList> statusIndex = new HashMap<>();
+    private final Map<String, IntList> hostIndex = new HashMap<>();
+    private final Map<String, IntList> segmentIndex = new HashMap<>();
+
+    // --- Body index: token -> blobs, blob -> documents ---
+    private final Map<Long, Integer> blobNumbers = new HashMap<>();
+    private final List<IntList> blobDocs = new ArrayList<>();
+    private final Map<String, IntList> tokenIndex = new HashMap<>();
+
+    /**
+     * @param responseReader loads an entry's response text (e.g. from the body store)
+     */
+    public SearchIndex(Function<UserInterface.ReplayedRequestEntry, String> responseReader) {
+        this.responseReader = responseReader;
+        this.indexer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "VerbReplayer-index");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    /**
+     * Queues the entries for indexing. Their ids must already be assigned.
+     *
+     * @param success whether they belong to the Results (true) or History (false) list
+     */
+    public void addAll(Collection<UserInterface.ReplayedRequestEntry> entries, boolean success) {
+        if (entries.isEmpty()) return;
+        List<UserInterface.ReplayedRequestEntry> copy = new ArrayList<>(entries);
+        pending.addAndGet(copy.size());
+        indexer.execute(() -> {
+            for (UserInterface.ReplayedRequestEntry entry : copy) {
+                try {
+                    index(entry, success);
+                } finally {
+                    pending.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    /**
+     * Queues removal of the entries with the given ids (e.g. after "Clear Non-Highlighted").
+     */
+    public void removeAll(Set<Long> ids) {
+        if (ids.isEmpty()) return;
+        indexer.execute(() -> {
+            synchronized (this) {
+                for (int doc = 0; doc < docs.size(); doc++) {
+                    UserInterface.ReplayedRequestEntry entry = docs.get(doc);
+                    if (entry != null && ids.contains(entry.id)) {
+                        deletedDocs.set(doc);
+                        docs.set(doc, null); // let the entry be collected; postings stay but are masked
+                    }
+                }
+            }
+        });
+    }
+
+    private void index(UserInterface.ReplayedRequestEntry entry, boolean success) {
+        // Read and tokenize outside the lock so queries are not held up by disk reads.
+        long blobKey = entry.responseOffset;
+        Integer blob;
+        synchronized (this) {
+            blob = blobKey >= 0 ? blobNumbers.get(blobKey) : null;
+        }
+        String[] tokens = null;
+        if (blob == null) {
+            tokens = tokenize(responseReader.apply(entry));
+        }
+        synchronized (this) {
+            int doc = docs.size();
+            docs.add(entry);
+            if (success) successDocs.set(doc);
+            postings(verbIndex, normalize(entry.verb)).add(doc);
+            postings(statusIndex, entry.statusCode).add(doc);
+            String url = entry.url == null ? "" : entry.url;
+            int slash = url.indexOf('/');
+            String host = slash < 0 ? url : url.substring(0, slash);
+            postings(hostIndex, normalize(host)).add(doc);
+            postings(segmentIndex, normalize(firstSegment(slash < 0 ? "" : url.substring(slash + 1)))).add(doc);
+            if (blob == null) {
+                blob = blobDocs.size();
+                blobDocs.add(new IntList());
+                // Bodies kept in memory (no body store) are not shared, so they get no key.
+                if (blobKey >= 0) blobNumbers.put(blobKey, blob);
+                for (String token : tokens) {
+                    postings(tokenIndex, token).add(blob);
+                }
+            }
+            blobDocs.get(blob).add(doc);
+        }
+    }
+
+    private static String firstSegment(String path) {
+        int end = path.length();
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '/' || c == '?' || c == '#') {
+                end = i;
+                break;
+            }
+        }
+        return path.substring(0, end);
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    /** Splits the text into distinct lowercased letter/digit runs. */
+    private static String[] tokenize(String text) {
+        if (text == null) return new String[0];
+        int length = Math.min(text.length(), MAX_INDEXED_CHARS);
+        LinkedHashSet<String> tokens = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean wordChar = i < length && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar) {
+                if (start < 0) start = i;
+            } else if (start >= 0) {
+                int tokenLength = i - start;
+                if (tokenLength >= MIN_TOKEN_LENGTH && tokenLength <= MAX_TOKEN_LENGTH) {
+                    tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                }
+                start = -1;
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    private static <K> IntList postings(Map<K, IntList> index, K key) {
+        return index.computeIfAbsent(key, k -> new IntList());
+    }
+
+    // ---------------------------
+    // Queries
+    // ---------------------------
+
+    /**
+     * Runs the query and returns the matching document numbers in indexing order.
+     *
+     * @throws IllegalArgumentException if the query has an unknown field or bad value
+     */
+    public synchronized int[] search(String query) {
+        BitSet result = new BitSet(docs.size());
+        result.set(0, docs.size());
+        result.andNot(deletedDocs);
+        for (String term : query.trim().split("\\s+")) {
+            if (term.isEmpty()) continue;
+            result.and(evaluate(term));
+            if (result.isEmpty()) break;
+        }
+        return result.stream().toArray();
+    }
+
+    private BitSet evaluate(String term) {
+        int colon = term.indexOf(':');
+        String field = colon > 0 ? term.substring(0, colon).toLowerCase(Locale.ROOT) : "";
+        String value = normalize(colon > 0 ? term.substring(colon + 1) : term);
+        BitSet bits = new BitSet(docs.size());
+        switch (field) {
+            case "verb":
+                setAll(bits, verbIndex.get(value));
+                break;
+            case "host":
+                setAll(bits, hostIndex.get(value));
+                break;
+            case "path":
+                setAll(bits, segmentIndex.get(value.startsWith("/") ? value.substring(1) : value));
+                break;
+            case "status":
+                evaluateStatus(bits, value);
+                break;
+            case "in":
+                if (value.equals("results")) {
+                    bits.or(successDocs);
+                } else if (value.equals("history")) {
+                    bits.set(0, docs.size());
+                    bits.andNot(successDocs);
+                } else {
+                    throw new IllegalArgumentException("in: expects results or history");
+                }
+                break;
+            case "":
+                evaluateBodyTerm(bits, value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown field: " + field);
+        }
+        return bits;
+    }
+
+    private void evaluateStatus(BitSet bits, String value) {
+        if (value.length() == 3 && value.endsWith("xx") && Character.isDigit(value.charAt(0))) {
+            int statusClass = value.charAt(0) - '0';
+            for (Map.Entry<Integer, IntList> e : statusIndex.entrySet()) {
+                if (e.getKey() / 100 == statusClass) setAll(bits, e.getValue());
+            }
+            return;
+        }
+        try {
+            setAll(bits, statusIndex.get(Integer.parseInt(value)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("status: expects a code like 200 or a class like 2xx");
+        }
+    }
+
+    private void evaluateBodyTerm(BitSet bits, String value) {
+        BitSet blobs = new BitSet(blobDocs.size());
+        if (value.endsWith("*")) {
+            String prefix = value.substring(0, value.length() - 1);
+            for (Map.Entry<String, IntList> e : tokenIndex.entrySet()) {
+                if (e.getKey().startsWith(prefix)) setAll(blobs, e.getValue());
+            }
+        } else {
+            // Split the same way bodies are tokenized, so "x-powered-by" means all three words.
+            String[] tokens = tokenize(value);
+            if (tokens.length == 0) return;
+            for (int i = 0; i < tokens.length; i++) {
+                BitSet tokenBlobs = new BitSet(blobDocs.size());
+                setAll(tokenBlobs, tokenIndex.get(tokens[i]));
+                if (i == 0) blobs.or(tokenBlobs); else blobs.and(tokenBlobs);
+            }
+        }
+        for (int blob = blobs.nextSetBit(0); blob >= 0; blob = blobs.nextSetBit(blob + 1)) {
+            setAll(bits, blobDocs.get(blob));
+        }
+    }
+
+    private static void setAll(BitSet bits, IntList list) {
+        if (list == null) return;
+        for (int i = 0; i < list.size; i++) bits.set(list.values[i]);
+    }
+
+    /** Returns the entry for a document number from {@link #search}, or null if it was removed. */
+    public synchronized UserInterface.ReplayedRequestEntry entry(int doc) {
+        return docs.get(doc);
+    }
+
+    /** Whether the document belongs to the Results list rather than History. */
+    public synchronized boolean isSuccess(int doc) {
+        return successDocs.get(doc);
+    }
+
+    /** Number of entries queued but not yet indexed. */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    public synchronized int size() {
+        return docs.size() - deletedDocs.cardinality();
+    }
+
+    public void shutdown() {
+        indexer.shutdownNow();
+    }
+
+    // ---------------------------
+    // Growable list of ints, ascending when used as a posting list.
+    // ---------------------------
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            // Posting lists are appended in order, so a repeat can only be the last value.
+            if (size > 0 && values[size - 1] == value) return;
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Table model over the document numbers returned by {@link SearchIndex#search(String)}.
+ * Entries are looked up from the index only for the rows being displayed.
+ */
+public class SearchResultsTableModel extends AbstractTableModel {
+
+    private static final String[] COLUMN_NAMES = {"List", "#", "Time", "Verb", "Status", "URL"};
+
+    private final SearchIndex searchIndex;
+    private int[] docs = new int[0];
+
+    public SearchResultsTableModel(SearchIndex searchIndex) {
+        this.searchIndex = searchIndex;
+    }
+
+    public void setResults(int[] docs) {
+        this.docs = docs;
+        fireTableDataChanged();
+    }
+
+    public int[] getResults() {
+        return docs;
+    }
+
+    /** Returns the entry in the given row, or null if it has been cleared since the search. */
+    public UserInterface.ReplayedRequestEntry getEntry(int row) {
+        return searchIndex.entry(docs[row]);
+    }
+
+    @Override
+    public int getRowCount() {
+        return docs.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (column == 0) return searchIndex.isSuccess(docs[row]) ? "Results" : "History";
+        UserInterface.ReplayedRequestEntry entry = getEntry(row);
+        if (entry == null) return column == 5 ? "(cleared)" : "";
+        switch (column) {
+            case 1:
+                return entry.id;
+            case 2:
+                return entry.timestamp;
+            case 3:
+                return entry.verb;
+            case 4:
+                return entry.statusCode;
+            case 5:
+                return entry.url;
+            default:
+                return null;
+        }
+    }
+}
@@ -1,46 +1,82 @@
 import javax.swing.*;
 import javax.swing.event.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.tree.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.List;  // using java.util.List explicitly
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 import burp.api.montoya.MontoyaApi;
 import burp.api.montoya.http.message.requests.HttpRequest;
 
 /**
  * This class implements the UI for the VerbReplayer extension.
- * It persists logged entries (both Results and History) to files in the same directory as the current project,
+ * It persists logged entries (both Results and History) to an append-only journal in the storage directory,
  * clears only the Results (successful requests) when requested, and preserves highlighting.
  */
-public class UserInterface {
+public class UserInterface implements ReplayContext {
 
     private final MontoyaApi api;
     private final JPanel mainPanel;
     private final JTabbedPane tabbedPane;
 
     // --- Persistence file names (saved in the project directory) ---
+    private static final String JOURNAL_FILE = "VerbReplayer_journal.dat";
+    private static final String BLOBS_FILE   = "VerbReplayer_blobs.dat";
+    // Whole-list serialization files written by older versions; migrated into the journal once.
     private static final String SUCCESS_FILE = "VerbReplayer_success.dat";
     private static final String ERROR_FILE   = "VerbReplayer_error.dat";
+    private static final String CAMPAIGN_FILE = "VerbReplayer_campaign.properties";
 
-    // --- Master lists (persisted) ---
+    private ReplayJournal journal;
+    private BodyStore bodyStore; // null if the body file could not be opened; texts then stay on the heap
+    private final AtomicLong nextEntryId = new AtomicLong(1);
+    // Reads the saved history in the background; see applyLoadedChunk().
+    private HistoryLoader historyLoader;
+    private boolean clearedDuringLoad; // a clear applies to saved entries that are still loading
+    private boolean clearPending;      // Clear was pressed before live entries could be taken in
+
+    // Folds concrete paths into endpoint templates for replay dedup and tree grouping.
+    private final PathNormalizer pathNormalizer = new PathNormalizer();
+    // Decides which proxied requests are replayed at all; edited on the Settings tab.
+    private final RequestFilter requestFilter;
+
+    // --- Master lists (persisted); only touched on the Swing event thread ---
     private final List<ReplayedRequestEntry> successEntries = new ArrayList<>();
     private final List<ReplayedRequestEntry> errorEntries = new ArrayList<>();
 
+    // --- Ingest queue: replay workers add entries here, the event thread drains them in batches ---
+    private static final int INGEST_INTERVAL_MS = 100;
+    private static final int INGEST_BATCH_LIMIT = 2000; // per tick, so a burst cannot freeze the UI
+    private final ConcurrentLinkedQueue<IngestItem> ingestQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger ingestPending = new AtomicInteger();
+    private final javax.swing.Timer ingestTimer;
+
     // ---------------------------
     // Nested class for logged entries.
     // (We store the HTTP request as a String because the HttpRequest object is not serializable.)
     // ---------------------------
     public static class ReplayedRequestEntry implements Serializable {
         private static final long serialVersionUID = 1L;
+        public long id;             // journal id, unique and increasing in logging order
         public String verb;
         public String url;
+        public String scheme;       // "http" or "https"; null for entries logged before it was recorded
         public int statusCode;
-        public String requestText;  // textual representation of the HTTP request
-        public String response;
+        public String requestText;  // textual representation of the HTTP request (only while not in the body store)
+        public String response;     // (only while not in the body store)
+        public long requestOffset = -1;  // location of the request text in the body store, -1 if not stored there
+        public int requestLength;
+        public long responseOffset = -1; // location of the response in the body store, -1 if not stored there
+        public int responseLength;
         public String timestamp;
         public boolean highlighted; // flag for highlighting
 
@@ -60,61 +96,136 @@ public class UserInterface {
         }
     }
 
+    // A logged entry waiting on the ingest queue, with the list it belongs in.
+    private static class IngestItem {
+        final ReplayedRequestEntry entry;
+        final boolean success;
+
+        IngestItem(ReplayedRequestEntry entry, boolean success) {
+            this.entry = entry;
+            this.success = success;
+        }
+    }
+
+    // ---------------------------
+    // Search tab: indexed search over both lists.
+    // ---------------------------
+    private final SearchIndex searchIndex;
+    private final JPanel searchPanel;
+    private final JTextField searchField;
+    private final JLabel searchStatusLabel;
+    private final SearchResultsTableModel searchResultsModel;
+    private final JTable searchResultsTable;
+    private final JTextArea searchRequestTextArea;
+    private final JTextArea searchResponseTextArea;
+
     // ---------------------------
     // TAB 1: Friendly Layout for Successful Requests ("Results")
     // ---------------------------
     private final JPanel resultsPanelFriendly;
-    private final DefaultMutableTreeNode resultsFriendlyRoot; // built from successEntries
-    private final DefaultTreeModel resultsFriendlyTreeModel;
+    private final DefaultMutableTreeNode resultsFriendlyRoot; // grouped from successEntries
+    private final GroupedTreeModel resultsFriendlyTreeModel;
     private final JTree resultsFriendlyTree;
     private final JTextArea resultsFriendlyRequestTextArea;
     private final JTextArea resultsFriendlyResponseTextArea;
     private final JButton resultsFriendlySendButton;
     private final JPanel resultsFriendlyFilterPanel;
-    // These checkboxes control which HTTP verbs are allowed for replay.
-    private final JCheckBox resultsFriendlyAllFilter;
-    private final JCheckBox resultsFriendlyPutFilter;
-    private final JCheckBox resultsFriendlyDeleteFilter;
-    private final JCheckBox resultsFriendlyHeadFilter;
-    private final JCheckBox resultsFriendlyOptionsFilter;
-    private final JCheckBox resultsFriendlyConnectFilter;
-    private final JCheckBox resultsFriendlyTraceFilter;
-    private final JCheckBox resultsFriendlyPatchFilter;
+    // One checkbox per verb of the verb matrix; these pick the results that are exported.
+    private final VerbCheckBoxes resultsFriendlyVerbFilter;
     private final JButton clearButton; // clears non-highlighted entries from successEntries only
 
     // ---------------------------
     // TAB 2: Grouped Log for Non‑successful Requests ("History")
     // ---------------------------
     private final JPanel historyPanel;
-    private final DefaultMutableTreeNode historyRoot; // built from errorEntries; root label "Log of all requests"
-    private final DefaultTreeModel historyTreeModel;
+    private final DefaultMutableTreeNode historyRoot; // grouped from errorEntries; root label "Log of all requests"
+    private final GroupedTreeModel historyTreeModel;
     private final JTree historyTree;
+    // Flat alternative to the tree: columnar store + index-array view, scales to millions of rows.
+    private final HistoryTableModel historyTableModel;
+    private final JTable historyTable;
+    private final JTextField historyTableFilterField;
+    private final JComboBox<String> historyTableStatusFilter;
+    private final JToggleButton historyTableViewToggle;
+    private final JPanel historyViewPanel; // CardLayout: tree or table
+    private ReplayedRequestEntry historyTableShownEntry;
+    private static final String HISTORY_TREE_CARD = "tree";
+    private static final String HISTORY_TABLE_CARD = "table";
     private final JTextArea historyRequestTextArea;
     private final JTextArea historyResponseTextArea;
     private final JButton historySendButton;
     private final JPanel historyFilterPanel;
-    // These checkboxes control which HTTP verbs are allowed for replay.
-    private final JCheckBox historyAllFilter;
-    private final JCheckBox historyPutFilter;
-    private final JCheckBox historyDeleteFilter;
-    private final JCheckBox historyHeadFilter;
-    private final JCheckBox historyOptionsFilter;
-    private final JCheckBox historyConnectFilter;
-    private final JCheckBox historyTraceFilter;
-    private final JCheckBox historyPatchFilter;
+    // One checkbox per verb of the verb matrix; these control which verbs are replayed.
+    private final VerbCheckBoxes historyVerbFilter;
+
+    // ---------------------------
+    // TAB 3: Replay engine settings ("Settings")
+    // ---------------------------
+    private final JPanel settingsPanel;
+    private final JSpinner concurrencySpinner;
+    private final JCheckBox shedLowPriorityCheckBox;
+    private final JCheckBox batchVariantsCheckBox;
+    private final JSpinner responseTimeoutSpinner;
+    private final JSpinner maxRetriesSpinner;
+    private final JTextArea verbMatrixTextArea;
+    private final JSpinner rateLimitSpinner;
+    private final JSpinner burstSpinner;
+    private final JSpinner hostInFlightSpinner;
+    private final JCheckBox dedupEnabledCheckBox;
+    private final JSpinner dedupTtlSpinner;
+    private final JSpinner dedupSizeSpinner;
+    private final JButton dedupResetButton;
+    private final JCheckBox foldIdsCheckBox;
+    private final JCheckBox baselineCheckBox;
+    private final JTextField filterExtensionsField;
+    private final JTextField filterIncludeHostsField;
+    private final JTextField filterExcludeHostsField;
+    private final JTextField filterMimeTypesField;
+    private final JTextArea filterPathRegexArea;
+    private final JCheckBox filterInScopeCheckBox;
+    private final JLabel filterStatsLabel;
+    private final javax.swing.table.DefaultTableModel replayHostsModel; // Enabled | Host
+    private final JSpinner simhashDistanceSpinner;
+    private final JSpinner lengthDistanceSpinner;
+    private final JTextArea pathRulesTextArea;
+    private final JLabel bodyStoreStatsLabel;
+
+    // ---------------------------
+    // TAB 4: Replay campaigns over captured traffic ("Campaign")
+    // ---------------------------
+    private final JPanel campaignPanel;
+    private final JComboBox<ReplayCampaign.Source> campaignSourceCombo;
+    private final JButton campaignStartButton;
+    private final JButton campaignPauseButton;
+    private final JButton campaignStopButton;
+    private final JProgressBar campaignProgressBar;
+    private final JLabel campaignStatusLabel;
+    private ReplayCampaign campaign;
 
     // ---------------------------
-    // A constant list of all possible verbs.
+    // TAB 5: Live replay metrics ("Metrics")
     // ---------------------------
-    private static final List<String> ALL_VERBS = Arrays.asList("PUT", "DELETE", "HEAD", "OPTIONS", "CONNECT", "TRACE", "PATCH");
+    private final JPanel metricsPanel;
+    private final JComboBox<String> metricsGroupCombo; // By host | By verb
+    private final MetricsTableModel metricsTableModel;
+    private final JLabel metricsSummaryLabel;
+    private final JLabel metricsProxyLabel;
+
+    // Status bar below the tabs showing the replay queue.
+    private final JLabel queueStatusLabel;
+    private ReplayEngine replayEngine;
 
     public UserInterface(MontoyaApi api) {
         this.api = api;
+        this.requestFilter = new RequestFilter(new HostScope(url -> api.scope().isInScope(url)));
+        api.scope().registerScopeChangeHandler(change -> requestFilter.getHostScope().clearScopeCache());
         mainPanel = new JPanel(new BorderLayout());
         tabbedPane = new JTabbedPane();
 
-        // Load persisted data from the project directory.
+        // Open the storage in the project directory; saved history is loaded in the background
+        // once the tabs exist, so the extension does not wait for it.
         loadData();
+        searchIndex = new SearchIndex(this::responseOf);
 
         // ============================================================
         // Build TAB 1 – Friendly Layout for Successful Requests ("Results")
@@ -122,68 +233,33 @@ public class UserInterface {
         resultsPanelFriendly = new JPanel(new BorderLayout());
         resultsFriendlyFilterPanel = new JPanel();
         resultsFriendlyFilterPanel.add(new JLabel("Allowed HTTP Verbs:"));
-        resultsFriendlyAllFilter = new JCheckBox("All", true);
-        resultsFriendlyPutFilter = new JCheckBox("PUT", true);
-        resultsFriendlyDeleteFilter = new JCheckBox("DELETE", true);
-        resultsFriendlyHeadFilter = new JCheckBox("HEAD", true);
-        resultsFriendlyOptionsFilter = new JCheckBox("OPTIONS", true);
-        resultsFriendlyConnectFilter = new JCheckBox("CONNECT", true);
-        resultsFriendlyTraceFilter = new JCheckBox("TRACE", true);
-        resultsFriendlyPatchFilter = new JCheckBox("PATCH", true);
-        resultsFriendlyFilterPanel.add(resultsFriendlyAllFilter);
-        resultsFriendlyFilterPanel.add(resultsFriendlyPutFilter);
-        resultsFriendlyFilterPanel.add(resultsFriendlyDeleteFilter);
-        resultsFriendlyFilterPanel.add(resultsFriendlyHeadFilter);
-        resultsFriendlyFilterPanel.add(resultsFriendlyOptionsFilter);
-        resultsFriendlyFilterPanel.add(resultsFriendlyConnectFilter);
-        resultsFriendlyFilterPanel.add(resultsFriendlyTraceFilter);
-        resultsFriendlyFilterPanel.add(resultsFriendlyPatchFilter);
-        // Synchronize "All" checkbox.
-        resultsFriendlyAllFilter.addItemListener(e -> {
-            boolean sel = resultsFriendlyAllFilter.isSelected();
-            resultsFriendlyPutFilter.setSelected(sel);
-            resultsFriendlyDeleteFilter.setSelected(sel);
-            resultsFriendlyHeadFilter.setSelected(sel);
-            resultsFriendlyOptionsFilter.setSelected(sel);
-            resultsFriendlyConnectFilter.setSelected(sel);
-            resultsFriendlyTraceFilter.setSelected(sel);
-            resultsFriendlyPatchFilter.setSelected(sel);
-        });
-        ItemListener syncFriendlyListener = e -> {
-            if (!resultsFriendlyPutFilter.isSelected() ||
-                    !resultsFriendlyDeleteFilter.isSelected() ||
-                    !resultsFriendlyHeadFilter.isSelected() ||
-                    !resultsFriendlyOptionsFilter.isSelected() ||
-                    !resultsFriendlyConnectFilter.isSelected() ||
-                    !resultsFriendlyTraceFilter.isSelected() ||
-                    !resultsFriendlyPatchFilter.isSelected()) {
-                resultsFriendlyAllFilter.setSelected(false);
-            } else {
-                resultsFriendlyAllFilter.setSelected(true);
-            }
-        };
-        resultsFriendlyPutFilter.addItemListener(syncFriendlyListener);
-        resultsFriendlyDeleteFilter.addItemListener(syncFriendlyListener);
-        resultsFriendlyHeadFilter.addItemListener(syncFriendlyListener);
-        resultsFriendlyOptionsFilter.addItemListener(syncFriendlyListener);
-        resultsFriendlyConnectFilter.addItemListener(syncFriendlyListener);
-        resultsFriendlyTraceFilter.addItemListener(syncFriendlyListener);
-        resultsFriendlyPatchFilter.addItemListener(syncFriendlyListener);
+        // Built from the default matrix; rebuilt from the engine's matrix once it is connected.
+        resultsFriendlyVerbFilter = new VerbCheckBoxes(VerbMatrix.parse(VerbMatrix.DEFAULT_MATRIX), () -> {
+        });
+        resultsFriendlyFilterPanel.add(resultsFriendlyVerbFilter.getComponent());
 
         // Add the Clear button to the Results tab – it clears only the successful entries.
         clearButton = new JButton("Clear Non-Highlighted");
         clearButton.addActionListener(e -> {
-            clearNonHighlightedEntries();
-            saveData();
-            updateFriendlyTree();
+            // Take in everything logged so far first, so the clear applies to it as well. Early
+            // in loading nothing can be taken in yet, so the ingest timer clears once it can.
+            if (drainAllIngested()) {
+                clearResults();
+            } else {
+                clearPending = true;
+            }
         });
         resultsFriendlyFilterPanel.add(clearButton);
+        JButton resultsExportButton = new JButton("Export...");
+        resultsExportButton.setToolTipText("Write the results shown by the verb filters to a JSON Lines, CSV or HAR file");
+        resultsExportButton.addActionListener(e -> exportEntries(true));
+        resultsFriendlyFilterPanel.add(resultsExportButton);
 
         resultsPanelFriendly.add(resultsFriendlyFilterPanel, BorderLayout.NORTH);
 
         // Build the friendly tree from successEntries.
-        resultsFriendlyRoot = new DefaultMutableTreeNode("Successful Requests");
-        resultsFriendlyTreeModel = new DefaultTreeModel(resultsFriendlyRoot);
+        resultsFriendlyTreeModel = new GroupedTreeModel("Successful Requests", pathNormalizer);
+        resultsFriendlyRoot = (DefaultMutableTreeNode) resultsFriendlyTreeModel.getRoot();
         resultsFriendlyTree = new JTree(resultsFriendlyTreeModel);
         resultsFriendlyTree.setRootVisible(true);
         resultsFriendlyTree.setCellRenderer(new DefaultTreeCellRenderer() {
@@ -196,8 +272,11 @@ public class UserInterface {
                 if (node.isLeaf() && node.getUserObject() instanceof ReplayedRequestEntry) {
                     ReplayedRequestEntry entry = (ReplayedRequestEntry) node.getUserObject();
                     c.setForeground(entry.highlighted ? Color.RED : Color.BLACK);
-                } else {
-                    c.setForeground(nodeHasHighlightedDescendant(node) ? Color.RED : Color.BLACK);
+                } else if (node instanceof GroupedTreeModel.GroupNode) {
+                    GroupedTreeModel.GroupNode group = (GroupedTreeModel.GroupNode) node;
+                    setText(node.getLevel() == 1 && !requestFilter.getHostScope().isEnabled(node.toString())
+                            ? group.getLabel() + " [replay disabled]" : group.getLabel());
+                    c.setForeground(group.hasHighlighted() ? Color.RED : Color.BLACK);
                 }
                 return c;
             }
@@ -225,8 +304,9 @@ public class UserInterface {
         resultsFriendlySendButton = new JButton("Send Request to Repeater");
         resultsFriendlySendButton.addActionListener(e -> {
             ReplayedRequestEntry entry = getSelectedEntry(resultsFriendlyTree);
-            if (entry != null && entry.requestText != null) {
-                HttpRequest req = parseHttpRequest(entry.requestText);
+            String requestText = (entry != null) ? requestTextOf(entry) : null;
+            if (requestText != null) {
+                HttpRequest req = parseHttpRequest(requestText);
                 if (req != null) {
                     VerbReplayer.sendToRepeater(req);
                 } else {
@@ -250,8 +330,9 @@ public class UserInterface {
             public void valueChanged(TreeSelectionEvent e) {
                 ReplayedRequestEntry entry = getSelectedEntry(resultsFriendlyTree);
                 if (entry != null) {
-                    resultsFriendlyRequestTextArea.setText(entry.requestText);
-                    resultsFriendlyResponseTextArea.setText(entry.response);
+                    // Bodies are loaded from the body store only when an entry is shown.
+                    resultsFriendlyRequestTextArea.setText(requestTextOf(entry));
+                    resultsFriendlyResponseTextArea.setText(responseOf(entry));
                 }
             }
         });
@@ -262,59 +343,25 @@ public class UserInterface {
         historyPanel = new JPanel(new BorderLayout());
         historyFilterPanel = new JPanel();
         historyFilterPanel.add(new JLabel("Allowed HTTP Verbs:"));
-        historyAllFilter = new JCheckBox("All", true);
-        historyPutFilter = new JCheckBox("PUT", true);
-        historyDeleteFilter = new JCheckBox("DELETE", true);
-        historyHeadFilter = new JCheckBox("HEAD", true);
-        historyOptionsFilter = new JCheckBox("OPTIONS", true);
-        historyConnectFilter = new JCheckBox("CONNECT", true);
-        historyTraceFilter = new JCheckBox("TRACE", true);
-        historyPatchFilter = new JCheckBox("PATCH", true);
-        historyFilterPanel.add(historyAllFilter);
-        historyFilterPanel.add(historyPutFilter);
-        historyFilterPanel.add(historyDeleteFilter);
-        historyFilterPanel.add(historyHeadFilter);
-        historyFilterPanel.add(historyOptionsFilter);
-        historyFilterPanel.add(historyConnectFilter);
-        historyFilterPanel.add(historyTraceFilter);
-        historyFilterPanel.add(historyPatchFilter);
-        // Synchronize "All" checkbox for History tab.
-        historyAllFilter.addItemListener(e -> {
-            boolean sel = historyAllFilter.isSelected();
-            historyPutFilter.setSelected(sel);
-            historyDeleteFilter.setSelected(sel);
-            historyHeadFilter.setSelected(sel);
-            historyOptionsFilter.setSelected(sel);
-            historyConnectFilter.setSelected(sel);
-            historyTraceFilter.setSelected(sel);
-            historyPatchFilter.setSelected(sel);
-        });
-        ItemListener syncHistoryListener = e -> {
-            if (!historyPutFilter.isSelected() ||
-                    !historyDeleteFilter.isSelected() ||
-                    !historyHeadFilter.isSelected() ||
-                    !historyOptionsFilter.isSelected() ||
-                    !historyConnectFilter.isSelected() ||
-                    !historyTraceFilter.isSelected() ||
-                    !historyPatchFilter.isSelected()) {
-                historyAllFilter.setSelected(false);
-            } else {
-                historyAllFilter.setSelected(true);
-            }
-        };
-        historyPutFilter.addItemListener(syncHistoryListener);
-        historyDeleteFilter.addItemListener(syncHistoryListener);
-        historyHeadFilter.addItemListener(syncHistoryListener);
-        historyOptionsFilter.addItemListener(syncHistoryListener);
-        historyConnectFilter.addItemListener(syncHistoryListener);
-        historyTraceFilter.addItemListener(syncHistoryListener);
-        historyPatchFilter.addItemListener(syncHistoryListener);
+        // Unticking a verb also cancels its queued and in-flight replays.
+        historyVerbFilter = new VerbCheckBoxes(VerbMatrix.parse(VerbMatrix.DEFAULT_MATRIX), () -> {
+            if (replayEngine != null) replayEngine.cancelDeselectedVerbs();
+        });
+        historyFilterPanel.add(historyVerbFilter.getComponent());
+
+        historyTableViewToggle = new JToggleButton("Table View");
+        historyTableViewToggle.setToolTipText("Show the log as a flat, sortable table instead of a tree");
+        historyFilterPanel.add(historyTableViewToggle);
+        JButton historyExportButton = new JButton("Export...");
+        historyExportButton.setToolTipText("Write the log (as filtered in the table view) to a JSON Lines, CSV or HAR file");
+        historyExportButton.addActionListener(e -> exportEntries(false));
+        historyFilterPanel.add(historyExportButton);
 
         historyPanel.add(historyFilterPanel, BorderLayout.NORTH);
 
         // Build the grouped tree from all errorEntries.
-        historyRoot = new DefaultMutableTreeNode("Log of all requests");
-        historyTreeModel = new DefaultTreeModel(historyRoot);
+        historyTreeModel = new GroupedTreeModel("Log of all requests", pathNormalizer);
+        historyRoot = (DefaultMutableTreeNode) historyTreeModel.getRoot();
         historyTree = new JTree(historyTreeModel);
         historyTree.setRootVisible(true);
         historyTree.setCellRenderer(new DefaultTreeCellRenderer() {
@@ -326,8 +373,11 @@ public class UserInterface {
                 if (node.isLeaf() && node.getUserObject() instanceof ReplayedRequestEntry) {
                     ReplayedRequestEntry entry = (ReplayedRequestEntry) node.getUserObject();
                     c.setForeground(entry.highlighted ? Color.RED : Color.BLACK);
-                } else {
-                    c.setForeground(nodeHasHighlightedDescendant(node) ? Color.RED : Color.BLACK);
+                } else if (node instanceof GroupedTreeModel.GroupNode) {
+                    GroupedTreeModel.GroupNode group = (GroupedTreeModel.GroupNode) node;
+                    setText(node.getLevel() == 1 && !requestFilter.getHostScope().isEnabled(node.toString())
+                            ? group.getLabel() + " [replay disabled]" : group.getLabel());
+                    c.setForeground(group.hasHighlighted() ? Color.RED : Color.BLACK);
                 }
                 return c;
             }
@@ -354,9 +404,10 @@ public class UserInterface {
 
         historySendButton = new JButton("Send Request to Repeater");
         historySendButton.addActionListener(e -> {
-            ReplayedRequestEntry entry = getSelectedEntry(historyTree);
-            if (entry != null && entry.requestText != null) {
-                HttpRequest req = parseHttpRequest(entry.requestText);
+            ReplayedRequestEntry entry = getSelectedHistoryEntry();
+            String requestText = (entry != null) ? requestTextOf(entry) : null;
+            if (requestText != null) {
+                HttpRequest req = parseHttpRequest(requestText);
                 if (req != null) {
                     VerbReplayer.sendToRepeater(req);
                 } else {
@@ -371,7 +422,76 @@ public class UserInterface {
         historyRightPanel.add(historyDetailSplit, BorderLayout.CENTER);
         historyRightPanel.add(historySendButton, BorderLayout.SOUTH);
 
-        JSplitPane historySplitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, historyTreeScroll, historyRightPanel);
+        // Flat table view of the same log, filtered and sorted through index arrays.
+        historyTableModel = new HistoryTableModel(errorEntries);
+        historyTable = new JTable(historyTableModel);
+        historyTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        historyTable.setAutoCreateColumnsFromModel(false);
+        historyTable.setFillsViewportHeight(true);
+        historyTable.getColumnModel().getColumn(HistoryTableModel.COLUMN_ID).setPreferredWidth(60);
+        historyTable.getColumnModel().getColumn(HistoryTableModel.COLUMN_TIME).setPreferredWidth(140);
+        historyTable.getColumnModel().getColumn(HistoryTableModel.COLUMN_VERB).setPreferredWidth(70);
+        historyTable.getColumnModel().getColumn(HistoryTableModel.COLUMN_STATUS).setPreferredWidth(60);
+        historyTable.getColumnModel().getColumn(HistoryTableModel.COLUMN_HOST).setPreferredWidth(180);
+        historyTable.getColumnModel().getColumn(HistoryTableModel.COLUMN_PATH).setPreferredWidth(400);
+        historyTable.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = historyTable.convertColumnIndexToModel(historyTable.columnAtPoint(e.getPoint()));
+                if (column < 0) return;
+                int selected = selectedHistoryTableRow();
+                historyTableModel.sortBy(column);
+                updateHistoryTableHeaders();
+                reselectHistoryTableRow(selected, true);
+            }
+        });
+        historyTable.getSelectionModel().addListSelectionListener(e -> {
+            if (e.getValueIsAdjusting()) return;
+            int viewRow = historyTable.getSelectedRow();
+            if (viewRow >= 0) {
+                ReplayedRequestEntry entry = historyTableModel.getEntry(viewRow);
+                // Re-selecting the same row after a re-sort should not reload its bodies.
+                if (entry == historyTableShownEntry) return;
+                historyTableShownEntry = entry;
+                historyRequestTextArea.setText(requestTextOf(entry));
+                historyResponseTextArea.setText(responseOf(entry));
+            }
+        });
+        updateHistoryTableHeaders();
+
+        historyTableFilterField = new JTextField(25);
+        historyTableStatusFilter = new JComboBox<>(new String[]{"Any status", "No response", "1xx", "2xx", "3xx", "4xx", "5xx"});
+        Runnable applyTableFilter = () -> {
+            int selected = selectedHistoryTableRow();
+            int statusIndex = historyTableStatusFilter.getSelectedIndex();
+            historyTableModel.setFilter(historyTableFilterField.getText(),
+                    statusIndex == 0 ? HistoryTableModel.ANY_STATUS : statusIndex - 1);
+            reselectHistoryTableRow(selected, true);
+        };
+        historyTableFilterField.addActionListener(e -> applyTableFilter.run());
+        historyTableStatusFilter.addActionListener(e -> applyTableFilter.run());
+        JPanel historyTableFilterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        historyTableFilterPanel.add(new JLabel("Host/path contains:"));
+        historyTableFilterPanel.add(historyTableFilterField);
+        historyTableFilterPanel.add(historyTableStatusFilter);
+        JPanel historyTablePanel = new JPanel(new BorderLayout());
+        historyTablePanel.add(historyTableFilterPanel, BorderLayout.NORTH);
+        historyTablePanel.add(new JScrollPane(historyTable), BorderLayout.CENTER);
+
+        historyViewPanel = new JPanel(new CardLayout());
+        historyViewPanel.add(historyTreeScroll, HISTORY_TREE_CARD);
+        historyViewPanel.add(historyTablePanel, HISTORY_TABLE_CARD);
+        historyTableViewToggle.addItemListener(e -> {
+            boolean tableView = historyTableViewToggle.isSelected();
+            if (!tableView) {
+                // The tree is not kept up to date while hidden; bring it up to date now.
+                updateHistoryTree();
+            }
+            ((CardLayout) historyViewPanel.getLayout()).show(historyViewPanel,
+                    tableView ? HISTORY_TABLE_CARD : HISTORY_TREE_CARD);
+        });
+
+        JSplitPane historySplitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, historyViewPanel, historyRightPanel);
         historySplitPane.setResizeWeight(0.3);
         historyPanel.add(historySplitPane, BorderLayout.CENTER);
 
@@ -380,23 +500,353 @@ public class UserInterface {
             public void valueChanged(TreeSelectionEvent e) {
                 ReplayedRequestEntry entry = getSelectedEntry(historyTree);
                 if (entry != null) {
-                    historyRequestTextArea.setText(entry.requestText);
-                    historyResponseTextArea.setText(entry.response);
+                    // Bodies are loaded from the body store only when an entry is shown.
+                    historyRequestTextArea.setText(requestTextOf(entry));
+                    historyResponseTextArea.setText(responseOf(entry));
                 }
             }
         });
 
         // ============================================================
-        // Add the two tabs to the tabbed pane.
+        // Build the Search tab – queries over both lists via SearchIndex
+        // ============================================================
+        searchPanel = new JPanel(new BorderLayout());
+        JPanel searchBar = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        searchField = new JTextField(50);
+        searchField.setToolTipText("<html>All terms must match, e.g. <tt>verb:PUT status:2xx host:example.com path:admin success</tt><br>"
+                + "Fields: verb: status: (200 or 2xx) host: path: (first segment) in: (results or history).<br>"
+                + "Other words are searched in response bodies; word* matches a prefix.</html>");
+        JButton searchButton = new JButton("Search");
+        JButton searchExportButton = new JButton("Export CSV...");
+        searchStatusLabel = new JLabel(" ");
+        searchBar.add(new JLabel("Search:"));
+        searchBar.add(searchField);
+        searchBar.add(searchButton);
+        searchBar.add(searchExportButton);
+        searchBar.add(searchStatusLabel);
+        searchPanel.add(searchBar, BorderLayout.NORTH);
+
+        searchResultsModel = new SearchResultsTableModel(searchIndex);
+        searchResultsTable = new JTable(searchResultsModel);
+        searchResultsTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        searchResultsTable.setFillsViewportHeight(true);
+        searchResultsTable.getColumnModel().getColumn(5).setPreferredWidth(400);
+
+        JPanel searchRequestPanel = new JPanel(new BorderLayout());
+        searchRequestPanel.add(new JLabel("Request:"), BorderLayout.NORTH);
+        searchRequestTextArea = new JTextArea();
+        searchRequestTextArea.setEditable(false);
+        searchRequestTextArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        searchRequestPanel.add(new JScrollPane(searchRequestTextArea), BorderLayout.CENTER);
+        JPanel searchResponsePanel = new JPanel(new BorderLayout());
+        searchResponsePanel.add(new JLabel("Response:"), BorderLayout.NORTH);
+        searchResponseTextArea = new JTextArea();
+        searchResponseTextArea.setEditable(false);
+        searchResponseTextArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        searchResponsePanel.add(new JScrollPane(searchResponseTextArea), BorderLayout.CENTER);
+        JSplitPane searchDetailSplit = new JSplitPane(JSplitPane.VERTICAL_SPLIT, searchRequestPanel, searchResponsePanel);
+        searchDetailSplit.setResizeWeight(0.5);
+        JSplitPane searchSplitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, new JScrollPane(searchResultsTable), searchDetailSplit);
+        searchSplitPane.setResizeWeight(0.5);
+        searchPanel.add(searchSplitPane, BorderLayout.CENTER);
+
+        searchResultsTable.getSelectionModel().addListSelectionListener(e -> {
+            if (e.getValueIsAdjusting()) return;
+            int row = searchResultsTable.getSelectedRow();
+            ReplayedRequestEntry entry = row >= 0 ? searchResultsModel.getEntry(row) : null;
+            if (entry != null) {
+                searchRequestTextArea.setText(requestTextOf(entry));
+                searchResponseTextArea.setText(responseOf(entry));
+            }
+        });
+        searchField.addActionListener(e -> runSearch());
+        searchButton.addActionListener(e -> runSearch());
+        searchExportButton.addActionListener(e -> exportSearchResults());
+
+        // ============================================================
+        // Build TAB 3 – Replay engine settings ("Settings")
+        // ============================================================
+        settingsPanel = new JPanel();
+        settingsPanel.setLayout(new BoxLayout(settingsPanel, BoxLayout.Y_AXIS));
+        concurrencySpinner = new JSpinner(new SpinnerNumberModel(
+                ReplayEngine.DEFAULT_CONCURRENCY, 1, ReplayEngine.MAX_CONCURRENCY, 1));
+        concurrencySpinner.addChangeListener(e -> {
+            if (replayEngine != null) {
+                replayEngine.setConcurrency((Integer) concurrencySpinner.getValue());
+            }
+        });
+        addSettingsRow("Max concurrent replays:", concurrencySpinner);
+
+        // Priority scheduling: when the queue backs up, refuse probes of endpoints already covered.
+        shedLowPriorityCheckBox = new JCheckBox("Drop HEAD/OPTIONS/TRACE replays of covered endpoints when the queue is 3/4 full", true);
+        shedLowPriorityCheckBox.addItemListener(e -> {
+            if (replayEngine != null) {
+                replayEngine.getScheduler().setShedLowPriority(shedLowPriorityCheckBox.isSelected());
+            }
+        });
+        addSettingsRow("Load shedding:", shedLowPriorityCheckBox);
+
+        // Batching: send a request's variants together to save connection and TLS setup.
+        batchVariantsCheckBox = new JCheckBox("Send the variants of a request together (HTTP/2 multiplexing, HTTP/1.1 keep-alive otherwise)", false);
+        batchVariantsCheckBox.addItemListener(e -> {
+            if (replayEngine != null) {
+                replayEngine.setBatchVariants(batchVariantsCheckBox.isSelected());
+            }
+        });
+        addSettingsRow("Connections:", batchVariantsCheckBox);
+
+        // Deadlines and retries for each send.
+        responseTimeoutSpinner = new JSpinner(new SpinnerNumberModel(ReplayEngine.DEFAULT_RESPONSE_TIMEOUT_SECONDS, 0, 600, 5));
+        maxRetriesSpinner = new JSpinner(new SpinnerNumberModel(ReplayEngine.DEFAULT_MAX_RETRIES, 0, 10, 1));
+        ChangeListener sendPolicyListener = e -> applySendPolicySettings();
+        responseTimeoutSpinner.addChangeListener(sendPolicyListener);
+        maxRetriesSpinner.addChangeListener(sendPolicyListener);
+        addSettingsRow("Response timeout in seconds (0 = Burp default):", responseTimeoutSpinner);
+        addSettingsRow("Retries after network errors (jittered backoff):", maxRetriesSpinner);
+
+        // Verb matrix: one variant per line (methods, case variants, override headers/parameters).
+        verbMatrixTextArea = new JTextArea(VerbMatrix.DEFAULT_MATRIX, 8, 40);
+        verbMatrixTextArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        verbMatrixTextArea.setToolTipText("One variant per line: METHOD  or  METHOD Header-Name: VALUE  or  METHOD name=VALUE");
+        JButton applyVerbMatrixButton = new JButton("Apply");
+        applyVerbMatrixButton.addActionListener(e -> {
+            if (replayEngine == null) return;
+            try {
+                replayEngine.getVerbMatrix().setMatrix(verbMatrixTextArea.getText());
+            } catch (IllegalArgumentException ex) {
+                JOptionPane.showMessageDialog(mainPanel, ex.getMessage());
+                return;
+            }
+            replayEngine.getVerbMatrix().resetSuspensions();
+            updateVerbFilters();
+        });
+        addSettingsRow("Verb matrix:", new JScrollPane(verbMatrixTextArea), applyVerbMatrixButton);
+
+        // Per-host rate limiting (0 requests/sec disables the limiter).
+        rateLimitSpinner = new JSpinner(new SpinnerNumberModel(
+                HostRateLimiter.DEFAULT_REQUESTS_PER_SECOND, 0.0, 1000.0, 1.0));
+        burstSpinner = new JSpinner(new SpinnerNumberModel(HostRateLimiter.DEFAULT_BURST, 1, 1000, 1));
+        hostInFlightSpinner = new JSpinner(new SpinnerNumberModel(HostRateLimiter.DEFAULT_MAX_IN_FLIGHT, 1, 64, 1));
+        ChangeListener rateLimitListener = e -> applyRateLimitSettings();
+        rateLimitSpinner.addChangeListener(rateLimitListener);
+        burstSpinner.addChangeListener(rateLimitListener);
+        hostInFlightSpinner.addChangeListener(rateLimitListener);
+        addSettingsRow("Requests/sec per host (0 = unlimited):", rateLimitSpinner);
+        addSettingsRow("Burst size per host:", burstSpinner);
+        addSettingsRow("Max in-flight replays per host:", hostInFlightSpinner);
+
+        // Endpoint deduplication: skip host + path + verb combinations already replayed.
+        dedupEnabledCheckBox = new JCheckBox("Skip endpoints already replayed with the same verb", true);
+        dedupTtlSpinner = new JSpinner(new SpinnerNumberModel(ReplayDedupCache.DEFAULT_TTL_MINUTES, 0, 10_080, 1));
+        dedupSizeSpinner = new JSpinner(new SpinnerNumberModel(ReplayDedupCache.DEFAULT_MAX_ENTRIES, 100, 10_000_000, 1000));
+        dedupResetButton = new JButton("Reset");
+        ChangeListener dedupListener = e -> applyDedupSettings();
+        dedupEnabledCheckBox.addItemListener(e -> applyDedupSettings());
+        dedupTtlSpinner.addChangeListener(dedupListener);
+        dedupSizeSpinner.addChangeListener(dedupListener);
+        dedupResetButton.addActionListener(e -> {
+            if (replayEngine != null) {
+                replayEngine.getDedupCache().reset();
+                updateQueueStatus();
+            }
+        });
+        addSettingsRow("Deduplication:", dedupEnabledCheckBox);
+        addSettingsRow("Replay again after N minutes (0 = never):", dedupTtlSpinner);
+        addSettingsRow("Remembered endpoints (LRU limit):", dedupSizeSpinner, dedupResetButton);
+
+        // Path templates: fold IDs so one endpoint shape gets one replay slot and one tree group.
+        foldIdsCheckBox = new JCheckBox("Fold numeric, UUID, hex and base64 path segments into templates", true);
+        foldIdsCheckBox.addItemListener(e -> {
+            pathNormalizer.setFoldIds(foldIdsCheckBox.isSelected());
+            updateFriendlyTree();
+            updateHistoryTree();
+        });
+        pathRulesTextArea = new JTextArea(4, 40);
+        pathRulesTextArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        pathRulesTextArea.setToolTipText("One rule per line: regex  or  regex => replacement (e.g. /v\\d+/ => /{version}/)");
+        JButton applyPathRulesButton = new JButton("Apply");
+        applyPathRulesButton.addActionListener(e -> {
+            try {
+                pathNormalizer.setRules(pathRulesTextArea.getText());
+            } catch (java.util.regex.PatternSyntaxException ex) {
+                JOptionPane.showMessageDialog(mainPanel, "Invalid path rule: " + ex.getMessage());
+                return;
+            }
+            updateFriendlyTree();
+            updateHistoryTree();
+        });
+        addSettingsRow("Path templates:", foldIdsCheckBox);
+        addSettingsRow("Custom path rules:", new JScrollPane(pathRulesTextArea), applyPathRulesButton);
+
+        // Baseline comparison: only variants whose response differs from the original go to Results.
+        baselineCheckBox = new JCheckBox("Only list variants whose response differs from the original response", true);
+        simhashDistanceSpinner = new JSpinner(new SpinnerNumberModel(ResponseComparator.DEFAULT_MAX_SIMHASH_DISTANCE, 0, 64, 1));
+        lengthDistanceSpinner = new JSpinner(new SpinnerNumberModel(ResponseComparator.DEFAULT_MAX_LENGTH_DISTANCE, 0, 40, 1));
+        baselineCheckBox.addItemListener(e -> applyBaselineSettings());
+        simhashDistanceSpinner.addChangeListener(e -> applyBaselineSettings());
+        lengthDistanceSpinner.addChangeListener(e -> applyBaselineSettings());
+        addSettingsRow("Baseline comparison:", baselineCheckBox);
+        addSettingsRow("Same page if body simhash differs in at most N of 64 bits:", simhashDistanceSpinner);
+        addSettingsRow("... and body length is within N quarter-octave buckets:", lengthDistanceSpinner);
+
+        // Request filter: which proxied requests are replayed at all. Applied without a reload.
+        filterExtensionsField = new JTextField(RequestFilter.DEFAULT_EXTENSIONS, 50);
+        filterIncludeHostsField = new JTextField(50);
+        filterExcludeHostsField = new JTextField(50);
+        filterMimeTypesField = new JTextField(RequestFilter.DEFAULT_MIME_TYPES, 50);
+        filterPathRegexArea = new JTextArea(3, 50);
+        filterPathRegexArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        filterPathRegexArea.setToolTipText("One regex per line; matching paths are not replayed. Lines starting with # are ignored.");
+        filterInScopeCheckBox = new JCheckBox("Only replay requests in Burp's target scope", RequestFilter.DEFAULT_IN_SCOPE_ONLY);
+        filterIncludeHostsField.setToolTipText("Only replay these hosts (empty = all). Use *.example.com for subdomains.");
+        filterExcludeHostsField.setToolTipText("Never replay these hosts. Use *.example.com for subdomains.");
+        JButton applyFilterButton = new JButton("Apply");
+        applyFilterButton.addActionListener(e -> applyRequestFilter());
+        filterStatsLabel = new JLabel(" ");
+        addSettingsRow("Skip file extensions:", filterExtensionsField);
+        addSettingsRow("Only hosts:", filterIncludeHostsField);
+        addSettingsRow("Exclude hosts:", filterExcludeHostsField);
+        addSettingsRow("Skip response MIME types:", filterMimeTypesField);
+        addSettingsRow("Skip paths matching:", new JScrollPane(filterPathRegexArea));
+        addSettingsRow("Scope:", filterInScopeCheckBox, applyFilterButton);
+        addSettingsRow("Requests skipped:", filterStatsLabel);
+
+        // Per-host replay toggles for every domain in the trees. Unticking a host also drops its queued replays.
+        replayHostsModel = new javax.swing.table.DefaultTableModel(new Object[]{"Replay", "Host"}, 0) {
+            @Override
+            public Class<?> getColumnClass(int column) {
+                return column == 0 ? Boolean.class : String.class;
+            }
+
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return column == 0;
+            }
+        };
+        replayHostsModel.addTableModelListener(e -> {
+            if (e.getType() != javax.swing.event.TableModelEvent.UPDATE || e.getColumn() != 0) return;
+            for (int row = e.getFirstRow(); row <= e.getLastRow() && row < replayHostsModel.getRowCount(); row++) {
+                setHostReplayEnabled((String) replayHostsModel.getValueAt(row, 1), (Boolean) replayHostsModel.getValueAt(row, 0));
+            }
+        });
+        JTable replayHostsTable = new JTable(replayHostsModel);
+        replayHostsTable.getColumnModel().getColumn(0).setMaxWidth(60);
+        JScrollPane replayHostsScroll = new JScrollPane(replayHostsTable);
+        replayHostsScroll.setPreferredSize(new Dimension(450, 150));
+        JButton refreshHostsButton = new JButton("Refresh");
+        refreshHostsButton.addActionListener(e -> refreshReplayHosts());
+        addSettingsRow("Replay per host:", replayHostsScroll, refreshHostsButton);
+
+        bodyStoreStatsLabel = new JLabel(bodyStore != null ? bodyStore.getStatsSummary() : "unavailable (bodies kept in memory)");
+        addSettingsRow("Body store:", bodyStoreStatsLabel);
+
+        // ============================================================
+        // Build TAB 4 – Replay campaigns over Proxy history / Site map ("Campaign")
+        // ============================================================
+        campaignPanel = new JPanel(new BorderLayout());
+        JPanel campaignControls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        campaignSourceCombo = new JComboBox<>(ReplayCampaign.Source.values());
+        campaignStartButton = new JButton("Start");
+        campaignPauseButton = new JButton("Pause");
+        campaignStopButton = new JButton("Stop");
+        campaignControls.add(new JLabel("Replay selected verbs against:"));
+        campaignControls.add(campaignSourceCombo);
+        campaignControls.add(campaignStartButton);
+        campaignControls.add(campaignPauseButton);
+        campaignControls.add(campaignStopButton);
+        JPanel campaignProgressPanel = new JPanel(new BorderLayout(0, 4));
+        campaignProgressPanel.setBorder(BorderFactory.createEmptyBorder(4, 8, 4, 8));
+        campaignProgressBar = new JProgressBar();
+        campaignProgressBar.setStringPainted(true);
+        campaignStatusLabel = new JLabel("Idle. Requests go through the same filters, dedup and rate limits as live traffic.");
+        campaignProgressPanel.add(campaignProgressBar, BorderLayout.NORTH);
+        campaignProgressPanel.add(campaignStatusLabel, BorderLayout.CENTER);
+        campaignPanel.add(campaignControls, BorderLayout.NORTH);
+        campaignPanel.add(campaignProgressPanel, BorderLayout.CENTER);
+        campaignStartButton.addActionListener(e -> startCampaign());
+        campaignPauseButton.addActionListener(e -> {
+            if (campaign == null) return;
+            if (campaign.getState() == ReplayCampaign.State.PAUSED) {
+                campaign.resume();
+            } else {
+                campaign.pause();
+            }
+            updateCampaignStatus();
+        });
+        campaignStopButton.addActionListener(e -> {
+            if (campaign != null) campaign.stop();
+            updateCampaignStatus();
+        });
+
+        // ============================================================
+        // Build TAB 5 – Live replay metrics ("Metrics")
+        // ============================================================
+        metricsPanel = new JPanel(new BorderLayout());
+        JPanel metricsControls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        metricsGroupCombo = new JComboBox<>(new String[]{"By host", "By verb"});
+        JButton metricsResetButton = new JButton("Reset");
+        JButton metricsExportButton = new JButton("Export snapshot...");
+        metricsControls.add(new JLabel("Show:"));
+        metricsControls.add(metricsGroupCombo);
+        metricsControls.add(metricsResetButton);
+        metricsControls.add(metricsExportButton);
+        JPanel metricsSummaryPanel = new JPanel(new GridLayout(2, 1));
+        metricsSummaryPanel.setBorder(BorderFactory.createEmptyBorder(4, 8, 4, 8));
+        metricsSummaryLabel = new JLabel(" ");
+        metricsProxyLabel = new JLabel(" ");
+        metricsSummaryPanel.add(metricsSummaryLabel);
+        metricsSummaryPanel.add(metricsProxyLabel);
+        JPanel metricsTop = new JPanel(new BorderLayout());
+        metricsTop.add(metricsControls, BorderLayout.NORTH);
+        metricsTop.add(metricsSummaryPanel, BorderLayout.CENTER);
+        metricsTableModel = new MetricsTableModel();
+        JTable metricsTable = new JTable(metricsTableModel);
+        metricsTable.setAutoCreateRowSorter(true);
+        metricsPanel.add(metricsTop, BorderLayout.NORTH);
+        metricsPanel.add(new JScrollPane(metricsTable), BorderLayout.CENTER);
+        metricsGroupCombo.addActionListener(e -> updateMetrics());
+        metricsResetButton.addActionListener(e -> {
+            if (replayEngine == null) return;
+            replayEngine.getMetrics().reset();
+            updateMetrics();
+        });
+        metricsExportButton.addActionListener(e -> exportMetrics());
+
+        queueStatusLabel = new JLabel();
+        queueStatusLabel.setBorder(BorderFactory.createEmptyBorder(2, 6, 2, 6));
+
+        // ============================================================
+        // Add the tabs to the tabbed pane.
         // "Results" (friendly view) is the first tab; "History" (grouped log) is the second.
         // ============================================================
         tabbedPane.addTab("Results", resultsPanelFriendly);
         tabbedPane.addTab("History", historyPanel);
+        tabbedPane.addTab("Search", searchPanel);
+        tabbedPane.addTab("Settings", new JScrollPane(settingsPanel));
+        tabbedPane.addTab("Campaign", campaignPanel);
+        tabbedPane.addTab("Metrics", metricsPanel);
+        tabbedPane.addChangeListener(e -> {
+            if (tabbedPane.getSelectedIndex() == tabbedPane.indexOfTab("Settings")) refreshReplayHosts();
+            if (tabbedPane.getSelectedIndex() == tabbedPane.indexOfTab("Metrics")) updateMetrics();
+        });
         mainPanel.add(tabbedPane, BorderLayout.CENTER);
+        mainPanel.add(queueStatusLabel, BorderLayout.SOUTH);
 
-        // Finally, update the trees.
-        updateFriendlyTree();
-        updateHistoryTree();
+        // Finally, start loading the saved history. Each tick spends up to half its interval
+        // adding loaded chunks, then takes in live entries.
+        historyLoader.start();
+        ingestTimer = new javax.swing.Timer(INGEST_INTERVAL_MS, e -> {
+            long deadline = System.nanoTime() + INGEST_INTERVAL_MS * 500_000L;
+            while (applyLoadedChunk() && System.nanoTime() < deadline) {
+                // next chunk
+            }
+            drainIngestQueue();
+            if (clearPending && drainAllIngested()) {
+                clearPending = false;
+                clearResults();
+            }
+        });
+        ingestTimer.start();
     }
 
     /**
@@ -406,6 +856,314 @@ public class UserInterface {
         return mainPanel;
     }
 
+    /**
+     * Connects the replay engine so the Settings tab can configure it and the status bar
+     * can show its queue depth.
+     */
+    public void setReplayEngine(ReplayEngine engine) {
+        this.replayEngine = engine;
+        engine.setConcurrency((Integer) concurrencySpinner.getValue());
+        engine.getScheduler().setShedLowPriority(shedLowPriorityCheckBox.isSelected());
+        engine.setBatchVariants(batchVariantsCheckBox.isSelected());
+        applySendPolicySettings();
+        applyRateLimitSettings();
+        applyDedupSettings();
+        applyBaselineSettings();
+        updateVerbFilters();
+        campaign = new ReplayCampaign(api, engine, new File(getProjectDirectory(), CAMPAIGN_FILE));
+        javax.swing.Timer statusTimer = new javax.swing.Timer(500, e -> {
+            updateQueueStatus();
+            updateCampaignStatus();
+            engine.getMetrics().sample();
+            if (tabbedPane.getSelectedComponent() == metricsPanel) updateMetrics();
+        });
+        statusTimer.start();
+        updateQueueStatus();
+        updateCampaignStatus();
+    }
+
+    /**
+     * Refreshes the queue-depth indicator in the status bar.
+     */
+    private void updateQueueStatus() {
+        if (replayEngine == null) return;
+        String text = String.format("Replay queue: %d waiting, %d in flight",
+                replayEngine.getQueueDepth(), replayEngine.getActiveCount());
+        long dropped = replayEngine.getDroppedCount();
+        if (dropped > 0) {
+            text += String.format(", %d dropped", dropped);
+            long shed = replayEngine.getScheduler().getShedCount();
+            if (shed > 0) {
+                text += String.format(" (%d low-priority shed)", shed);
+            }
+        }
+        int throttled = replayEngine.getRateLimiter().getThrottledHostCount();
+        if (throttled > 0) {
+            text += String.format(" | %d host(s) backing off after 429/503", throttled);
+        }
+        ReplayDedupCache dedupCache = replayEngine.getDedupCache();
+        text += String.format(" | Dedup: %d endpoints remembered, %d replays skipped",
+                dedupCache.size(), dedupCache.getSkippedCount());
+        long timeouts = replayEngine.getOutcomeCount(ReplayEngine.Outcome.TIMEOUT);
+        long networkErrors = replayEngine.getOutcomeCount(ReplayEngine.Outcome.NETWORK_ERROR);
+        long noResponse = replayEngine.getOutcomeCount(ReplayEngine.Outcome.NO_RESPONSE);
+        long retries = replayEngine.getRetryCount();
+        if (timeouts + networkErrors + noResponse + retries > 0) {
+            text += String.format(" | Failed: %d timed out, %d network errors, %d no response (%d retries)",
+                    timeouts, networkErrors, noResponse, retries);
+        }
+        long http2Batches = replayEngine.getHttp2BatchCount();
+        if (http2Batches > 0) {
+            text += String.format(" | %d HTTP/2 batches, %d host(s) on HTTP/1.1 keep-alive",
+                    http2Batches, replayEngine.getHttp1FallbackHostCount());
+        }
+        VerbMatrix verbMatrix = replayEngine.getVerbMatrix();
+        int suspended = verbMatrix.getSuspendedClassCount();
+        if (suspended > 0) {
+            text += String.format(" | %d variant class(es) suspended for rejecting hosts, %d replays skipped",
+                    suspended, verbMatrix.getSuspendedSkipCount());
+        }
+        long sameAsBaseline = replayEngine.getResponseComparator().getSameAsBaselineCount();
+        if (sameAsBaseline > 0) {
+            text += String.format(" | %d 2xx/3xx variant(s) same as original", sameAsBaseline);
+        }
+        int pending = ingestPending.get();
+        if (pending > 0) {
+            text += String.format(" | %d result(s) waiting to be shown", pending);
+        }
+        if (!historyLoader.isDone()) {
+            text += String.format(" | Loading saved history: %d%% (%,d entries)",
+                    Math.round(historyLoader.getProgress() * 100), historyLoader.getLoadedCount());
+        }
+        queueStatusLabel.setText(text);
+        if (bodyStore != null) {
+            bodyStoreStatsLabel.setText(bodyStore.getStatsSummary());
+        }
+        filterStatsLabel.setText(String.format("%d by extension, %d by host, %d by MIME type, %d by path, %d host disabled, %d out of scope; %d replays cancelled",
+                requestFilter.getSkippedCount(RequestFilter.Verdict.EXTENSION),
+                requestFilter.getSkippedCount(RequestFilter.Verdict.HOST),
+                requestFilter.getSkippedCount(RequestFilter.Verdict.MIME_TYPE),
+                requestFilter.getSkippedCount(RequestFilter.Verdict.PATH),
+                requestFilter.getSkippedCount(RequestFilter.Verdict.DISABLED),
+                requestFilter.getSkippedCount(RequestFilter.Verdict.SCOPE),
+                replayEngine.getCancelledCount()));
+    }
+
+    /**
+     * Starts a campaign over the selected source, offering to resume from its checkpoint.
+     */
+    private void startCampaign() {
+        if (campaign == null) return;
+        ReplayCampaign.Source source = (ReplayCampaign.Source) campaignSourceCombo.getSelectedItem();
+        int startIndex = 0;
+        int checkpoint = campaign.checkpointFor(source);
+        if (checkpoint > 0) {
+            int choice = JOptionPane.showConfirmDialog(mainPanel,
+                    "A previous campaign over the " + source + " stopped at item " + checkpoint + ". Resume from there?",
+                    "Resume campaign", JOptionPane.YES_NO_CANCEL_OPTION);
+            if (choice == JOptionPane.CANCEL_OPTION || choice == JOptionPane.CLOSED_OPTION) return;
+            if (choice == JOptionPane.YES_OPTION) startIndex = checkpoint;
+        }
+        campaign.start(source, startIndex);
+        updateCampaignStatus();
+    }
+
+    /**
+     * Refreshes the campaign progress bar, rate and ETA.
+     */
+    private void updateCampaignStatus() {
+        if (campaign == null) return;
+        ReplayCampaign.State state = campaign.getState();
+        boolean active = state == ReplayCampaign.State.RUNNING || state == ReplayCampaign.State.PAUSED;
+        campaignStartButton.setEnabled(!active);
+        campaignSourceCombo.setEnabled(!active);
+        campaignPauseButton.setEnabled(active);
+        campaignPauseButton.setText(state == ReplayCampaign.State.PAUSED ? "Resume" : "Pause");
+        campaignStopButton.setEnabled(active);
+        if (state == ReplayCampaign.State.IDLE) return;
+
+        int total = campaign.getTotal();
+        int position = Math.min(campaign.getPosition(), total);
+        campaignProgressBar.setMaximum(Math.max(1, total));
+        campaignProgressBar.setValue(position);
+        campaignProgressBar.setString(total == 0 ? "Loading " + campaign.getSource() + "…"
+                : String.format("%,d / %,d items", position, total));
+        String text = String.format("%s %s: %,d variants queued, %.0f items/s",
+                campaign.getSource(), state.name().toLowerCase(), campaign.getVariantsQueued(), campaign.getItemsPerSecond());
+        long eta = campaign.getEtaSeconds();
+        if (eta >= 0) {
+            text += String.format(", ETA %d:%02d:%02d", eta / 3600, (eta / 60) % 60, eta % 60);
+        }
+        campaignStatusLabel.setText(text);
+    }
+
+    /**
+     * Refreshes the Metrics tab from the replay engine's counters.
+     */
+    private void updateMetrics() {
+        if (replayEngine == null) return;
+        ReplayMetrics metrics = replayEngine.getMetrics();
+        ReplayMetrics.Summary total = metrics.getTotal();
+        metricsSummaryLabel.setText(String.format(
+                "%,d sends (%.1f/s), latency p50 %s / p99 %s / max %s, %,d timeouts, %,d errors, %,d KB received"
+                        + " | Queue: %,d waiting (peak %,d), %d in flight",
+                total.sends, total.perSecond, formatMicros(total.latency.valueAtPercentile(50)),
+                formatMicros(total.latency.valueAtPercentile(99)), formatMicros(total.latency.getMaxMicros()),
+                total.timeouts, total.errors, total.bytes / 1024,
+                metrics.getQueueDepth(), metrics.getPeakQueueDepth(), metrics.getInFlight()));
+        LatencyHistogram.Snapshot proxy = metrics.getProxyOverhead();
+        metricsProxyLabel.setText(String.format(
+                "Added to proxied responses: p50 %s / p99 %s / max %s over %,d responses",
+                formatMicros(proxy.valueAtPercentile(50)), formatMicros(proxy.valueAtPercentile(99)),
+                formatMicros(proxy.getMaxMicros()), proxy.getCount()));
+        metricsTableModel.setRows(metricsGroupCombo.getSelectedIndex() == 0 ? metrics.getByHost() : metrics.getByVerb());
+    }
+
+    private static String formatMicros(long micros) {
+        return micros < 1000 ? micros + " µs" : String.format("%.1f ms", micros / 1000.0);
+    }
+
+    /**
+     * Writes the metrics, including the raw histogram buckets, to a JSON file chosen by the user.
+     */
+    private void exportMetrics() {
+        if (replayEngine == null) return;
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("verbreplayer-metrics.json"));
+        if (chooser.showSaveDialog(mainPanel) != JFileChooser.APPROVE_OPTION) return;
+        File file = chooser.getSelectedFile();
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            replayEngine.getMetrics().writeJson(out);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(mainPanel, "Error exporting metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Pushes the rate-limit spinners into the replay engine's per-host limiter.
+     */
+    private void applyRateLimitSettings() {
+        if (replayEngine == null) return;
+        HostRateLimiter limiter = replayEngine.getRateLimiter();
+        limiter.setRequestsPerSecond(((Number) rateLimitSpinner.getValue()).doubleValue());
+        limiter.setBurst((Integer) burstSpinner.getValue());
+        limiter.setMaxInFlight((Integer) hostInFlightSpinner.getValue());
+    }
+
+    /**
+     * Pushes the timeout and retry settings into the replay engine.
+     */
+    private void applySendPolicySettings() {
+        if (replayEngine == null) return;
+        replayEngine.setResponseTimeoutSeconds((Integer) responseTimeoutSpinner.getValue());
+        replayEngine.setMaxRetries((Integer) maxRetriesSpinner.getValue());
+    }
+
+    /**
+     * Pushes the deduplication settings into the replay engine's cache.
+     */
+    private void applyDedupSettings() {
+        if (replayEngine == null) return;
+        ReplayDedupCache dedupCache = replayEngine.getDedupCache();
+        dedupCache.setEnabled(dedupEnabledCheckBox.isSelected());
+        dedupCache.setTtlMinutes((Integer) dedupTtlSpinner.getValue());
+        dedupCache.setMaxEntries((Integer) dedupSizeSpinner.getValue());
+    }
+
+    /**
+     * Flips replay for the domain of the node selected in the tree.
+     */
+    private void toggleHostReplay(JTree tree) {
+        TreePath path = tree.getSelectionPath();
+        if (path == null || path.getPathCount() < 2) return;
+        String host = path.getPathComponent(1).toString();
+        setHostReplayEnabled(host, !requestFilter.getHostScope().isEnabled(host));
+    }
+
+    /**
+     * Enables or disables replay for the host and refreshes everything that shows it.
+     */
+    private void setHostReplayEnabled(String host, boolean enabled) {
+        HostScope hostScope = requestFilter.getHostScope();
+        if (hostScope.isEnabled(host) == enabled) return;
+        hostScope.setEnabled(host, enabled);
+        for (int row = 0; row < replayHostsModel.getRowCount(); row++) {
+            if (host.equals(replayHostsModel.getValueAt(row, 1)) && !Boolean.valueOf(enabled).equals(replayHostsModel.getValueAt(row, 0))) {
+                replayHostsModel.setValueAt(enabled, row, 0);
+            }
+        }
+        resultsFriendlyTree.repaint();
+        historyTree.repaint();
+    }
+
+    /**
+     * Lists every domain in the Results and History trees in the per-host replay table.
+     */
+    private void refreshReplayHosts() {
+        Set<String> hosts = new TreeSet<>(resultsFriendlyTreeModel.getDomains());
+        hosts.addAll(historyTreeModel.getDomains());
+        hosts.addAll(requestFilter.getHostScope().getDisabledHosts());
+        replayHostsModel.setRowCount(0);
+        for (String host : hosts) {
+            replayHostsModel.addRow(new Object[]{requestFilter.getHostScope().isEnabled(host), host});
+        }
+    }
+
+    /**
+     * Compiles the request filter fields and swaps the new rules in. On an error the old rules stay.
+     */
+    private void applyRequestFilter() {
+        try {
+            requestFilter.setRules(filterExtensionsField.getText(), filterIncludeHostsField.getText(),
+                    filterExcludeHostsField.getText(), filterMimeTypesField.getText(),
+                    filterPathRegexArea.getText(), filterInScopeCheckBox.isSelected());
+        } catch (IllegalArgumentException e) {
+            // PatternSyntaxException is an IllegalArgumentException too.
+            JOptionPane.showMessageDialog(mainPanel, "Invalid request filter: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the filter deciding which proxied requests are replayed.
+     */
+    @Override
+    public RequestFilter getRequestFilter() {
+        return requestFilter;
+    }
+
+    /**
+     * Pushes the baseline comparison settings into the replay engine's comparator.
+     */
+    private void applyBaselineSettings() {
+        if (replayEngine == null) return;
+        ResponseComparator comparator = replayEngine.getResponseComparator();
+        comparator.setEnabled(baselineCheckBox.isSelected());
+        comparator.setMaxSimhashDistance((Integer) simhashDistanceSpinner.getValue());
+        comparator.setMaxLengthDistance((Integer) lengthDistanceSpinner.getValue());
+    }
+
+    /**
+     * Adds a labelled, left-aligned row to the Settings tab.
+     */
+    private void addSettingsRow(String label, JComponent... components) {
+        JPanel row = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        row.add(new JLabel(label));
+        for (JComponent component : components) {
+            row.add(component);
+        }
+        row.setAlignmentX(Component.LEFT_ALIGNMENT);
+        row.setMaximumSize(new Dimension(Integer.MAX_VALUE, row.getPreferredSize().height));
+        settingsPanel.add(row);
+    }
+
+    /**
+     * Returns the normalizer used to turn request paths into endpoint templates.
+     */
+    @Override
+    public PathNormalizer getPathNormalizer() {
+        return pathNormalizer;
+    }
+
     /**
      * Helper: Returns the selected ReplayedRequestEntry from the given tree.
      */
@@ -421,36 +1179,182 @@ public class UserInterface {
     }
 
     /**
-     * Called by VerbReplayer for every replayed request.
-     * If the status code is 200–399 (excluding 204) the entry is added to successEntries;
-     * otherwise to errorEntries.
-     * Then updates the appropriate tree and saves data.
+     * Called by the replay engine's worker threads for every replayed request.
+     * The bodies are written to the body store on the calling thread; the entry is then queued
+     * and added to the lists, trees and journal by {@link #drainIngestQueue()} on the event thread.
+     *
+     * @param success true if the entry goes to successEntries (Results), false for errorEntries;
+     *                see {@link ResponseComparator#isInteresting}
      */
+    @Override
     public void logTraffic(String verb, String url, int statusCode,
-                           HttpRequest httpRequest, String response) {
+                           HttpRequest httpRequest, String response, boolean success) {
         LocalDateTime now = LocalDateTime.now();
         String timestamp = now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
         String requestText = httpRequest.toString();
         ReplayedRequestEntry entry = new ReplayedRequestEntry(verb, url, statusCode, requestText, response, timestamp);
+        entry.scheme = schemeOf(httpRequest);
+        moveToBodyStore(entry);
 
-        if (statusCode >= 200 && statusCode < 400 && statusCode != 204) {
-            successEntries.add(entry);
-            updateFriendlyTree();
-        } else {
-            errorEntries.add(entry);
-            updateHistoryTree();
+        ingestQueue.offer(new IngestItem(entry, success));
+        ingestPending.incrementAndGet();
+    }
+
+    /** Returns the scheme the request was sent with, or null if it has no HTTP service. */
+    static String schemeOf(HttpRequest httpRequest) {
+        if (httpRequest.httpService() == null) return null;
+        return httpRequest.httpService().secure() ? "https" : "http";
+    }
+
+    /**
+     * Takes in every queued entry, batch by batch. Returns false, leaving the rest queued, if
+     * the saved history is still too early in loading for new ids to be handed out.
+     * Must be called on the event thread.
+     */
+    private boolean drainAllIngested() {
+        while (!ingestQueue.isEmpty()) {
+            if (!historyLoader.areIdsKnown()) return false;
+            drainIngestQueue();
         }
-        saveData();
+        return true;
+    }
+
+    /** Clears the non-highlighted Results and journals the clear. Must be called on the event thread. */
+    private void clearResults() {
+        clearNonHighlightedEntries();
+        journal.appendClearNonHighlighted();
+        if (!historyLoader.isDone()) clearedDuringLoad = true;
+        updateFriendlyTree();
+    }
+
+    /**
+     * Moves queued entries into the master lists and the trees, at most
+     * {@value #INGEST_BATCH_LIMIT} per call, with one tree event per changed parent node.
+     * Ids are assigned and journal records appended here, in the same order the UI sees the
+     * entries, so a later clear record covers exactly the entries that were on screen.
+     * Must be called on the event thread. Nothing is taken while the saved history is still too
+     * early in loading for new ids to be handed out.
+     */
+    private void drainIngestQueue() {
+        if (!historyLoader.areIdsKnown()) return;
+        List<ReplayedRequestEntry> newSuccess = new ArrayList<>();
+        List<ReplayedRequestEntry> newErrors = new ArrayList<>();
+        IngestItem item;
+        while (newSuccess.size() + newErrors.size() < INGEST_BATCH_LIMIT && (item = ingestQueue.poll()) != null) {
+            ingestPending.decrementAndGet();
+            item.entry.id = nextEntryId.getAndIncrement();
+            if (item.success) {
+                successEntries.add(item.entry);
+                newSuccess.add(item.entry);
+            } else {
+                errorEntries.add(item.entry);
+                newErrors.add(item.entry);
+            }
+            journal.appendAdd(item.entry, item.success);
+        }
+        searchIndex.addAll(newSuccess, true);
+        searchIndex.addAll(newErrors, false);
+        // Only the new leaves (and any new group nodes) are inserted; no rebuild.
+        if (!newSuccess.isEmpty()) resultsFriendlyTreeModel.addEntries(newSuccess);
+        if (!newErrors.isEmpty()) {
+            // A hidden tree is skipped and rebuilt when it is shown again.
+            if (!historyTableViewToggle.isSelected()) historyTreeModel.addEntries(newErrors);
+            int selected = selectedHistoryTableRow();
+            historyTableModel.addEntries(newErrors);
+            reselectHistoryTableRow(selected, false);
+        }
+    }
+
+    /**
+     * Adds the next chunk of saved history, if the loader has one ready. The chunk is older than
+     * everything shown so far, so it goes in front of the master lists and tree leaves, while the
+     * table sorts it in by id. Must be called on the event thread.
+     *
+     * @return false if no chunk was ready
+     */
+    private boolean applyLoadedChunk() {
+        HistoryLoader.Chunk chunk = historyLoader.poll();
+        if (chunk == null) return false;
+        List<ReplayedRequestEntry> loadedSuccess = chunk.successEntries;
+        if (clearedDuringLoad) {
+            // These were on disk before the clear, so it removes them as well.
+            loadedSuccess = new ArrayList<>(loadedSuccess);
+            loadedSuccess.removeIf(entry -> !entry.highlighted);
+        }
+        successEntries.addAll(0, loadedSuccess);
+        errorEntries.addAll(0, chunk.errorEntries);
+        searchIndex.addAll(loadedSuccess, true);
+        searchIndex.addAll(chunk.errorEntries, false);
+        if (!loadedSuccess.isEmpty()) {
+            boolean wasEmpty = resultsFriendlyRoot.getChildCount() == 0;
+            resultsFriendlyTreeModel.addOlderEntries(loadedSuccess);
+            if (wasEmpty) resultsFriendlyTree.expandRow(0);
+        }
+        if (!chunk.errorEntries.isEmpty()) {
+            if (!historyTableViewToggle.isSelected()) {
+                boolean wasEmpty = historyRoot.getChildCount() == 0;
+                historyTreeModel.addOlderEntries(chunk.errorEntries);
+                if (wasEmpty) historyTree.expandRow(0);
+            }
+            int selected = selectedHistoryTableRow();
+            historyTableModel.addEntries(chunk.errorEntries);
+            reselectHistoryTableRow(selected, false);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the selected History entry from whichever view (tree or table) is showing.
+     */
+    private ReplayedRequestEntry getSelectedHistoryEntry() {
+        if (historyTableViewToggle.isSelected()) {
+            int viewRow = historyTable.getSelectedRow();
+            return viewRow >= 0 ? historyTableModel.getEntry(viewRow) : null;
+        }
+        return getSelectedEntry(historyTree);
+    }
+
+    /** Store row of the History table's selection, or -1. */
+    private int selectedHistoryTableRow() {
+        int viewRow = historyTable.getSelectedRow();
+        return viewRow >= 0 ? historyTableModel.storeRowOf(viewRow) : -1;
+    }
+
+    /**
+     * Selects the store row again after the view was re-sorted, refiltered or merged with new
+     * rows, optionally scrolling it into view.
+     */
+    private void reselectHistoryTableRow(int storeRow, boolean scroll) {
+        if (storeRow < 0) return;
+        int viewRow = historyTableModel.viewRowOf(storeRow);
+        if (viewRow < 0) {
+            historyTable.clearSelection();
+        } else if (viewRow != historyTable.getSelectedRow()) {
+            historyTable.setRowSelectionInterval(viewRow, viewRow);
+            if (scroll) historyTable.scrollRectToVisible(historyTable.getCellRect(viewRow, 0, true));
+        }
+    }
+
+    /** Marks the History table's sort column and direction in its header. */
+    private void updateHistoryTableHeaders() {
+        for (int i = 0; i < historyTableModel.getColumnCount(); i++) {
+            String name = historyTableModel.getColumnName(i);
+            if (i == historyTableModel.getSortColumn()) {
+                name += historyTableModel.isAscending() ? " \u25B2" : " \u25BC";
+            }
+            historyTable.getColumnModel().getColumn(i).setHeaderValue(name);
+        }
+        historyTable.getTableHeader().repaint();
     }
 
     /**
      * Rebuilds the friendly (Results) tree from successEntries while preserving expansion/selection.
+     * Only needed when entries are removed or the grouping changes; new entries are inserted incrementally.
      */
     private void updateFriendlyTree() {
         List<List<String>> expanded = getExpandedPaths(resultsFriendlyTree);
         TreePath currentSelection = resultsFriendlyTree.getSelectionPath();
-        DefaultMutableTreeNode newRoot = buildGroupedTree(successEntries, ALL_VERBS, "Successful Requests");
-        resultsFriendlyTreeModel.setRoot(newRoot);
+        resultsFriendlyTreeModel.rebuild(successEntries);
         restoreExpansion(resultsFriendlyTree, expanded);
         if (currentSelection != null) {
             List<String> selStrings = pathToStringList(currentSelection);
@@ -463,12 +1367,12 @@ public class UserInterface {
 
     /**
      * Rebuilds the History tree from errorEntries while preserving expansion/selection.
+     * Only needed when the grouping changes; new entries are inserted incrementally.
      */
     private void updateHistoryTree() {
         List<List<String>> expanded = getExpandedPaths(historyTree);
         TreePath currentSelection = historyTree.getSelectionPath();
-        DefaultMutableTreeNode newRoot = buildGroupedTree(errorEntries, ALL_VERBS, "Log of all requests");
-        historyTreeModel.setRoot(newRoot);
+        historyTreeModel.rebuild(errorEntries);
         restoreExpansion(historyTree, expanded);
         if (currentSelection != null) {
             List<String> selStrings = pathToStringList(currentSelection);
@@ -479,45 +1383,6 @@ public class UserInterface {
         }
     }
 
-    /**
-     * Builds a grouped tree from the given list of entries.
-     * Grouping is done by domain (first token of the URL) and then by first URL segment.
-     */
-    private DefaultMutableTreeNode buildGroupedTree(List<ReplayedRequestEntry> entries, List<String> allowedVerbs, String rootName) {
-        DefaultMutableTreeNode root = new DefaultMutableTreeNode(rootName);
-        Map<String, DefaultMutableTreeNode> domainNodes = new HashMap<>();
-        Map<String, DefaultMutableTreeNode> segmentNodes = new HashMap<>();
-        for (ReplayedRequestEntry entry : entries) {
-            if (!allowedVerbs.contains(entry.verb)) continue;
-            String[] parts = entry.url.split("/", 2);
-            String domain = parts[0];
-            String path = (parts.length > 1) ? parts[1] : "";
-            String firstSegment = "";
-            if (!path.isEmpty()) {
-                String[] pathParts = path.split("/");
-                if (pathParts.length > 0) {
-                    firstSegment = pathParts[0];
-                }
-            }
-            DefaultMutableTreeNode domainNode = domainNodes.get(domain);
-            if (domainNode == null) {
-                domainNode = new DefaultMutableTreeNode(domain);
-                domainNodes.put(domain, domainNode);
-                root.add(domainNode);
-            }
-            String segKey = domain + "/" + firstSegment;
-            DefaultMutableTreeNode segmentNode = segmentNodes.get(segKey);
-            if (segmentNode == null) {
-                segmentNode = new DefaultMutableTreeNode(firstSegment.isEmpty() ? "/" : firstSegment);
-                segmentNodes.put(segKey, segmentNode);
-                domainNode.add(segmentNode);
-            }
-            DefaultMutableTreeNode entryNode = new DefaultMutableTreeNode(entry);
-            segmentNode.add(entryNode);
-        }
-        return root;
-    }
-
     /**
      * Returns a list of expanded paths in the given tree.
      */
@@ -588,8 +1453,9 @@ public class UserInterface {
         JMenuItem sendItem = new JMenuItem("Send to Repeater");
         sendItem.addActionListener(e -> {
             ReplayedRequestEntry entry = getSelectedEntry(resultsFriendlyTree);
-            if (entry != null && entry.requestText != null) {
-                HttpRequest req = parseHttpRequest(entry.requestText);
+            String requestText = (entry != null) ? requestTextOf(entry) : null;
+            if (requestText != null) {
+                HttpRequest req = parseHttpRequest(requestText);
                 if (req != null) {
                     VerbReplayer.sendToRepeater(req);
                 } else {
@@ -601,8 +1467,11 @@ public class UserInterface {
         });
         JMenuItem highlightItem = new JMenuItem("Highlight/Unhighlight");
         highlightItem.addActionListener(e -> toggleHighlight(resultsFriendlyTree));
+        JMenuItem hostReplayItem = new JMenuItem("Enable/Disable Replay for Host");
+        hostReplayItem.addActionListener(e -> toggleHostReplay(resultsFriendlyTree));
         contextMenu.add(sendItem);
         contextMenu.add(highlightItem);
+        contextMenu.add(hostReplayItem);
 
         resultsFriendlyTree.addMouseListener(new MouseAdapter() {
             @Override
@@ -627,8 +1496,9 @@ public class UserInterface {
         JMenuItem sendItem = new JMenuItem("Send to Repeater");
         sendItem.addActionListener(e -> {
             ReplayedRequestEntry entry = getSelectedEntry(historyTree);
-            if (entry != null && entry.requestText != null) {
-                HttpRequest req = parseHttpRequest(entry.requestText);
+            String requestText = (entry != null) ? requestTextOf(entry) : null;
+            if (requestText != null) {
+                HttpRequest req = parseHttpRequest(requestText);
                 if (req != null) {
                     VerbReplayer.sendToRepeater(req);
                 } else {
@@ -640,8 +1510,11 @@ public class UserInterface {
         });
         JMenuItem highlightItem = new JMenuItem("Highlight/Unhighlight");
         highlightItem.addActionListener(e -> toggleHighlight(historyTree));
+        JMenuItem hostReplayItem = new JMenuItem("Enable/Disable Replay for Host");
+        hostReplayItem.addActionListener(e -> toggleHostReplay(historyTree));
         contextMenu.add(sendItem);
         contextMenu.add(highlightItem);
+        contextMenu.add(hostReplayItem);
 
         historyTree.addMouseListener(new MouseAdapter() {
             @Override
@@ -667,62 +1540,43 @@ public class UserInterface {
         TreePath path = tree.getSelectionPath();
         if (path == null) return;
         DefaultMutableTreeNode node = (DefaultMutableTreeNode) path.getLastPathComponent();
+        boolean newState;
         if (node.isLeaf() && node.getUserObject() instanceof ReplayedRequestEntry) {
-            ReplayedRequestEntry entry = (ReplayedRequestEntry) node.getUserObject();
-            entry.highlighted = !entry.highlighted;
+            newState = !((ReplayedRequestEntry) node.getUserObject()).highlighted;
+        } else if (node instanceof GroupedTreeModel.GroupNode) {
+            newState = !((GroupedTreeModel.GroupNode) node).hasHighlighted();
         } else {
-            boolean newState = !nodeHasHighlightedDescendant(node);
-            setHighlightRecursive(node, newState);
+            return;
         }
+        setHighlightRecursive(tree, node, newState);
         tree.repaint();
     }
 
     /**
-     * Returns true if any descendant leaf of the node is highlighted.
+     * Sets the highlighted flag for the leaf or all descendant leaf nodes, keeping the group
+     * counts up to date and journaling each change.
      */
-    private boolean nodeHasHighlightedDescendant(DefaultMutableTreeNode node) {
-        if (node.isLeaf() && node.getUserObject() instanceof ReplayedRequestEntry) {
-            return ((ReplayedRequestEntry) node.getUserObject()).highlighted;
-        }
-        for (int i = 0; i < node.getChildCount(); i++) {
-            DefaultMutableTreeNode child = (DefaultMutableTreeNode) node.getChildAt(i);
-            if (nodeHasHighlightedDescendant(child)) return true;
-        }
-        return false;
+    private void setHighlightRecursive(JTree tree, DefaultMutableTreeNode node, boolean state) {
+        GroupedTreeModel model = (GroupedTreeModel) tree.getModel();
+        model.setHighlighted(node, state, entry -> journal.appendHighlight(entry.id, state));
     }
 
     /**
-     * Recursively sets the highlighted flag for all descendant leaf nodes.
+     * PUBLIC METHOD: Returns whether the History tab's checkboxes allow replaying the verb.
+     * (These control which verbs are replayed.) There is a checkbox for every effective verb of
+     * the verb matrix, and the check is case-insensitive, so a checkbox also covers the case
+     * variants and method overrides of its verb.
      */
-    private void setHighlightRecursive(DefaultMutableTreeNode node, boolean state) {
-        if (node.isLeaf() && node.getUserObject() instanceof ReplayedRequestEntry) {
-            ((ReplayedRequestEntry) node.getUserObject()).highlighted = state;
-        } else {
-            for (int i = 0; i < node.getChildCount(); i++) {
-                DefaultMutableTreeNode child = (DefaultMutableTreeNode) node.getChildAt(i);
-                setHighlightRecursive(child, state);
-            }
-        }
+    @Override
+    public boolean isVerbSelected(String verb) {
+        return historyVerbFilter.isSelected(verb);
     }
 
-    /**
-     * PUBLIC METHOD: Returns the list of allowed HTTP verbs from the History tab's checkboxes.
-     * (These control which verbs are replayed.)
-     */
-    public List<String> getSelectedVerbs() {
-        List<String> selectedVerbs = new ArrayList<>();
-        if (historyAllFilter.isSelected()) {
-            selectedVerbs = new ArrayList<>(ALL_VERBS);
-        } else {
-            if (historyPutFilter.isSelected()) selectedVerbs.add("PUT");
-            if (historyDeleteFilter.isSelected()) selectedVerbs.add("DELETE");
-            if (historyHeadFilter.isSelected()) selectedVerbs.add("HEAD");
-            if (historyOptionsFilter.isSelected()) selectedVerbs.add("OPTIONS");
-            if (historyConnectFilter.isSelected()) selectedVerbs.add("CONNECT");
-            if (historyTraceFilter.isSelected()) selectedVerbs.add("TRACE");
-            if (historyPatchFilter.isSelected()) selectedVerbs.add("PATCH");
-        }
-        return selectedVerbs;
+    /** Rebuilds the verb checkboxes of both tabs from the engine's current verb matrix. */
+    private void updateVerbFilters() {
+        List<VerbMatrix.Variant> variants = replayEngine.getVerbMatrix().getVariants();
+        resultsFriendlyVerbFilter.setVariants(variants);
+        historyVerbFilter.setVariants(variants);
     }
 
     /**
@@ -730,52 +1584,304 @@ public class UserInterface {
      * The errorEntries (History log) remain intact.
      */
     private void clearNonHighlightedEntries() {
-        successEntries.removeIf(entry -> !entry.highlighted);
+        Set<Long> removedIds = new HashSet<>();
+        successEntries.removeIf(entry -> {
+            if (entry.highlighted) return false;
+            removedIds.add(entry.id);
+            return true;
+        });
+        searchIndex.removeAll(removedIds);
     }
 
     /**
-     * Saves the master lists to disk in the same directory as the current project file.
+     * Runs the search field's query on a background thread and shows the matches.
      */
-    private void saveData() {
-        try {
-            File dir = getProjectDirectory();
-            File fSuccess = new File(dir, SUCCESS_FILE);
-            File fError = new File(dir, ERROR_FILE);
-            try (ObjectOutputStream outSuccess = new ObjectOutputStream(new FileOutputStream(fSuccess))) {
-                outSuccess.writeObject(successEntries);
+    private void runSearch() {
+        String query = searchField.getText();
+        searchStatusLabel.setText("Searching...");
+        new SwingWorker<int[], Void>() {
+            private long elapsedMillis;
+
+            @Override
+            protected int[] doInBackground() {
+                long start = System.nanoTime();
+                int[] docs = searchIndex.search(query);
+                elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+                return docs;
             }
-            try (ObjectOutputStream outError = new ObjectOutputStream(new FileOutputStream(fError))) {
-                outError.writeObject(errorEntries);
+
+            @Override
+            protected void done() {
+                try {
+                    int[] docs = get();
+                    searchResultsModel.setResults(docs);
+                    String text = String.format("%,d match(es) in %d ms", docs.length, elapsedMillis);
+                    int pending = searchIndex.getPendingCount();
+                    if (pending > 0) {
+                        text += String.format(" (%,d entries still being indexed)", pending);
+                    }
+                    searchStatusLabel.setText(text);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    searchStatusLabel.setText("Error: " + cause.getMessage());
+                }
             }
-        } catch (IOException e) {
-            api.logging().logToError("Error saving data: " + e.getMessage());
+        }.execute();
+    }
+
+    /**
+     * Writes the current search results to a CSV file chosen by the user.
+     */
+    private void exportSearchResults() {
+        int[] docs = searchResultsModel.getResults();
+        if (docs.length == 0) {
+            JOptionPane.showMessageDialog(mainPanel, "No search results to export.");
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("verbreplayer-search.csv"));
+        if (chooser.showSaveDialog(mainPanel) != JFileChooser.APPROVE_OPTION) return;
+        File file = chooser.getSelectedFile();
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() throws IOException {
+                int written = 0;
+                try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+                    out.write("list,id,timestamp,verb,status,url\n");
+                    for (int doc : docs) {
+                        ReplayedRequestEntry entry = searchIndex.entry(doc);
+                        if (entry == null) continue;
+                        out.write((searchIndex.isSuccess(doc) ? "results" : "history") + "," + entry.id + ","
+                                + ReplayExporter.csv(entry.timestamp) + "," + ReplayExporter.csv(entry.verb) + "," + entry.statusCode + ","
+                                + ReplayExporter.csv(entry.url) + "\n");
+                        written++;
+                    }
+                }
+                return written;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    searchStatusLabel.setText(String.format("Exported %,d row(s) to %s", get(), file.getName()));
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(mainPanel, "Error exporting results: " + cause.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Streams the Results or History entries that pass the tab's current filters to a JSON Lines,
+     * CSV or HAR file chosen by the user. The Results tab applies its verb checkboxes; the History
+     * tab applies the table's host/path and status filter while the table view is shown. The
+     * export runs on a background thread behind a cancellable progress dialog.
+     */
+    private void exportEntries(boolean results) {
+        // Take in everything logged so far, so the export covers what is on screen.
+        drainAllIngested();
+        List<ReplayedRequestEntry> snapshot = new ArrayList<>(results ? successEntries : errorEntries);
+        if (snapshot.isEmpty()) {
+            JOptionPane.showMessageDialog(mainPanel, "No entries to export.");
+            return;
         }
+        Predicate<ReplayedRequestEntry> filter = results ? resultsVerbFilter()
+                : historyTableViewToggle.isSelected() ? historyTableModel.getFilter() : entry -> true;
+
+        JFileChooser chooser = new JFileChooser();
+        chooser.setAcceptAllFileFilterUsed(false);
+        Map<javax.swing.filechooser.FileFilter, ReplayExporter.Format> formats = new LinkedHashMap<>();
+        for (ReplayExporter.Format format : ReplayExporter.Format.values()) {
+            FileNameExtensionFilter fileFilter = new FileNameExtensionFilter(format.toString(), format.getExtension());
+            formats.put(fileFilter, format);
+            chooser.addChoosableFileFilter(fileFilter);
+        }
+        chooser.setFileFilter(formats.keySet().iterator().next());
+        chooser.setSelectedFile(new File(results ? "verbreplayer-results" : "verbreplayer-history"));
+        if (chooser.showSaveDialog(mainPanel) != JFileChooser.APPROVE_OPTION) return;
+        ReplayExporter.Format format = formats.get(chooser.getFileFilter());
+        File chosen = chooser.getSelectedFile();
+        File file = chosen.getName().contains(".") ? chosen
+                : new File(chosen.getParentFile(), chosen.getName() + "." + format.getExtension());
+        ReplayExporter exporter = new ReplayExporter(format, this::requestTextOf, this::responseOf);
+
+        ProgressMonitor monitor = new ProgressMonitor(mainPanel, "Exporting to " + file.getName(),
+                null, 0, snapshot.size());
+        monitor.setMillisToDecideToPopup(300);
+        new SwingWorker<Integer, Integer>() {
+            @Override
+            protected Integer doInBackground() throws IOException {
+                try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+                    return exporter.export(snapshot, filter, out, done -> publish(done));
+                } catch (InterruptedIOException e) {
+                    // Cancelled: the writer is closed by now, and a partial file is of no use.
+                    file.delete();
+                    throw e;
+                }
+            }
+
+            @Override
+            protected void process(List<Integer> chunks) {
+                monitor.setProgress(chunks.get(chunks.size() - 1));
+                if (monitor.isCanceled()) cancel(true);
+            }
+
+            @Override
+            protected void done() {
+                monitor.close();
+                if (isCancelled()) return;
+                try {
+                    JOptionPane.showMessageDialog(mainPanel, String.format("Exported %,d entries to %s", get(), file.getName()));
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(mainPanel, "Error exporting entries: " + cause.getMessage());
+                }
+            }
+        }.execute();
     }
 
     /**
-     * Loads the master lists from disk in the same directory as the current project file.
+     * Returns a filter for the Results tab's verb checkboxes. Entries are logged under their
+     * variant's label, which is mapped back to the variant's effective verb; labels of variants
+     * no longer in the matrix are checked as they are, and verbs without a checkbox (such as GET)
+     * always pass.
+     */
+    private Predicate<ReplayedRequestEntry> resultsVerbFilter() {
+        Map<String, String> effectiveVerbs = new HashMap<>();
+        if (replayEngine != null) {
+            for (VerbMatrix.Variant variant : replayEngine.getVerbMatrix().getVariants()) {
+                effectiveVerbs.put(variant.label, variant.effectiveVerb);
+            }
+        }
+        return entry -> entry.verb == null
+                || resultsFriendlyVerbFilter.isSelected(effectiveVerbs.getOrDefault(entry.verb, entry.verb));
+    }
+
+    /**
+     * Opens the body store and journal in the storage directory and sets up the background
+     * loader that fills the master lists from the journal and then starts its writer.
+     * If there is no journal yet but files from the old whole-list format exist, the loader
+     * first migrates them into a new journal and renames them so they are not imported twice.
      */
-    @SuppressWarnings("unchecked")
     private void loadData() {
         File dir = getProjectDirectory();
+        File fJournal = new File(dir, JOURNAL_FILE);
         File fSuccess = new File(dir, SUCCESS_FILE);
         File fError = new File(dir, ERROR_FILE);
+        File fBlobs = new File(dir, BLOBS_FILE);
+        try {
+            ReplayJournal.finishInterruptedCompaction(fJournal, fBlobs);
+        } catch (IOException e) {
+            api.logging().logToError("Error finishing interrupted compaction: " + e.getMessage());
+        }
+        try {
+            bodyStore = new BodyStore(fBlobs);
+        } catch (IOException e) {
+            api.logging().logToError("Error opening body store, keeping bodies in memory: " + e.getMessage());
+        }
+        journal = new ReplayJournal(api.logging(), fJournal, bodyStore);
+        HistoryLoader.Preparation migration = () -> {
+            if (!fJournal.exists() && (fSuccess.exists() || fError.exists())) {
+                migrateLegacyFiles(fSuccess, fError);
+            }
+        };
+        historyLoader = new HistoryLoader(api.logging(), journal, migration, nextEntryId);
+    }
+
+    /**
+     * Writes the entries of the old whole-list files into a new journal, with their bodies in
+     * the body store. Runs on the loader thread, before the journal is read.
+     */
+    @SuppressWarnings("unchecked")
+    private void migrateLegacyFiles(File fSuccess, File fError) {
+        List<ReplayedRequestEntry> legacySuccess = new ArrayList<>();
+        List<ReplayedRequestEntry> legacyError = new ArrayList<>();
         if (fSuccess.exists()) {
             try (ObjectInputStream inSuccess = new ObjectInputStream(new FileInputStream(fSuccess))) {
-                List<ReplayedRequestEntry> loaded = (List<ReplayedRequestEntry>) inSuccess.readObject();
-                successEntries.addAll(loaded);
+                legacySuccess.addAll((List<ReplayedRequestEntry>) inSuccess.readObject());
             } catch (Exception e) {
                 api.logging().logToError("Error loading success data: " + e.getMessage());
             }
         }
         if (fError.exists()) {
             try (ObjectInputStream inError = new ObjectInputStream(new FileInputStream(fError))) {
-                List<ReplayedRequestEntry> loaded = (List<ReplayedRequestEntry>) inError.readObject();
-                errorEntries.addAll(loaded);
+                legacyError.addAll((List<ReplayedRequestEntry>) inError.readObject());
             } catch (Exception e) {
                 api.logging().logToError("Error loading error data: " + e.getMessage());
             }
         }
+        // Deserialization skips field initializers, so set the "not stored" markers explicitly.
+        for (ReplayedRequestEntry entry : legacySuccess) {
+            entry.id = nextEntryId.getAndIncrement();
+            entry.requestOffset = -1;
+            entry.responseOffset = -1;
+            moveToBodyStore(entry);
+        }
+        for (ReplayedRequestEntry entry : legacyError) {
+            entry.id = nextEntryId.getAndIncrement();
+            entry.requestOffset = -1;
+            entry.responseOffset = -1;
+            moveToBodyStore(entry);
+        }
+        try {
+            journal.writeInitial(legacySuccess, legacyError);
+            fSuccess.renameTo(new File(fSuccess.getPath() + ".migrated"));
+            fError.renameTo(new File(fError.getPath() + ".migrated"));
+        } catch (IOException e) {
+            api.logging().logToError("Error migrating data to journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Flushes pending journal writes. Called when the extension is unloaded.
+     */
+    public void shutdown() {
+        if (campaign != null) {
+            campaign.stop(); // keeps the checkpoint so it can be resumed after reloading
+        }
+        ingestTimer.stop();
+        // Stop loading saved history; what is not loaded yet is still in the journal.
+        historyLoader.cancel();
+        // Journal whatever is still queued.
+        Runnable drainAll = this::drainAllIngested;
+        if (SwingUtilities.isEventDispatchThread()) {
+            drainAll.run();
+        } else {
+            try {
+                SwingUtilities.invokeAndWait(drainAll);
+            } catch (Exception e) {
+                api.logging().logToError("Error saving queued results: " + e.getMessage());
+            }
+        }
+        searchIndex.shutdown();
+        if (journal != null) {
+            journal.close();
+        }
+        if (bodyStore != null) {
+            bodyStore.close();
+        }
+    }
+
+    /**
+     * Moves the entry's request and response texts off the heap into the body store.
+     * If the store is unavailable (or the write fails) they stay in memory.
+     */
+    private void moveToBodyStore(ReplayedRequestEntry entry) {
+        if (bodyStore == null) return;
+        try {
+            bodyStore.store(entry, entry.requestText, entry.response);
+        } catch (IOException e) {
+            api.logging().logToError("Error writing to body store: " + e.getMessage());
+        }
+    }
+
+    private String requestTextOf(ReplayedRequestEntry entry) {
+        return bodyStore != null ? bodyStore.requestText(entry) : entry.requestText;
+    }
+
+    private String responseOf(ReplayedRequestEntry entry) {
+        return bodyStore != null ? bodyStore.response(entry) : entry.response;
     }
 
     /**
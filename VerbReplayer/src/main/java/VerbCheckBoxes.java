@@ -0,0 +1,94 @@
+import javax.swing.JCheckBox;
+import javax.swing.JPanel;
+import java.awt.FlowLayout;
+import java.awt.event.ItemEvent;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A row of verb checkboxes with an "All" box, one box per distinct effective verb of the verb
+ * matrix. The row is rebuilt whenever the matrix changes ({@link #setVariants}): verbs that stay
+ * keep their tick, new verbs start ticked and the boxes of removed verbs go away. Verbs are
+ * compared upper-cased, so one box covers the case variants and method overrides of its verb.
+ * <p>
+ * The unticked verbs are also kept as an immutable set, so replay workers can call
+ * {@link #isSelected} without touching Swing.
+ */
+public class VerbCheckBoxes {
+
+    private final JPanel panel = new JPanel(new FlowLayout(FlowLayout.CENTER, 5, 0));
+    private final JCheckBox allBox = new JCheckBox("All", true);
+    private final Map<String, JCheckBox> boxes = new LinkedHashMap<>(); // by upper-case verb
+    private final Runnable onDeselect;
+    private volatile Set<String> unticked = Collections.emptySet();
+    private boolean bulkChange; // "All" is setting every box; report once at the end
+
+    /**
+     * @param onDeselect run on the event thread whenever verbs are unticked
+     */
+    public VerbCheckBoxes(List<VerbMatrix.Variant> variants, Runnable onDeselect) {
+        this.onDeselect = onDeselect;
+        // An action listener only hears clicks, not the setSelected calls that keep "All" in sync.
+        allBox.addActionListener(e -> {
+            bulkChange = true;
+            try {
+                for (JCheckBox box : boxes.values()) box.setSelected(allBox.isSelected());
+            } finally {
+                bulkChange = false;
+            }
+            update(!allBox.isSelected());
+        });
+        setVariants(variants);
+    }
+
+    /** The panel holding the boxes, to be added to a tab's filter bar. */
+    public JPanel getComponent() {
+        return panel;
+    }
+
+    /** Rebuilds the boxes for the distinct effective verbs of the variants, in matrix order. */
+    public void setVariants(List<VerbMatrix.Variant> variants) {
+        Set<String> verbs = new HashSet<>();
+        Map<String, JCheckBox> rebuilt = new LinkedHashMap<>();
+        for (VerbMatrix.Variant variant : variants) {
+            String verb = variant.effectiveVerb.toUpperCase(Locale.ROOT);
+            if (!verbs.add(verb)) continue;
+            JCheckBox box = boxes.get(verb);
+            if (box == null) {
+                box = new JCheckBox(verb, true);
+                box.addItemListener(e -> {
+                    if (!bulkChange) update(e.getStateChange() == ItemEvent.DESELECTED);
+                });
+            }
+            rebuilt.put(verb, box);
+        }
+        boxes.clear();
+        boxes.putAll(rebuilt);
+        panel.removeAll();
+        panel.add(allBox);
+        for (JCheckBox box : boxes.values()) panel.add(box);
+        panel.revalidate();
+        panel.repaint();
+        update(false);
+    }
+
+    /** Returns false if the verb (or the verb a variant asks for) has been unticked. */
+    public boolean isSelected(String verb) {
+        return !unticked.contains(verb.toUpperCase(Locale.ROOT));
+    }
+
+    private void update(boolean deselected) {
+        Set<String> now = new HashSet<>();
+        for (Map.Entry<String, JCheckBox> entry : boxes.entrySet()) {
+            if (!entry.getValue().isSelected()) now.add(entry.getKey());
+        }
+        unticked = Collections.unmodifiableSet(now);
+        allBox.setSelected(now.isEmpty());
+        if (deselected) onDeselect.run();
+    }
+}
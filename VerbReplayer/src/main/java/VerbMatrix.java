@@ -0,0 +1,233 @@
+import burp.api.montoya.http.message.params.HttpParameter;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The verb variants replayed for every accepted request, parsed from an editable list with one
+ * variant per line:
+ * <ul>
+ * <li>{@code PROPFIND} – send with that method; any token is allowed, including made-up verbs
+ *     and case variants such as {@code delete}</li>
+ * <li>{@code POST X-HTTP-Method-Override: DELETE} – send with the first method plus the header</li>
+ * <li>{@code POST _method=DELETE} – send with the first method plus the parameter (in the body
+ *     for form or empty bodies, in the query string otherwise)</li>
+ * </ul>
+ * Blank lines and lines starting with # are ignored. Like the request filter, the parsed list is
+ * an immutable snapshot swapped in atomically, so it can be edited while replays are queued.
+ * <p>
+ * Variants fall into classes (standard methods, case variants, custom methods, header and
+ * parameter overrides). Some servers reject a whole class outright, e.g. every non-standard
+ * method with 400/501, so once a host has rejected {@link #SUSPEND_AFTER_REJECTIONS} variants of
+ * a class in a row, that class is suspended for the host and only every {@link #PROBE_INTERVAL}th
+ * variant is still sent as a probe; any other answer to a probe lifts the suspension. Standard
+ * methods are never suspended, since a 405 for them is itself the result we are after.
+ */
+public class VerbMatrix {
+
+    /** Variant classes, used to adapt to hosts that reject a whole class. */
+    public enum VariantClass { STANDARD, CASE, CUSTOM, OVERRIDE_HEADER, OVERRIDE_PARAMETER }
+
+    public static final String DEFAULT_MATRIX = String.join("\n",
+            "PUT", "DELETE", "HEAD", "OPTIONS", "CONNECT", "TRACE", "PATCH",
+            "# Uncomment to also try WebDAV, case variants and method tunneling:",
+            "# PROPFIND", "# MOVE", "# delete", "# put",
+            "# POST X-HTTP-Method-Override: DELETE", "# POST X-HTTP-Method-Override: PUT",
+            "# POST _method=DELETE", "# POST _method=PUT");
+
+    static final int SUSPEND_AFTER_REJECTIONS = 10;
+    static final int PROBE_INTERVAL = 25;
+    private static final Set<Integer> REJECTION_STATUSES = new HashSet<>(Arrays.asList(400, 405, 501));
+    private static final Set<String> STANDARD_METHODS = new HashSet<>(Arrays.asList(
+            "GET", "POST", "PUT", "DELETE", "HEAD", "OPTIONS", "CONNECT", "TRACE", "PATCH"));
+    private static final Pattern TOKEN = Pattern.compile("[!#$%&'*+.^_`|~0-9A-Za-z-]+");
+    private static final Pattern HEADER_VARIANT = Pattern.compile("(\\S+)\\s+([!#$%&'*+.^_`|~0-9A-Za-z-]+):\\s*(\\S+)");
+    private static final Pattern PARAMETER_VARIANT = Pattern.compile("(\\S+)\\s+([^\\s=]+)=(\\S+)");
+
+    private volatile List<Variant> variants;
+    private final Map<String, ClassState> classStates = new ConcurrentHashMap<>();
+    private final AtomicLong suspendedSkips = new AtomicLong();
+
+    public VerbMatrix() {
+        this.variants = parse(DEFAULT_MATRIX);
+    }
+
+    /** The current variants, in the order they were listed. */
+    public List<Variant> getVariants() {
+        return variants;
+    }
+
+    /**
+     * Replaces the variants.
+     *
+     * @throws IllegalArgumentException if a line is not a valid variant; the old list is then kept
+     */
+    public void setMatrix(String text) {
+        this.variants = parse(text);
+    }
+
+    static List<Variant> parse(String text) {
+        List<Variant> parsed = new ArrayList<>();
+        Set<String> labels = new HashSet<>();
+        for (String line : text.split("\\R")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+            Variant variant = parseLine(trimmed);
+            if (labels.add(variant.label)) parsed.add(variant);
+        }
+        return Collections.unmodifiableList(parsed);
+    }
+
+    private static Variant parseLine(String line) {
+        if (TOKEN.matcher(line).matches()) {
+            VariantClass variantClass = !line.equals(line.toUpperCase(Locale.ROOT)) ? VariantClass.CASE
+                    : STANDARD_METHODS.contains(line) ? VariantClass.STANDARD : VariantClass.CUSTOM;
+            return new Variant(line, line, variantClass, line, null, null);
+        }
+        Matcher m = HEADER_VARIANT.matcher(line);
+        if (m.matches() && TOKEN.matcher(m.group(1)).matches()) {
+            return new Variant(m.group(1) + "+" + m.group(2) + ":" + m.group(3), m.group(1),
+                    VariantClass.OVERRIDE_HEADER, m.group(3), m.group(2), m.group(3));
+        }
+        m = PARAMETER_VARIANT.matcher(line);
+        if (m.matches() && TOKEN.matcher(m.group(1)).matches()) {
+            return new Variant(m.group(1) + "+" + m.group(2) + "=" + m.group(3), m.group(1),
+                    VariantClass.OVERRIDE_PARAMETER, m.group(3), m.group(2), m.group(3));
+        }
+        throw new IllegalArgumentException("Invalid verb variant: " + line
+                + " (expected METHOD, METHOD Header-Name: VALUE or METHOD name=VALUE)");
+    }
+
+    /**
+     * Returns false if the variant's class is suspended for the host and this one is not due as
+     * a probe.
+     */
+    public boolean allows(String host, Variant variant) {
+        if (variant.variantClass == VariantClass.STANDARD) return true;
+        ClassState state = classStates.get(key(host, variant.variantClass));
+        if (state == null) return true;
+        synchronized (state) {
+            if (!state.suspended || ++state.skippedSinceProbe >= PROBE_INTERVAL) {
+                state.skippedSinceProbe = 0;
+                return true;
+            }
+        }
+        suspendedSkips.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Records the status a host answered a variant with, suspending or reinstating its class.
+     *
+     * @param statusCode the response status, or 0 if there was no response (not counted)
+     */
+    public void recordOutcome(String host, Variant variant, int statusCode) {
+        if (variant.variantClass == VariantClass.STANDARD || statusCode == 0) return;
+        ClassState state = classStates.computeIfAbsent(key(host, variant.variantClass), k -> new ClassState());
+        synchronized (state) {
+            if (REJECTION_STATUSES.contains(statusCode)) {
+                if (++state.consecutiveRejections >= SUSPEND_AFTER_REJECTIONS) state.suspended = true;
+            } else {
+                state.consecutiveRejections = 0;
+                state.suspended = false;
+            }
+        }
+    }
+
+    private static String key(String host, VariantClass variantClass) {
+        return host + " " + variantClass.ordinal();
+    }
+
+    /** Number of host + class pairs currently suspended. */
+    public int getSuspendedClassCount() {
+        int n = 0;
+        for (ClassState state : classStates.values()) {
+            synchronized (state) {
+                if (state.suspended) n++;
+            }
+        }
+        return n;
+    }
+
+    /** Number of variants skipped because their class was suspended for the host. */
+    public long getSuspendedSkipCount() {
+        return suspendedSkips.get();
+    }
+
+    /** Lifts every suspension, e.g. after the matrix was edited. */
+    public void resetSuspensions() {
+        classStates.clear();
+    }
+
+    private static final class ClassState {
+        int consecutiveRejections;
+        boolean suspended;
+        int skippedSinceProbe;
+    }
+
+    // ---------------------------
+    // One row of the matrix.
+    // ---------------------------
+    public static final class Variant {
+        /** Shown in the trees and used as the dedup key, e.g. {@code POST+X-HTTP-Method-Override:DELETE}. */
+        public final String label;
+        /** Method on the request line. */
+        public final String method;
+        public final VariantClass variantClass;
+        /** The verb the server is asked to perform, used for the History checkboxes and priorities. */
+        public final String effectiveVerb;
+        private final String overrideName;   // header or parameter name, null for plain methods
+        private final String overrideValue;
+
+        Variant(String label, String method, VariantClass variantClass, String effectiveVerb,
+                String overrideName, String overrideValue) {
+            this.label = label;
+            this.method = method;
+            this.variantClass = variantClass;
+            this.effectiveVerb = effectiveVerb;
+            this.overrideName = overrideName;
+            this.overrideValue = overrideValue;
+        }
+
+        /** Builds this variant of the original request. */
+        public HttpRequest apply(HttpRequest original) {
+            HttpRequest request = original.withMethod(method);
+            switch (variantClass) {
+                case OVERRIDE_HEADER:
+                    return request.hasHeader(overrideName)
+                            ? request.withHeader(overrideName, overrideValue)
+                            : request.withAddedHeader(overrideName, overrideValue);
+                case OVERRIDE_PARAMETER:
+                    String contentType = request.headerValue("Content-Type");
+                    boolean formBody = contentType == null
+                            ? request.body().length() == 0
+                            : contentType.toLowerCase(Locale.ROOT).startsWith("application/x-www-form-urlencoded");
+                    if (!formBody) {
+                        // Adding a form field to a JSON or multipart body would corrupt it.
+                        return request.withParameter(HttpParameter.urlParameter(overrideName, overrideValue));
+                    }
+                    if (contentType == null) {
+                        request = request.withAddedHeader("Content-Type", "application/x-www-form-urlencoded");
+                    }
+                    return request.withParameter(HttpParameter.bodyParameter(overrideName, overrideValue));
+                default:
+                    return request;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+}
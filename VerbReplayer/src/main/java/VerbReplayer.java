@@ -4,21 +4,16 @@ import burp.api.montoya.proxy.http.ProxyRequestHandler;
 import burp.api.montoya.proxy.http.InterceptedRequest;
 import burp.api.montoya.proxy.http.ProxyRequestToBeSentAction;
 import burp.api.montoya.proxy.http.ProxyRequestReceivedAction;
+import burp.api.montoya.proxy.http.ProxyResponseHandler;
+import burp.api.montoya.proxy.http.InterceptedResponse;
+import burp.api.montoya.proxy.http.ProxyResponseReceivedAction;
+import burp.api.montoya.proxy.http.ProxyResponseToBeSentAction;
 import burp.api.montoya.http.message.requests.HttpRequest;
-import burp.api.montoya.http.message.responses.HttpResponse;
-import java.net.URL;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
 
-public class VerbReplayer implements BurpExtension, ProxyRequestHandler {
+public class VerbReplayer implements BurpExtension, ProxyRequestHandler, ProxyResponseHandler {
     private static MontoyaApi api;
     private UserInterface userInterface;
-    private final Set<String> excludedExtensions = new HashSet<>(Arrays.asList(
-            ".jpg", ".jpeg", ".png", ".gif", ".bmp", ".svg", ".webp", ".ico",
-            ".tiff", ".pdf", ".woff", ".woff2", ".ttf", ".eot", ".mp4", ".avi",
-            ".mov", ".mp3", ".wav", ".zip", ".rar", ".7z", ".gz", ".tar"
-    ));
+    private ReplayEngine replayEngine;
 
     @Override
     public void initialize(MontoyaApi api) {
@@ -27,48 +22,47 @@ public class VerbReplayer implements BurpExtension, ProxyRequestHandler {
         api.logging().logToOutput("VERBREPLAYER HAS STARTED.");
 
         userInterface = new UserInterface(api);
+        replayEngine = new ReplayEngine(api.logging(), new MontoyaHttpSender(api.http()), userInterface);
+        userInterface.setReplayEngine(replayEngine);
         api.userInterface().registerSuiteTab("VerbReplayer", userInterface.getMainPanel());
 
         api.proxy().registerRequestHandler(this);
+        api.proxy().registerResponseHandler(this);
+        api.extension().registerUnloadingHandler(() -> {
+            replayEngine.shutdown();
+            userInterface.shutdown();
+        });
     }
 
     @Override
     public ProxyRequestToBeSentAction handleRequestToBeSent(InterceptedRequest interceptedRequest) {
-        String urlString = interceptedRequest.url().toString().toLowerCase();
-
-        for (String extension : excludedExtensions) {
-            if (urlString.endsWith(extension)) {
-                api.logging().logToOutput("Request skipped due to excluded extension: " + urlString);
-                return ProxyRequestToBeSentAction.continueWith(interceptedRequest);
-            }
-        }
+        return ProxyRequestToBeSentAction.continueWith(interceptedRequest);
+    }
 
+    /**
+     * Replays the verb variants once the original response is in, so every variant can be
+     * compared against it (the baseline) when deciding whether it belongs in Results.
+     */
+    @Override
+    public ProxyResponseReceivedAction handleResponseReceived(InterceptedResponse interceptedResponse) {
+        HttpRequest originalRequest = interceptedResponse.initiatingRequest();
+        long start = System.nanoTime();
         try {
-            URL url = new URL(urlString);
-            String hostname = url.getHost();
-            String uri = url.getPath();
-
-            // Get allowed HTTP verbs from the History tab's checkboxes (which control replay).
-            java.util.List<String> selectedVerbs = userInterface.getSelectedVerbs();
-
-            for (String verb : selectedVerbs) {
-                HttpRequest modifiedRequest = interceptedRequest.withMethod(verb);
-                HttpResponse response = api.http().sendRequest(modifiedRequest).response();
-                int statusCode = response.statusCode();
-                // Log every replayed request; the UI will sort them into success/error lists.
-                userInterface.logTraffic(
-                        verb,
-                        hostname + uri,
-                        statusCode,
-                        modifiedRequest,
-                        response.toString()
-                );
-            }
+            // Filtering, dedup and the baseline are shared with replay campaigns; the variants
+            // are sent on the replay engine's workers so the proxy thread is released straight away.
+            replayEngine.replayVariants(originalRequest, interceptedResponse);
         } catch (Exception e) {
-            api.logging().logToError("Error parsing URL: " + e.getMessage());
+            api.logging().logToError("Error queueing replays for " + originalRequest.url() + ": " + e.getMessage());
         }
+        // The time the browser waits on the extension for this response.
+        replayEngine.getMetrics().recordProxyOverhead(System.nanoTime() - start);
 
-        return ProxyRequestToBeSentAction.continueWith(interceptedRequest);
+        return ProxyResponseReceivedAction.continueWith(interceptedResponse);
+    }
+
+    @Override
+    public ProxyResponseToBeSentAction handleResponseToBeSent(InterceptedResponse interceptedResponse) {
+        return ProxyResponseToBeSentAction.continueWith(interceptedResponse);
     }
 
     @Override
@@ -0,0 +1,45 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PathNormalizerTest {
+
+    private final PathNormalizer normalizer = new PathNormalizer();
+
+    @Test
+    void foldsUuids() {
+        assertEquals("/api/users/{uuid}/profile",
+                normalizer.template("/api/users/3f2504e0-4f89-11d3-9a0c-0305e82c3301/profile"));
+    }
+
+    @Test
+    void foldsNumbers() {
+        assertEquals("/api/orders/{id}/items/{id}", normalizer.template("/api/orders/123/items/7"));
+    }
+
+    @Test
+    void foldsHexDigests() {
+        assertEquals("/files/{hex}", normalizer.template("/files/9e107d9d372bb6826bd81d3542a419d6"));
+    }
+
+    @Test
+    void foldsBase64Tokens() {
+        assertEquals("/reset/{b64}", normalizer.template("/reset/dGhpcyBpcyBhIHRva2VuMTIz"));
+        assertEquals("/invite/{b64}", normalizer.template("/invite/Xk9_q2Lm-7ZpR4tBv0Wc"));
+        // Lowercase tokens count if they are digit-heavy.
+        assertEquals("/s/{b64}", normalizer.template("/s/k3j4h5g6f7d8s9a0p1o2"));
+    }
+
+    @Test
+    void keepsRouteNames() {
+        assertEquals("/api/oauth2-authorization-endpoint", normalizer.template("/api/oauth2-authorization-endpoint"));
+        assertEquals("/api/oauth2-token-introspection", normalizer.template("/api/oauth2-token-introspection"));
+        assertEquals("/v2/user_notification_preferences", normalizer.template("/v2/user_notification_preferences"));
+        assertEquals("/api/getAccountSettingsForUser2", normalizer.template("/api/getAccountSettingsForUser2"));
+    }
+
+    @Test
+    void mergesRepeatedSlashesAndTrailingSlash() {
+        assertEquals("/api/orders/{id}", normalizer.template("//api//orders/42/"));
+    }
+}
@@ -0,0 +1,210 @@
+import burp.api.montoya.logging.Logging;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplayJournalTest {
+
+    private static final Logging LOGGING = (Logging) Proxy.newProxyInstance(
+            Logging.class.getClassLoader(), new Class<?>[]{Logging.class}, (proxy, method, args) -> null);
+
+    @TempDir
+    File dir;
+
+    @Test
+    void highlightSurvivesRepeatedCompactionAndClear() throws Exception {
+        File file = new File(dir, "journal.bin");
+        ReplayJournal journal = new ReplayJournal(LOGGING, file, null);
+        journal.start();
+        journal.appendAdd(entry(1), true);
+        journal.appendAdd(entry(2), true);
+        journal.appendAdd(entry(3), false);
+        journal.appendHighlight(1, true);
+        journal.close();
+
+        // The first compaction folds the HIGHLIGHT record into the ADD record, the second reads it back.
+        new ReplayJournal(LOGGING, file, null).compact();
+        new ReplayJournal(LOGGING, file, null).compact();
+        appendClear(file);
+
+        assertLoaded(file);
+    }
+
+    @Test
+    void highlightOfMigratedEntriesSurvivesCompactionAndClear() throws Exception {
+        File file = new File(dir, "journal.bin");
+        UserInterface.ReplayedRequestEntry highlighted = entry(1);
+        highlighted.highlighted = true;
+        List<UserInterface.ReplayedRequestEntry> successEntries = List.of(highlighted, entry(2));
+        new ReplayJournal(LOGGING, file, null).writeInitial(successEntries, List.of(entry(3)));
+
+        new ReplayJournal(LOGGING, file, null).compact();
+        appendClear(file);
+
+        assertLoaded(file);
+    }
+
+    @Test
+    void compactionReclaimsBodiesOfClearedEntries() throws Exception {
+        File file = new File(dir, "journal.bin");
+        File blobs = new File(dir, "blobs.dat");
+        BodyStore bodyStore = new BodyStore(blobs);
+        ReplayJournal journal = new ReplayJournal(LOGGING, file, bodyStore);
+        journal.start();
+        List<UserInterface.ReplayedRequestEntry> entries = new ArrayList<>();
+        for (long id = 1; id <= 2000; id++) {
+            UserInterface.ReplayedRequestEntry entry = entry(id);
+            bodyStore.store(entry, entry.requestText, entry.response);
+            entries.add(entry);
+            journal.appendAdd(entry, true);
+        }
+        journal.appendHighlight(7, true);
+        journal.appendClearNonHighlighted();
+        journal.close();
+        long before = blobs.length();
+
+        new ReplayJournal(LOGGING, file, bodyStore).compact();
+        assertTrue(blobs.length() < before / 100);
+        // An entry still in memory keeps its old offsets, which are translated on read.
+        assertEquals("response 7", bodyStore.response(entries.get(6)));
+        bodyStore.close();
+
+        BodyStore reopened = new BodyStore(blobs);
+        List<UserInterface.ReplayedRequestEntry> success = new ArrayList<>();
+        new ReplayJournal(LOGGING, file, reopened).load(success, new ArrayList<>());
+        assertEquals(1, success.size());
+        assertEquals("request 7", reopened.requestText(success.get(0)));
+        assertEquals("response 7", reopened.response(success.get(0)));
+        reopened.close();
+    }
+
+    @Test
+    void schemeSurvivesCompaction() throws Exception {
+        File file = new File(dir, "journal.bin");
+        ReplayJournal journal = new ReplayJournal(LOGGING, file, null);
+        journal.start();
+        UserInterface.ReplayedRequestEntry secure = entry(1);
+        secure.scheme = "https";
+        UserInterface.ReplayedRequestEntry plain = entry(2);
+        plain.scheme = "http";
+        journal.appendAdd(secure, true);
+        journal.appendAdd(plain, false);
+        journal.appendAdd(entry(3), false);
+        journal.close();
+
+        new ReplayJournal(LOGGING, file, null).compact();
+
+        List<UserInterface.ReplayedRequestEntry> success = new ArrayList<>();
+        List<UserInterface.ReplayedRequestEntry> error = new ArrayList<>();
+        new ReplayJournal(LOGGING, file, null).load(success, error);
+        assertEquals("https", success.get(0).scheme);
+        assertEquals("http", error.get(0).scheme);
+        // Entries without a recorded scheme stay without one.
+        assertNull(error.get(1).scheme);
+    }
+
+    @Test
+    void compactionLeavesJournalWithCorruptRecordInTheMiddleAlone() throws Exception {
+        File file = new File(dir, "journal.bin");
+        ReplayJournal journal = new ReplayJournal(LOGGING, file, null);
+        journal.start();
+        for (long id = 1; id <= 10; id++) journal.appendAdd(entry(id), false);
+        journal.appendHighlight(4, true);
+        journal.close();
+        corruptLengthOfRecord(file, 3);
+        byte[] before = Files.readAllBytes(file.toPath());
+
+        assertThrows(IOException.class, () -> new ReplayJournal(LOGGING, file, null).compact());
+        assertArrayEquals(before, Files.readAllBytes(file.toPath()));
+        assertFalse(new File(dir, "journal.bin.compact").exists());
+    }
+
+    @Test
+    void loadingKeepsEntriesAfterCorruptRecordAndSetsDamagedFileAside() throws Exception {
+        File file = new File(dir, "journal.bin");
+        ReplayJournal journal = new ReplayJournal(LOGGING, file, null);
+        journal.start();
+        for (long id = 1; id <= 10; id++) journal.appendAdd(entry(id), false);
+        journal.close();
+        corruptLengthOfRecord(file, 3);
+        byte[] damaged = Files.readAllBytes(file.toPath());
+
+        List<UserInterface.ReplayedRequestEntry> error = new ArrayList<>();
+        assertEquals(10, new ReplayJournal(LOGGING, file, null).load(new ArrayList<>(), error));
+        assertEquals(7, error.size());
+        assertEquals(4, error.get(0).id);
+        assertEquals(10, error.get(6).id);
+
+        File[] setAside = dir.listFiles((d, name) -> name.startsWith("journal.bin.corrupt-"));
+        assertEquals(1, setAside.length);
+        assertArrayEquals(damaged, Files.readAllBytes(setAside[0].toPath()));
+
+        // The journal now holds only the intact records, so it can be appended to and compacted.
+        journal = new ReplayJournal(LOGGING, file, null);
+        journal.start();
+        journal.appendAdd(entry(11), false);
+        journal.close();
+        new ReplayJournal(LOGGING, file, null).compact();
+        error.clear();
+        new ReplayJournal(LOGGING, file, null).load(new ArrayList<>(), error);
+        assertEquals(8, error.size());
+        assertEquals(11, error.get(7).id);
+    }
+
+    /** Overwrites the leading length field of the record with the given 1-based number. */
+    private static void corruptLengthOfRecord(File file, int number) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long offset = 4;
+            for (int i = 1; i < number; i++) {
+                raf.seek(offset);
+                offset += 8 + raf.readInt();
+            }
+            raf.seek(offset);
+            raf.writeInt(-7);
+        }
+    }
+
+    private static void appendClear(File file) throws Exception {
+        ReplayJournal journal = new ReplayJournal(LOGGING, file, null);
+        journal.start();
+        journal.appendClearNonHighlighted();
+        journal.close();
+        // Compacting after the clear must keep the same entries.
+        new ReplayJournal(LOGGING, file, null).compact();
+    }
+
+    private static void assertLoaded(File file) throws Exception {
+        List<UserInterface.ReplayedRequestEntry> success = new ArrayList<>();
+        List<UserInterface.ReplayedRequestEntry> error = new ArrayList<>();
+        long maxId = new ReplayJournal(LOGGING, file, null).load(success, error);
+        assertEquals(3, maxId);
+        assertEquals(1, success.size());
+        assertEquals(1, success.get(0).id);
+        assertTrue(success.get(0).highlighted);
+        assertEquals("request 1", success.get(0).requestText);
+        // Clearing only empties Results; History keeps its entries.
+        assertEquals(1, error.size());
+        assertEquals(3, error.get(0).id);
+        assertFalse(error.get(0).highlighted);
+    }
+
+    private static UserInterface.ReplayedRequestEntry entry(long id) {
+        UserInterface.ReplayedRequestEntry entry = new UserInterface.ReplayedRequestEntry(
+                "PUT", "example.com/items/" + id, 200, "request " + id, "response " + id, "2024-01-01 00:00:00");
+        entry.id = id;
+        return entry;
+    }
+}
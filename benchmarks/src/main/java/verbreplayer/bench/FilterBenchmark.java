@@ -0,0 +1,87 @@
+package verbreplayer.bench;
+
+import burp.api.montoya.http.message.MimeType;
+import java.lang.invoke.MethodHandle;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The per-request checks on the proxy thread: the request filter (extension, host, MIME type,
+ * path and scope rules, with the default settings) and path templating for the dedup key.
+ * Each invocation runs the whole synthetic request set once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class FilterBenchmark {
+
+    private static final Class<?> FILTER = Fixtures.load("RequestFilter");
+    private static final Class<?> HOST_SCOPE = Fixtures.load("HostScope");
+    private static final Class<?> NORMALIZER = Fixtures.load("PathNormalizer");
+    private static final MethodHandle NEW_FILTER = Fixtures.constructor(FILTER, HOST_SCOPE);
+    private static final MethodHandle NEW_HOST_SCOPE = Fixtures.constructor(HOST_SCOPE, Predicate.class);
+    private static final MethodHandle NEW_NORMALIZER = Fixtures.constructor(NORMALIZER);
+    private static final MethodHandle CHECK = Fixtures.method(FILTER, "check",
+            String.class, String.class, MimeType.class, MimeType.class, String.class);
+    private static final MethodHandle TEMPLATE = Fixtures.method(NORMALIZER, "template", String.class);
+
+    @Param({"10000", "100000", "1000000"})
+    public int entries;
+
+    private String[] hosts;
+    private String[] paths;
+    private String[] urls;
+    private MimeType[] mimeTypes;
+    private Object filter;
+    private Object normalizer;
+
+    @Setup(Level.Trial)
+    public void generate() throws Throwable {
+        SplittableRandom random = new SplittableRandom(42);
+        MimeType[] common = {MimeType.HTML, MimeType.JSON, MimeType.SCRIPT, MimeType.IMAGE_PNG, MimeType.CSS, MimeType.NONE};
+        hosts = new String[entries];
+        paths = new String[entries];
+        urls = new String[entries];
+        mimeTypes = new MimeType[entries];
+        for (int i = 0; i < entries; i++) {
+            hosts[i] = Fixtures.host(random.nextInt(40));
+            paths[i] = Fixtures.path(random);
+            urls[i] = "https://" + hosts[i] + paths[i];
+            mimeTypes[i] = common[random.nextInt(common.length)];
+        }
+        Predicate<String> everythingInScope = url -> true;
+        filter = NEW_FILTER.invoke(NEW_HOST_SCOPE.invoke(everythingInScope));
+        normalizer = NEW_NORMALIZER.invoke();
+    }
+
+    @Benchmark
+    public void check(Blackhole bh) throws Throwable {
+        for (int i = 0; i < entries; i++) {
+            bh.consume(CHECK.invoke(filter, hosts[i], paths[i], mimeTypes[i], mimeTypes[i], urls[i]));
+        }
+    }
+
+    @Benchmark
+    public void template(Blackhole bh) throws Throwable {
+        for (int i = 0; i < entries; i++) {
+            bh.consume(TEMPLATE.invoke(normalizer, paths[i]));
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package verbreplayer.bench;
+
+import burp.api.montoya.logging.Logging;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic data and handles into the extension's classes.
+ * <p>
+ * The extension's classes live in the default package, which cannot be imported from a named
+ * package (and JMH refuses benchmarks in the default package), so they are looked up by name once
+ * and called through method handles held in static finals, which the JIT inlines like direct calls.
+ * <p>
+ * The generated traffic is shaped like a crawl: a few dozen hosts, paths built from a small
+ * vocabulary with numeric and UUID ids, the seven default verbs, mostly 4xx statuses, and response
+ * bodies drawn from a small set of pages so the content-addressed body store deduplicates them.
+ */
+final class Fixtures {
+
+    static final Class<?> ENTRY = load("UserInterface$ReplayedRequestEntry");
+
+    private static final MethodHandle NEW_ENTRY = constructor(ENTRY,
+            String.class, String.class, int.class, String.class, String.class, String.class);
+    private static final Field ENTRY_ID = field(ENTRY, "id");
+
+    private static final String[] VERBS = {"PUT", "DELETE", "HEAD", "OPTIONS", "CONNECT", "TRACE", "PATCH"};
+    private static final int[] STATUSES = {405, 405, 405, 404, 403, 400, 501, 200, 302, 500};
+    private static final String[] SEGMENTS = {"api", "v1", "v2", "users", "orders", "items", "admin", "account",
+            "settings", "search", "static", "assets", "login", "cart", "products", "reports"};
+    private static final String[] EXTENSIONS = {"", "", "", "", ".json", ".php", ".png", ".js", ".css", ".jpg"};
+    private static final int HOSTS = 40;
+    private static final int DISTINCT_BODIES = 64;
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private Fixtures() {
+    }
+
+    static Class<?> load(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Extension class " + name + " not on the class path", e);
+        }
+    }
+
+    static MethodHandle constructor(Class<?> type, Class<?>... parameterTypes) {
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor(parameterTypes);
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Handle for a method of any visibility, looked up by name and parameter types. */
+    static MethodHandle method(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            Method method = type.getDeclaredMethod(name, parameterTypes);
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static Field field(Class<?> type, String name) {
+        try {
+            Field field = type.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Creates {@code count} logged entries with increasing ids and timestamps. */
+    static List<Object> entries(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Object> entries = new ArrayList<>(count);
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 9, 0);
+        String timestamp = null;
+        long timestampSecond = -1;
+        for (int i = 0; i < count; i++) {
+            String verb = VERBS[random.nextInt(VERBS.length)];
+            String url = host(random.nextInt(HOSTS)) + path(random);
+            int status = STATUSES[random.nextInt(STATUSES.length)];
+            long second = i / 20; // about 20 replays per second
+            if (second != timestampSecond) {
+                timestamp = start.plusSeconds(second).format(TIMESTAMP_FORMAT);
+                timestampSecond = second;
+            }
+            String request = verb + " " + url.substring(url.indexOf('/')) + " HTTP/1.1\r\nHost: "
+                    + url.substring(0, url.indexOf('/')) + "\r\n\r\n";
+            String response = "HTTP/1.1 " + status + " X\r\nContent-Type: text/html\r\n\r\n"
+                    + "<html><body>page " + random.nextInt(DISTINCT_BODIES) + "</body></html>";
+            try {
+                Object entry = NEW_ENTRY.invoke(verb, url, status, request, response, timestamp);
+                ENTRY_ID.setLong(entry, i + 1L);
+                entries.add(entry);
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+        return entries;
+    }
+
+    static String host(int n) {
+        return (n % 3 == 0 ? "cdn" : n % 3 == 1 ? "api" : "www") + n + ".example.com";
+    }
+
+    /** A path of one to five segments, some of them ids, sometimes with a file extension. */
+    static String path(SplittableRandom random) {
+        StringBuilder path = new StringBuilder();
+        int depth = 1 + random.nextInt(5);
+        for (int d = 0; d < depth; d++) {
+            path.append('/');
+            int kind = random.nextInt(10);
+            if (kind == 0) {
+                path.append(random.nextInt(1_000_000));
+            } else if (kind == 1) {
+                path.append(Long.toHexString(random.nextLong())).append('-').append(Integer.toHexString(random.nextInt()));
+            } else {
+                path.append(SEGMENTS[random.nextInt(SEGMENTS.length)]);
+            }
+        }
+        path.append(EXTENSIONS[random.nextInt(EXTENSIONS.length)]);
+        return path.toString();
+    }
+
+    /** Logging that discards everything. */
+    static Logging silentLogging() {
+        return (Logging) Proxy.newProxyInstance(Fixtures.class.getClassLoader(),
+                new Class<?>[]{Logging.class}, (proxy, method, args) -> null);
+    }
+}
@@ -0,0 +1,67 @@
+package verbreplayer.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Grouping of logged entries into the domain / first segment / path template trees: a full
+ * rebuild (as after loading the journal or clearing) and incremental batches (as live traffic
+ * comes in). Both include path templating, which is where most of the time goes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class GroupingBenchmark {
+
+    private static final Class<?> MODEL = Fixtures.load("GroupedTreeModel");
+    private static final Class<?> NORMALIZER = Fixtures.load("PathNormalizer");
+    private static final MethodHandle NEW_MODEL = Fixtures.constructor(MODEL, String.class, NORMALIZER);
+    private static final MethodHandle NEW_NORMALIZER = Fixtures.constructor(NORMALIZER);
+    private static final MethodHandle REBUILD = Fixtures.method(MODEL, "rebuild", List.class);
+    private static final MethodHandle ADD_ENTRIES = Fixtures.method(MODEL, "addEntries", List.class);
+    private static final MethodHandle DOMAINS = Fixtures.method(MODEL, "getDomains");
+
+    @Param({"10000", "100000", "1000000"})
+    public int entries;
+
+    private List<Object> all;
+    private Object normalizer;
+
+    @Setup(Level.Trial)
+    public void generate() throws Throwable {
+        all = Fixtures.entries(entries, 42);
+        normalizer = NEW_NORMALIZER.invoke();
+    }
+
+    @Benchmark
+    public Object rebuild() throws Throwable {
+        Object model = NEW_MODEL.invoke("Success", normalizer);
+        REBUILD.invoke(model, all);
+        return DOMAINS.invoke(model);
+    }
+
+    @Benchmark
+    public Object addInBatches() throws Throwable {
+        Object model = NEW_MODEL.invoke("Success", normalizer);
+        for (int from = 0; from < all.size(); from += IngestBenchmark.BATCH_SIZE) {
+            ADD_ENTRIES.invoke(model, all.subList(from, Math.min(all.size(), from + IngestBenchmark.BATCH_SIZE)));
+        }
+        return DOMAINS.invoke(model);
+    }
+}
@@ -0,0 +1,76 @@
+package verbreplayer.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ingest path of the History table: entries arrive in batches (as the UI flushes them) and are
+ * added to the column store and merged into the sorted view.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class IngestBenchmark {
+
+    /** Size of the batches the UI hands to the table, roughly one flush under heavy load. */
+    static final int BATCH_SIZE = 2_000;
+
+    private static final Class<?> MODEL = Fixtures.load("HistoryTableModel");
+    private static final MethodHandle NEW_MODEL = Fixtures.constructor(MODEL, List.class);
+    private static final MethodHandle ADD_ENTRIES = Fixtures.method(MODEL, "addEntries", List.class);
+    private static final MethodHandle SORT_BY = Fixtures.method(MODEL, "sortBy", int.class);
+    private static final MethodHandle ROW_COUNT = Fixtures.method(MODEL, "getRowCount");
+    private static final int COLUMN_HOST = 4;
+
+    @Param({"10000", "100000", "1000000"})
+    public int entries;
+
+    private List<List<Object>> batches;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        List<Object> all = Fixtures.entries(entries, 42);
+        batches = new ArrayList<>();
+        for (int from = 0; from < all.size(); from += BATCH_SIZE) {
+            batches.add(all.subList(from, Math.min(all.size(), from + BATCH_SIZE)));
+        }
+    }
+
+    /** Appending in id order, the default sort: the cheap path. */
+    @Benchmark
+    public int ingestSortedById() throws Throwable {
+        return ingest(false);
+    }
+
+    /** Sorted by host, so every batch is merged into the middle of the view. */
+    @Benchmark
+    public int ingestSortedByHost() throws Throwable {
+        return ingest(true);
+    }
+
+    private int ingest(boolean byHost) throws Throwable {
+        Object model = NEW_MODEL.invoke(new ArrayList<>());
+        if (byHost) SORT_BY.invoke(model, COLUMN_HOST);
+        for (List<Object> batch : batches) {
+            ADD_ENTRIES.invoke(model, batch);
+        }
+        return (int) ROW_COUNT.invoke(model);
+    }
+}
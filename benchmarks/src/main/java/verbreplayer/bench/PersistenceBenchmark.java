@@ -0,0 +1,157 @@
+package verbreplayer.bench;
+
+import burp.api.montoya.logging.Logging;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Persistence: moving request/response bodies into the deduplicating body store and writing the
+ * journal ({@code save}), and replaying the journal into the success and error lists on startup
+ * ({@code load}). Files go to a temporary directory that is removed after the trial.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class PersistenceBenchmark {
+
+    private static final Class<?> JOURNAL = Fixtures.load("ReplayJournal");
+    private static final Class<?> BODY_STORE = Fixtures.load("BodyStore");
+    private static final MethodHandle NEW_JOURNAL = Fixtures.constructor(JOURNAL, Logging.class, File.class, BODY_STORE);
+    private static final MethodHandle NEW_BODY_STORE = Fixtures.constructor(BODY_STORE, File.class);
+    private static final MethodHandle WRITE_INITIAL = Fixtures.method(JOURNAL, "writeInitial", List.class, List.class);
+    private static final MethodHandle LOAD = Fixtures.method(JOURNAL, "load", List.class, List.class);
+    private static final MethodHandle STORE = Fixtures.method(BODY_STORE, "store", Fixtures.ENTRY, String.class, String.class);
+    private static final MethodHandle CLOSE_BODY_STORE = Fixtures.method(BODY_STORE, "close");
+    private static final Field REQUEST_TEXT = Fixtures.field(Fixtures.ENTRY, "requestText");
+    private static final Field RESPONSE = Fixtures.field(Fixtures.ENTRY, "response");
+    private static final Field STATUS_CODE = Fixtures.field(Fixtures.ENTRY, "statusCode");
+
+    @Param({"10000", "100000", "1000000"})
+    public int entries;
+
+    private final Logging logging = Fixtures.silentLogging();
+    private File directory;
+    private List<Object> success;
+    private List<Object> error;
+    private String[] requestTexts;
+    private String[] responses;
+    private int run;
+
+    @Setup(Level.Trial)
+    public void generate() throws Exception {
+        directory = Files.createTempDirectory("verbreplayer-bench").toFile();
+        List<Object> all = Fixtures.entries(entries, 42);
+        success = new ArrayList<>();
+        error = new ArrayList<>();
+        for (Object entry : all) {
+            (STATUS_CODE.getInt(entry) >= 500 ? error : success).add(entry);
+        }
+        // Kept in the order storeBodies walks the lists.
+        requestTexts = new String[all.size()];
+        responses = new String[all.size()];
+        int i = 0;
+        for (List<Object> list : List.of(success, error)) {
+            for (Object entry : list) {
+                requestTexts[i] = (String) REQUEST_TEXT.get(entry);
+                responses[i] = (String) RESPONSE.get(entry);
+                i++;
+            }
+        }
+    }
+
+    /** Bodies into a fresh body store, then the journal written in one go. */
+    @Benchmark
+    public File save() throws Throwable {
+        File runDirectory = new File(directory, "save-" + run++);
+        runDirectory.mkdirs();
+        Object bodyStore = NEW_BODY_STORE.invoke(new File(runDirectory, "bodies.dat"));
+        try {
+            storeBodies(bodyStore);
+            File journalFile = new File(runDirectory, "journal.dat");
+            WRITE_INITIAL.invoke(NEW_JOURNAL.invoke(logging, journalFile, bodyStore), success, error);
+            return journalFile;
+        } finally {
+            CLOSE_BODY_STORE.invoke(bodyStore);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SavedJournal {
+        File bodies;
+        File journal;
+
+        @Setup(Level.Trial)
+        public void write(PersistenceBenchmark benchmark) throws Throwable {
+            File runDirectory = new File(benchmark.directory, "load");
+            runDirectory.mkdirs();
+            bodies = new File(runDirectory, "bodies.dat");
+            journal = new File(runDirectory, "journal.dat");
+            Object bodyStore = NEW_BODY_STORE.invoke(bodies);
+            try {
+                benchmark.storeBodies(bodyStore);
+                WRITE_INITIAL.invoke(NEW_JOURNAL.invoke(benchmark.logging, journal, bodyStore), benchmark.success, benchmark.error);
+            } finally {
+                CLOSE_BODY_STORE.invoke(bodyStore);
+            }
+        }
+    }
+
+    /** Opening the body store (which rebuilds its hash index) and replaying the journal. */
+    @Benchmark
+    public int load(SavedJournal saved) throws Throwable {
+        Object bodyStore = NEW_BODY_STORE.invoke(saved.bodies);
+        try {
+            List<Object> loadedSuccess = new ArrayList<>();
+            List<Object> loadedError = new ArrayList<>();
+            LOAD.invoke(NEW_JOURNAL.invoke(logging, saved.journal, bodyStore), loadedSuccess, loadedError);
+            return loadedSuccess.size() + loadedError.size();
+        } finally {
+            CLOSE_BODY_STORE.invoke(bodyStore);
+        }
+    }
+
+    // store() clears the entries' in-memory texts, so they are put back first.
+    private void storeBodies(Object bodyStore) throws Throwable {
+        int i = 0;
+        for (List<Object> list : List.of(success, error)) {
+            for (Object entry : list) {
+                REQUEST_TEXT.set(entry, requestTexts[i]);
+                RESPONSE.set(entry, responses[i]);
+                STORE.invoke(bodyStore, entry, requestTexts[i], responses[i]);
+                i++;
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,344 @@
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import burp.api.montoya.logging.Logging;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test for the replay pipeline outside Burp: filter, replay, classify and store, end to end
+ * against an embedded {@link LoadTestServer}.
+ * <p>
+ * Synthetic proxied requests (each to a new endpoint, so the dedup cache lets them all through)
+ * are handed to {@link ReplayEngine#replayVariants} one at a time, the way the proxy thread does,
+ * and every variant of the default verb matrix is sent over a {@link SocketHttpSender}. Results
+ * are stored as the UI stores them: bodies in a {@link BodyStore}, entries in a
+ * {@link ReplayJournal} and an in-memory list. Rate limiting is off so the run measures the
+ * pipeline rather than the limiter. At the end it prints throughput, send latency, the time the
+ * "proxy thread" spent per request and the heap retained per 100k replays, and can write the full
+ * {@link ReplayMetrics} snapshot as JSON.
+ * <p>
+ * Lives in its own module so it does not ship in the extension jar. The module's shaded jar
+ * bundles the extension and the Montoya API, e.g.
+ * {@code java -jar loadtest/target/loadtest.jar --replays 100000}; {@code --help} lists the options.
+ */
+public class LoadTestHarness {
+
+    private static final String[][] OPTIONS = {
+            {"replays", "100000", "number of variants to replay (rounded up to whole requests)"},
+            {"concurrency", "32", "replay workers"},
+            {"latency-ms", "5", "server latency per request"},
+            {"jitter-ms", "5", "random extra server latency, 0 to this"},
+            {"error-rate", "0.01", "share of requests the server drops without an answer"},
+            {"allow-rate", "0.1", "share of non-GET requests answered 200 instead of 405"},
+            {"server-threads", "64", "requests the server handles at the same time"},
+            {"timeout-s", "10", "response timeout per send"},
+            {"retries", "2", "retries after network errors"},
+            {"dir", "", "directory for the journal and body store (default: a temporary one, deleted afterwards)"},
+            {"json", "", "file to write the metrics snapshot to"},
+    };
+    private static final long PROGRESS_INTERVAL_MILLIS = 5_000;
+    private static final long STALL_TIMEOUT_MILLIS = 120_000;
+    private static final byte[] BASELINE_PAGE = "<html><body>Original page</body></html>".getBytes(StandardCharsets.UTF_8);
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        if (options == null) {
+            printUsage(System.err);
+            System.exit(2);
+            return;
+        }
+        int replays = Integer.parseInt(options.get("replays"));
+        int concurrency = Integer.parseInt(options.get("concurrency"));
+        File dir = options.get("dir").isEmpty()
+                ? Files.createTempDirectory("verbreplayer-load").toFile()
+                : new File(options.get("dir"));
+        dir.mkdirs();
+
+        LoadTestServer server = new LoadTestServer(Integer.parseInt(options.get("server-threads")),
+                Long.parseLong(options.get("latency-ms")), Long.parseLong(options.get("jitter-ms")),
+                Double.parseDouble(options.get("error-rate")), Double.parseDouble(options.get("allow-rate")));
+        server.start();
+        HarnessLogging logging = new HarnessLogging();
+        SocketHttpSender sender = new SocketHttpSender();
+        BodyStore bodyStore = new BodyStore(new File(dir, "load_bodies.dat"));
+        ReplayJournal journal = new ReplayJournal(logging, new File(dir, "load_journal.dat"), bodyStore);
+        journal.start();
+        HeadlessContext context = new HeadlessContext(bodyStore, journal);
+
+        ReplayEngine engine = new ReplayEngine(logging, sender, context);
+        engine.setConcurrency(concurrency);
+        engine.setResponseTimeoutSeconds(Integer.parseInt(options.get("timeout-s")));
+        engine.setMaxRetries(Integer.parseInt(options.get("retries")));
+        engine.getRateLimiter().setRequestsPerSecond(0);
+        engine.getRateLimiter().setMaxInFlight(ReplayEngine.MAX_CONCURRENCY);
+        ReplayMetrics metrics = engine.getMetrics();
+        int variantsPerRequest = engine.getVerbMatrix().getVariants().size();
+        int requests = (replays + variantsPerRequest - 1) / variantsPerRequest;
+
+        System.out.printf("Replaying %,d requests x %d variants against %s:%d with %d workers%n",
+                requests, variantsPerRequest, server.getHost(), server.getPort(), concurrency);
+        long heapBefore = usedHeapAfterGc();
+        long start = System.nanoTime();
+        long queued = 0;
+        long lastProgress = System.currentTimeMillis();
+        HttpResponse baseline = PlainHttpMessages.response(200, "OK",
+                Collections.singletonList(PlainHttpMessages.header("Content-Type", "text/html")), BASELINE_PAGE);
+        for (int i = 0; i < requests; i++) {
+            // Like a replay campaign, leave the queue room instead of overflowing it.
+            while (engine.getQueueDepth() >= engine.getQueueCapacity() / 2) {
+                Thread.sleep(1);
+            }
+            HttpRequest request = PlainHttpMessages.request(server.getHost(), server.getPort(), "GET",
+                    "/load/" + letters(i) + "/item?q=" + i,
+                    List.of(PlainHttpMessages.header("Host", server.getHost() + ":" + server.getPort()),
+                            PlainHttpMessages.header("User-Agent", "VerbReplayer-load-test")));
+            long t = System.nanoTime();
+            queued += engine.replayVariants(request, baseline);
+            metrics.recordProxyOverhead(System.nanoTime() - t);
+            lastProgress = progress(engine, context, lastProgress);
+        }
+        long lastCount = -1;
+        long lastChange = System.currentTimeMillis();
+        while (context.logged.get() + engine.getDroppedCount() + engine.getCancelledCount() < queued) {
+            Thread.sleep(20);
+            lastProgress = progress(engine, context, lastProgress);
+            long count = context.logged.get();
+            if (count != lastCount) {
+                lastCount = count;
+                lastChange = System.currentTimeMillis();
+            } else if (System.currentTimeMillis() - lastChange > STALL_TIMEOUT_MILLIS) {
+                System.err.println("No progress for " + STALL_TIMEOUT_MILLIS / 1000 + " s, giving up.");
+                break;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long heapAfter = usedHeapAfterGc();
+
+        ReplayMetrics.Summary total = metrics.getTotal();
+        LatencyHistogram.Snapshot proxy = metrics.getProxyOverhead();
+        long logged = context.logged.get();
+        System.out.printf("%nReplays stored:     %,d of %,d queued (%,d dropped, %,d to Results)%n",
+                logged, queued, engine.getDroppedCount(), context.interesting.get());
+        System.out.printf("Elapsed:            %.1f s, %,.0f replays/s%n", seconds, logged / seconds);
+        System.out.printf("Sends:              %,d (%,d timeouts, %,d network errors, %,d retries); server saw %,d, dropped %,d%n",
+                total.sends, total.timeouts, total.errors, engine.getRetryCount(), server.getRequestCount(), server.getDroppedCount());
+        System.out.printf("Send latency:       p50 %s, p99 %s, max %s%n", millis(total.latency.valueAtPercentile(50)),
+                millis(total.latency.valueAtPercentile(99)), millis(total.latency.getMaxMicros()));
+        System.out.printf("Proxy-added:        p50 %s, p99 %s, max %s per request%n", millis(proxy.valueAtPercentile(50)),
+                millis(proxy.valueAtPercentile(99)), millis(proxy.getMaxMicros()));
+        System.out.printf("Heap retained:      %,d KB per 100k replays (%,d KB total)%n",
+                logged == 0 ? 0 : (heapAfter - heapBefore) * 100_000 / logged / 1024, (heapAfter - heapBefore) / 1024);
+        System.out.printf("Storage:            %,d KB journal, %,d KB body store; %s%n",
+                new File(dir, "load_journal.dat").length() / 1024, bodyStore.size() / 1024, bodyStore.getStatsSummary());
+        if (logging.errors.get() > 0) {
+            System.out.printf("Errors logged:      %,d%n", logging.errors.get());
+        }
+        if (!options.get("json").isEmpty()) {
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(options.get("json")), StandardCharsets.UTF_8))) {
+                metrics.writeJson(out);
+            }
+            System.out.println("Metrics written to " + options.get("json"));
+        }
+
+        engine.shutdown();
+        journal.close();
+        bodyStore.close();
+        sender.close();
+        server.stop();
+        if (options.get("dir").isEmpty()) {
+            for (File f : dir.listFiles()) f.delete();
+            dir.delete();
+        }
+    }
+
+    private static long progress(ReplayEngine engine, HeadlessContext context, long lastProgress) {
+        long now = System.currentTimeMillis();
+        if (now - lastProgress < PROGRESS_INTERVAL_MILLIS) return lastProgress;
+        System.out.printf("  %,d stored, %,d queued, %d in flight%n",
+                context.logged.get(), engine.getQueueDepth(), engine.getActiveCount());
+        return now;
+    }
+
+    /** Encodes n in letters only, so the path normalizer does not fold it into an id placeholder. */
+    static String letters(int n) {
+        StringBuilder sb = new StringBuilder();
+        do {
+            sb.append((char) ('a' + n % 26));
+            n /= 26;
+        } while (n > 0);
+        return sb.reverse().toString();
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.2f ms", micros / 1000.0);
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /** Returns the options with defaults filled in, or null if the arguments are invalid or --help was given. */
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String[] option : OPTIONS) options.put(option[0], option[1]);
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || args[i].equals("--help")) return null;
+            String name = args[i].substring(2);
+            String value;
+            int eq = name.indexOf('=');
+            if (eq >= 0) {
+                value = name.substring(eq + 1);
+                name = name.substring(0, eq);
+            } else if (i + 1 < args.length) {
+                value = args[++i];
+            } else {
+                return null;
+            }
+            if (!options.containsKey(name)) return null;
+            options.put(name, value);
+        }
+        return options;
+    }
+
+    private static void printUsage(PrintStream out) {
+        out.println("Usage: java -cp VerbReplayer.jar:montoya-api.jar LoadTestHarness [--option value]...");
+        for (String[] option : OPTIONS) {
+            out.printf("  --%-16s %s (default: %s)%n", option[0], option[2], option[1].isEmpty() ? "none" : option[1]);
+        }
+    }
+
+    // ---------------------------
+    // Stores replays the way the UI does, minus the Swing models.
+    // ---------------------------
+    private static final class HeadlessContext implements ReplayContext {
+        private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+        final RequestFilter requestFilter = new RequestFilter(new HostScope(url -> true));
+        final PathNormalizer pathNormalizer = new PathNormalizer();
+        final BodyStore bodyStore;
+        final ReplayJournal journal;
+        final List<UserInterface.ReplayedRequestEntry> entries = new ArrayList<>();
+        final AtomicLong logged = new AtomicLong();
+        final AtomicLong interesting = new AtomicLong();
+        private final AtomicLong nextId = new AtomicLong(1);
+
+        HeadlessContext(BodyStore bodyStore, ReplayJournal journal) {
+            this.bodyStore = bodyStore;
+            this.journal = journal;
+        }
+
+        @Override
+        public RequestFilter getRequestFilter() {
+            return requestFilter;
+        }
+
+        @Override
+        public PathNormalizer getPathNormalizer() {
+            return pathNormalizer;
+        }
+
+        @Override
+        public boolean isVerbSelected(String verb) {
+            return true;
+        }
+
+        @Override
+        public void logTraffic(String verb, String url, int statusCode, HttpRequest request, String response, boolean interesting) {
+            UserInterface.ReplayedRequestEntry entry = new UserInterface.ReplayedRequestEntry(verb, url, statusCode,
+                    request.toString(), response, LocalDateTime.now().format(TIMESTAMP_FORMAT));
+            entry.scheme = UserInterface.schemeOf(request);
+            try {
+                bodyStore.store(entry, entry.requestText, entry.response);
+            } catch (IOException e) {
+                System.err.println("Body store: " + e.getMessage());
+            }
+            synchronized (entries) {
+                entry.id = nextId.getAndIncrement();
+                entries.add(entry);
+                journal.appendAdd(entry, interesting);
+            }
+            if (interesting) this.interesting.incrementAndGet();
+            logged.incrementAndGet();
+        }
+    }
+
+    // ---------------------------
+    // Counts errors and prints the first few.
+    // ---------------------------
+    @SuppressWarnings("deprecation") // output() and error() must still be implemented
+    private static final class HarnessLogging implements Logging {
+        private static final int MAX_PRINTED_ERRORS = 10;
+        final AtomicLong errors = new AtomicLong();
+
+        @Override
+        public PrintStream output() {
+            return System.out;
+        }
+
+        @Override
+        public PrintStream error() {
+            return System.err;
+        }
+
+        @Override
+        public void logToOutput(String message) {
+            System.out.println(message);
+        }
+
+        @Override
+        public void logToError(String message) {
+            long n = errors.incrementAndGet();
+            if (n <= MAX_PRINTED_ERRORS) System.err.println(message);
+            if (n == MAX_PRINTED_ERRORS) System.err.println("(further errors are only counted)");
+        }
+
+        @Override
+        public void logToError(String message, Throwable cause) {
+            logToError(message + ": " + cause);
+        }
+
+        @Override
+        public void logToError(Throwable cause) {
+            logToError(String.valueOf(cause));
+        }
+
+        @Override
+        public void raiseDebugEvent(String message) {
+        }
+
+        @Override
+        public void raiseInfoEvent(String message) {
+        }
+
+        @Override
+        public void raiseErrorEvent(String message) {
+            logToError(message);
+        }
+
+        @Override
+        public void raiseCriticalEvent(String message) {
+            logToError(message);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded HTTP/1.1 server on the loopback interface that stands in for a target site in the
+ * {@link LoadTestHarness}.
+ * <p>
+ * Every request is answered after the configured latency plus a uniformly random jitter. A share
+ * of requests ({@code errorRate}) gets its connection closed without an answer, which the replay
+ * engine sees as a network error and retries. GET is answered 200; other verbs are answered 200
+ * with probability {@code allowRate} and 405 otherwise, so the classify step sees both outcomes.
+ */
+class LoadTestServer {
+
+    private static final byte[] PAGE = ("<html><head><title>Item</title></head><body>"
+            + "<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit.</p></body></html>").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NOT_ALLOWED = "<html><body>405 Method Not Allowed</body></html>".getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double errorRate;
+    private final double allowRate;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param threads number of requests served at the same time; latency is simulated by sleeping,
+     *                so this bounds the server's throughput at threads / latency
+     */
+    LoadTestServer(int threads, long latencyMillis, long jitterMillis, double errorRate, double allowRate) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.errorRate = errorRate;
+        this.allowRate = allowRate;
+        // Headers and body go out in separate writes; without this, Nagle's algorithm holds the
+        // body back until the client's delayed ACK, adding ~40 ms to every response.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "LoadTestServer");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    String getHost() {
+        return server.getAddress().getHostString();
+    }
+
+    long getRequestCount() {
+        return requests.get();
+    }
+
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (InputStream in = exchange.getRequestBody()) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = latencyMillis + (jitterMillis > 0 ? random.nextLong(jitterMillis + 1) : 0);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (random.nextDouble() < errorRate) {
+            dropped.incrementAndGet();
+            // Closing without sending headers drops the connection.
+            exchange.close();
+            return;
+        }
+        String method = exchange.getRequestMethod();
+        boolean allowed = method.equals("GET") || random.nextDouble() < allowRate;
+        byte[] body = allowed ? PAGE : NOT_ALLOWED;
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        if (!allowed) exchange.getResponseHeaders().set("Allow", "GET");
+        if (method.equals("HEAD")) {
+            exchange.sendResponseHeaders(allowed ? 200 : 405, -1);
+        } else {
+            exchange.sendResponseHeaders(allowed ? 200 : 405, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+        exchange.close();
+    }
+}
@@ -0,0 +1,271 @@
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.HttpService;
+import burp.api.montoya.http.message.HttpHeader;
+import burp.api.montoya.http.message.MimeType;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Montoya HTTP messages that work without Burp, for the {@link LoadTestHarness}.
+ * <p>
+ * Montoya's own factories ({@code HttpRequest.httpRequest(...)} and so on) are backed by Burp and
+ * fail outside it, so these implement the interfaces with dynamic proxies. Only the methods the
+ * replay pipeline uses are supported: method, path, URL, headers, body and the raw bytes, plus
+ * {@code withMethod}, {@code withHeader} and {@code withAddedHeader}. Anything else, e.g. the
+ * parameter rewriting behind {@code METHOD name=VALUE} matrix rows, throws
+ * {@link UnsupportedOperationException}.
+ */
+final class PlainHttpMessages {
+
+    private PlainHttpMessages() {
+    }
+
+    /** A request without a body; {@code path} may include a query string. */
+    static HttpRequest request(String host, int port, String method, String path, List<HttpHeader> headers) {
+        return new PlainRequest(host, port, method, path, headers, new byte[0]).proxy();
+    }
+
+    static HttpResponse response(int statusCode, String reasonPhrase, List<HttpHeader> headers, byte[] body) {
+        return new PlainResponse(statusCode, reasonPhrase, headers, body).proxy();
+    }
+
+    static HttpHeader header(String name, String value) {
+        return (HttpHeader) newProxy(HttpHeader.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "name":
+                    return name;
+                case "value":
+                    return value;
+                case "toString":
+                    return name + ": " + value;
+                default:
+                    return objectMethod(proxy, method, args);
+            }
+        });
+    }
+
+    static ByteArray byteArray(byte[] bytes) {
+        return (ByteArray) newProxy(ByteArray.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "length":
+                    return bytes.length;
+                case "getBytes":
+                    return bytes.clone();
+                case "getByte":
+                    return bytes[(Integer) args[0]];
+                case "toString":
+                    return new String(bytes, StandardCharsets.ISO_8859_1);
+                default:
+                    return objectMethod(proxy, method, args);
+            }
+        });
+    }
+
+    private static Object newProxy(Class<?> type, InvocationHandler handler) {
+        return Proxy.newProxyInstance(PlainHttpMessages.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    /** Identity equality and hashing; everything else is unsupported. */
+    private static Object objectMethod(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                throw new UnsupportedOperationException(method.getDeclaringClass().getSimpleName() + "."
+                        + method.getName() + " is not available outside Burp");
+        }
+    }
+
+    private static String headerValue(List<HttpHeader> headers, String name) {
+        for (HttpHeader header : headers) {
+            if (header.name().equalsIgnoreCase(name)) return header.value();
+        }
+        return null;
+    }
+
+    private static boolean hasHeader(List<HttpHeader> headers, Object[] args) {
+        String name = args[0] instanceof HttpHeader ? ((HttpHeader) args[0]).name() : (String) args[0];
+        String value = args.length > 1 ? (String) args[1]
+                : args[0] instanceof HttpHeader ? ((HttpHeader) args[0]).value() : null;
+        String actual = headerValue(headers, name);
+        return actual != null && (value == null || value.equals(actual));
+    }
+
+    private static byte[] raw(String head, List<HttpHeader> headers, byte[] body) {
+        StringBuilder sb = new StringBuilder(head).append("\r\n");
+        for (HttpHeader header : headers) {
+            sb.append(header.name()).append(": ").append(header.value()).append("\r\n");
+        }
+        sb.append("\r\n");
+        byte[] start = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+        byte[] raw = Arrays.copyOf(start, start.length + body.length);
+        System.arraycopy(body, 0, raw, start.length, body.length);
+        return raw;
+    }
+
+    // ---------------------------
+    // Backing state of a request proxy.
+    // ---------------------------
+    private static final class PlainRequest implements InvocationHandler {
+        final String host;
+        final int port;
+        final String method;
+        final String path;
+        final List<HttpHeader> headers;
+        final byte[] body;
+
+        PlainRequest(String host, int port, String method, String path, List<HttpHeader> headers, byte[] body) {
+            this.host = host;
+            this.port = port;
+            this.method = method;
+            this.path = path;
+            this.headers = Collections.unmodifiableList(new ArrayList<>(headers));
+            this.body = body;
+        }
+
+        HttpRequest proxy() {
+            return (HttpRequest) newProxy(HttpRequest.class, this);
+        }
+
+        private PlainRequest withHeaders(List<HttpHeader> newHeaders) {
+            return new PlainRequest(host, port, method, path, newHeaders, body);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) {
+            switch (m.getName()) {
+                case "httpService":
+                    return service();
+                case "method":
+                    return method;
+                case "path":
+                    return path;
+                case "pathWithoutQuery":
+                    return path.indexOf('?') < 0 ? path : path.substring(0, path.indexOf('?'));
+                case "query": {
+                    int q = path.indexOf('?');
+                    return q < 0 ? "" : path.substring(q + 1);
+                }
+                case "url":
+                    return "http://" + host + ":" + port + path;
+                case "httpVersion":
+                    return "HTTP/1.1";
+                case "headers":
+                    return headers;
+                case "headerValue":
+                    return headerValue(headers, (String) args[0]);
+                case "hasHeader":
+                    return hasHeader(headers, args);
+                case "withMethod":
+                    return new PlainRequest(host, port, (String) args[0], path, headers, body).proxy();
+                case "withHeader":
+                case "withAddedHeader": {
+                    HttpHeader added = args.length == 1 ? (HttpHeader) args[0] : header((String) args[0], (String) args[1]);
+                    List<HttpHeader> newHeaders = new ArrayList<>(headers);
+                    if (m.getName().equals("withHeader")) newHeaders.removeIf(h -> h.name().equalsIgnoreCase(added.name()));
+                    newHeaders.add(added);
+                    return withHeaders(newHeaders).proxy();
+                }
+                case "body":
+                    return byteArray(body);
+                case "bodyToString":
+                    return new String(body, StandardCharsets.ISO_8859_1);
+                case "toByteArray":
+                    return byteArray(raw(method + " " + path + " HTTP/1.1", headers, body));
+                case "toString":
+                    return new String(raw(method + " " + path + " HTTP/1.1", headers, body), StandardCharsets.ISO_8859_1);
+                default:
+                    return objectMethod(proxy, m, args);
+            }
+        }
+
+        private HttpService service() {
+            return (HttpService) newProxy(HttpService.class, (proxy, m, args) -> {
+                switch (m.getName()) {
+                    case "host":
+                    case "ipAddress":
+                        return host;
+                    case "port":
+                        return port;
+                    case "secure":
+                        return false;
+                    case "toString":
+                        return "http://" + host + ":" + port;
+                    default:
+                        return objectMethod(proxy, m, args);
+                }
+            });
+        }
+    }
+
+    // ---------------------------
+    // Backing state of a response proxy.
+    // ---------------------------
+    private static final class PlainResponse implements InvocationHandler {
+        final short statusCode;
+        final String reasonPhrase;
+        final List<HttpHeader> headers;
+        final byte[] body;
+
+        PlainResponse(int statusCode, String reasonPhrase, List<HttpHeader> headers, byte[] body) {
+            this.statusCode = (short) statusCode;
+            this.reasonPhrase = reasonPhrase;
+            this.headers = Collections.unmodifiableList(new ArrayList<>(headers));
+            this.body = body;
+        }
+
+        HttpResponse proxy() {
+            return (HttpResponse) newProxy(HttpResponse.class, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) {
+            switch (m.getName()) {
+                case "statusCode":
+                    return statusCode;
+                case "reasonPhrase":
+                    return reasonPhrase;
+                case "httpVersion":
+                    return "HTTP/1.1";
+                case "headers":
+                    return headers;
+                case "headerValue":
+                    return headerValue(headers, (String) args[0]);
+                case "hasHeader":
+                    return hasHeader(headers, args);
+                case "mimeType":
+                case "statedMimeType":
+                case "inferredMimeType":
+                    return mimeType();
+                case "body":
+                    return byteArray(body);
+                case "bodyToString":
+                    return new String(body, StandardCharsets.ISO_8859_1);
+                case "toByteArray":
+                    return byteArray(raw("HTTP/1.1 " + statusCode + " " + reasonPhrase, headers, body));
+                case "toString":
+                    return new String(raw("HTTP/1.1 " + statusCode + " " + reasonPhrase, headers, body), StandardCharsets.ISO_8859_1);
+                default:
+                    return objectMethod(proxy, m, args);
+            }
+        }
+
+        private MimeType mimeType() {
+            String contentType = headerValue(headers, "Content-Type");
+            if (contentType == null) return MimeType.NONE;
+            if (contentType.contains("html")) return MimeType.HTML;
+            if (contentType.contains("json")) return MimeType.JSON;
+            return contentType.startsWith("text/") ? MimeType.PLAIN_TEXT : MimeType.UNRECOGNIZED;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+import burp.api.montoya.http.message.HttpHeader;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Minimal HTTP/1.1 client over plain sockets, used by the {@link LoadTestHarness} in place of
+ * Burp's HTTP stack. It sends any method token as-is (unlike {@code java.net.http}, which refuses
+ * CONNECT) and keeps one connection per worker thread and host alive between requests, like the
+ * engine's keep-alive batches do in Burp. There is no TLS and no HTTP/2: {@link #sendHttp2}
+ * throws, and the engine falls back to HTTP/1.1 for the host.
+ */
+class SocketHttpSender implements HttpSender {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5_000;
+
+    private final ThreadLocal<Map<String, Connection>> connections = ThreadLocal.withInitial(HashMap::new);
+    private final List<Connection> allConnections = new ArrayList<>();
+
+    @Override
+    public HttpResponse send(HttpRequest request, long responseTimeoutMillis, String connectionId) {
+        String host = request.httpService().host();
+        int port = request.httpService().port();
+        Map<String, Connection> own = connections.get();
+        String key = host + ":" + port;
+        Connection connection = own.get(key);
+        try {
+            if (connection == null) {
+                connection = open(host, port);
+                own.put(key, connection);
+            }
+            connection.socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, responseTimeoutMillis));
+            return exchange(connection, request);
+        } catch (SocketTimeoutException e) {
+            own.remove(key);
+            closeQuietly(connection);
+            throw new UncheckedIOException("Read timed out", e);
+        } catch (IOException e) {
+            // The server closed the kept-alive connection or dropped the request.
+            own.remove(key);
+            closeQuietly(connection);
+            throw new UncheckedIOException(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName(), e);
+        }
+    }
+
+    @Override
+    public List<HttpResponse> sendHttp2(List<HttpRequest> requests) {
+        throw new UnsupportedOperationException("HTTP/2 is not supported by the load test client");
+    }
+
+    /** Closes every connection opened so far. */
+    void close() {
+        synchronized (allConnections) {
+            for (Connection connection : allConnections) closeQuietly(connection);
+            allConnections.clear();
+        }
+    }
+
+    private Connection open(String host, int port) throws IOException {
+        Socket socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+        Connection connection = new Connection(socket);
+        synchronized (allConnections) {
+            allConnections.add(connection);
+        }
+        return connection;
+    }
+
+    private static HttpResponse exchange(Connection connection, HttpRequest request) throws IOException {
+        String method = request.method();
+        byte[] body = request.body().getBytes();
+        StringBuilder head = new StringBuilder();
+        head.append(method).append(' ').append(request.path()).append(" HTTP/1.1\r\n");
+        boolean hasHost = false;
+        for (HttpHeader header : request.headers()) {
+            String name = header.name();
+            if (name.equalsIgnoreCase("Content-Length") || name.equalsIgnoreCase("Connection")) continue;
+            hasHost |= name.equalsIgnoreCase("Host");
+            head.append(name).append(": ").append(header.value()).append("\r\n");
+        }
+        if (!hasHost) head.append("Host: ").append(request.httpService().host()).append("\r\n");
+        if (body.length > 0) head.append("Content-Length: ").append(body.length).append("\r\n");
+        head.append("\r\n");
+        OutputStream out = connection.out;
+        out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+        out.write(body);
+        out.flush();
+
+        InputStream in = connection.in;
+        String statusLine = readLine(in);
+        String[] status = statusLine.split(" ", 3);
+        if (status.length < 2 || !status[0].startsWith("HTTP/")) throw new IOException("Bad status line: " + statusLine);
+        int statusCode = Integer.parseInt(status[1]);
+        List<HttpHeader> headers = new ArrayList<>();
+        long contentLength = -1;
+        boolean chunked = false;
+        boolean close = false;
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon <= 0) continue;
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            headers.add(PlainHttpMessages.header(name, value));
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (lower.equals("content-length")) contentLength = Long.parseLong(value);
+            if (lower.equals("transfer-encoding")) chunked = value.toLowerCase(Locale.ROOT).contains("chunked");
+            if (lower.equals("connection")) close = value.equalsIgnoreCase("close");
+        }
+        byte[] responseBody;
+        if (method.equals("HEAD") || statusCode / 100 == 1 || statusCode == 204 || statusCode == 304) {
+            responseBody = new byte[0];
+        } else if (chunked) {
+            responseBody = readChunked(in);
+        } else if (contentLength >= 0) {
+            responseBody = in.readNBytes((int) contentLength);
+            if (responseBody.length < contentLength) throw new EOFException("Connection closed in the response body");
+        } else {
+            responseBody = in.readAllBytes();
+            close = true;
+        }
+        if (close) connection.socket.close();
+        return PlainHttpMessages.response(statusCode, status.length > 2 ? status[2] : "", headers, responseBody);
+    }
+
+    private static byte[] readChunked(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        while (true) {
+            String sizeLine = readLine(in);
+            int semicolon = sizeLine.indexOf(';');
+            int size = Integer.parseInt((semicolon < 0 ? sizeLine : sizeLine.substring(0, semicolon)).trim(), 16);
+            if (size == 0) {
+                while (!readLine(in).isEmpty()) {
+                    // trailers
+                }
+                return body.toByteArray();
+            }
+            byte[] chunk = in.readNBytes(size);
+            if (chunk.length < size) throw new EOFException("Connection closed in a chunk");
+            body.write(chunk);
+            readLine(in);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) throw new EOFException("Connection closed by the server");
+            if (b != '\r') sb.append((char) b);
+        }
+        return sb.toString();
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) return;
+        try {
+            connection.socket.close();
+        } catch (IOException ignored) {
+            // already closed
+        }
+    }
+
+    // ---------------------------
+    // One kept-alive connection.
+    // ---------------------------
+    private static final class Connection {
+        final Socket socket;
+        final InputStream in;
+        final OutputStream out;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream());
+            this.out = socket.getOutputStream();
+        }
+    }
+}